@@ -0,0 +1,22 @@
+package net.jodah.xsylum.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks matching an optional include pattern with the GC profiler enabled, so that
+ * allocation rates are reported alongside timings.
+ */
+public final class BenchmarkRunner {
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder().include(args.length > 0 ? args[0] : ".*Benchmark")
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+}
@@ -0,0 +1,61 @@
+package net.jodah.xsylum.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates catalog documents of a given number of books, shaped like the test document.
+ */
+final class Catalogs {
+  private Catalogs() {
+  }
+
+  /**
+   * Returns the number of books for a size parameter.
+   */
+  static int bookCount(String size) {
+    switch (size) {
+      case "small":
+        return 10;
+      case "medium":
+        return 1000;
+      case "large":
+        return 100000;
+      default:
+        throw new IllegalArgumentException("Unknown size " + size);
+    }
+  }
+
+  static String catalog(int books) {
+    StringBuilder sb = new StringBuilder(books * 400).append("<catalog>\n");
+    for (int i = 0; i < books; i++) {
+      sb.append("  <book id=\"bk").append(i).append("\" subid=\"").append((char) ('a' + i % 26))
+          .append("\">\n");
+      sb.append("    <author>Author ").append(i % 97).append("</author>\n");
+      sb.append("    <type>").append(i % 3 == 0 ? "hardcover" : "paperback").append("</type>\n");
+      sb.append("    <title>Title &amp; subtitle ").append(i).append("</title>\n");
+      sb.append("    <link><![CDATA[http://example.com/books/").append(i).append("]]></link>\n");
+      sb.append("    <genre>Genre ").append(i % 7).append("</genre>\n");
+      sb.append("    <price>").append(i % 50).append(".95</price>\n");
+      sb.append("    <copies-sold>").append(i * 31 % 10000).append("</copies-sold>\n");
+      sb.append("    <description>A description of book ").append(i)
+          .append(" that spans a little text.</description>\n");
+      sb.append("  </book>\n");
+    }
+
+    return sb.append("</catalog>\n").toString();
+  }
+
+  static byte[] catalogBytes(int books) {
+    return catalog(books).getBytes(StandardCharsets.UTF_8);
+  }
+
+  static Path writeCatalog(int books) throws IOException {
+    Path path = Files.createTempFile("xsylum-catalog-" + books, ".xml");
+    path.toFile().deleteOnExit();
+    Files.write(path, catalogBytes(books));
+    return path;
+  }
+}
@@ -0,0 +1,121 @@
+package net.jodah.xsylum.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import net.jodah.xsylum.Snapshot;
+import net.jodah.xsylum.XmlDocument;
+import net.jodah.xsylum.Xsylum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Xsylum} parsing across input types and document sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+  @Param({ "small", "medium", "large" })
+  String size;
+
+  byte[] bytes;
+  String string;
+  Path path;
+  Path snapshot;
+  File file;
+
+  @Setup
+  public void setup() throws Exception {
+    path = Catalogs.writeCatalog(Catalogs.bookCount(size));
+    file = path.toFile();
+    bytes = Files.readAllBytes(path);
+    string = new String(bytes, StandardCharsets.UTF_8);
+    snapshot = Files.createTempFile("catalog", ".snapshot");
+    Snapshot.load(path, snapshot);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(path);
+    Files.deleteIfExists(snapshot);
+  }
+
+  @Benchmark
+  public XmlDocument bytes() throws Exception {
+    return Xsylum.documentFor(bytes);
+  }
+
+  @Benchmark
+  public XmlDocument string() throws Exception {
+    return Xsylum.documentFor(string);
+  }
+
+  @Benchmark
+  public XmlDocument inputStream() throws Exception {
+    return Xsylum.documentFor(new ByteArrayInputStream(bytes));
+  }
+
+  @Benchmark
+  public XmlDocument file() throws Exception {
+    return Xsylum.documentFor(file);
+  }
+
+  @Benchmark
+  public XmlDocument path() throws Exception {
+    return Xsylum.documentFor(path);
+  }
+
+  @Benchmark
+  public XmlDocument channel() throws Exception {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      return Xsylum.documentFor(channel);
+    }
+  }
+
+  @Benchmark
+  public XmlDocument compactBytes() throws Exception {
+    return Xsylum.compactDocumentFor(bytes);
+  }
+
+  @Benchmark
+  public XmlDocument compactPath() throws Exception {
+    return Xsylum.compactDocumentFor(path);
+  }
+
+  @Benchmark
+  public XmlDocument snapshot() throws Exception {
+    return Snapshot.load(snapshot);
+  }
+
+  @Benchmark
+  public String firstTitleViaDocument() throws Exception {
+    return Xsylum.documentFor(new ByteArrayInputStream(bytes)).value("/catalog/book[1]/title");
+  }
+
+  @Benchmark
+  public String firstTitleViaExtract() throws Exception {
+    return Xsylum.extract(new ByteArrayInputStream(bytes), "/catalog/book[1]/title")
+        .get("/catalog/book[1]/title");
+  }
+}
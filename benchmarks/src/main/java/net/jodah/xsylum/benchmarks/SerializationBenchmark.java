@@ -0,0 +1,64 @@
+package net.jodah.xsylum.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import net.jodah.xsylum.XmlElement;
+import net.jodah.xsylum.Xsylum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link XmlElement#toXml()} and streaming serialization via
+ * {@link XmlElement#writeTo(OutputStream, java.nio.charset.Charset)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+  @Param({ "small", "medium" })
+  String size;
+
+  XmlElement root;
+
+  @Setup
+  public void setup() throws Exception {
+    root = Xsylum.documentFor(Catalogs.catalogBytes(Catalogs.bookCount(size))).root();
+  }
+
+  @Benchmark
+  public String toXml() {
+    return root.toXml();
+  }
+
+  @Benchmark
+  public void writeTo(final Blackhole blackhole) throws IOException {
+    root.writeTo(new OutputStream() {
+      @Override
+      public void write(int b) {
+        blackhole.consume(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        blackhole.consume(b);
+      }
+    }, StandardCharsets.UTF_8);
+  }
+}
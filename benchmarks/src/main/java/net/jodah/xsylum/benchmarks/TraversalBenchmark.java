@@ -0,0 +1,82 @@
+package net.jodah.xsylum.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.jodah.xsylum.XmlDocument;
+import net.jodah.xsylum.XmlElement;
+import net.jodah.xsylum.Xsylum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures element navigation on default and compact documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmark {
+  @Param({ "small", "medium" })
+  String size;
+
+  @Param({ "dom", "compact" })
+  String representation;
+
+  XmlDocument document;
+  XmlElement root;
+  XmlElement book;
+
+  @Setup
+  public void setup() throws Exception {
+    byte[] bytes = Catalogs.catalogBytes(Catalogs.bookCount(size));
+    document = "compact".equals(representation) ? Xsylum.compactDocumentFor(bytes)
+        : Xsylum.documentFor(bytes);
+    root = document.root();
+    book = root.get("book");
+  }
+
+  @Benchmark
+  public XmlElement get() {
+    return book.get("description");
+  }
+
+  @Benchmark
+  public List<XmlElement> getAll() {
+    return root.getAll("book");
+  }
+
+  @Benchmark
+  public List<XmlElement> children() {
+    return root.children();
+  }
+
+  @Benchmark
+  public boolean hasChild() {
+    return book.hasChild("copies-sold");
+  }
+
+  @Benchmark
+  public List<XmlElement> documentGetAll() {
+    return document.getAll("price");
+  }
+
+  @Benchmark
+  public void walkValues(Blackhole blackhole) {
+    for (XmlElement b : root.children())
+      blackhole.consume(b.get("price").valueAsDouble());
+  }
+}
@@ -0,0 +1,138 @@
+package net.jodah.xsylum.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.jodah.xsylum.XmlDocument;
+import net.jodah.xsylum.XmlElement;
+import net.jodah.xsylum.XmlExpression;
+import net.jodah.xsylum.XmlSearchable;
+import net.jodah.xsylum.Xsylum;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the XPath based search methods of {@link XmlSearchable}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XPathBenchmark {
+  @Param({ "small", "medium" })
+  String size;
+
+  @Param({ "dom", "compact" })
+  String representation;
+
+  XmlDocument document;
+  XmlElement book;
+  XmlExpression pricesExpression;
+
+  @Setup
+  public void setup() throws Exception {
+    byte[] bytes = Catalogs.catalogBytes(Catalogs.bookCount(size));
+    document = "compact".equals(representation) ? Xsylum.compactDocumentFor(bytes)
+        : Xsylum.documentFor(bytes);
+    book = document.root().get("book");
+    pricesExpression = XmlSearchable.compile("/catalog/book/price/text()");
+  }
+
+  @Benchmark
+  public XmlElement findAbsolute() throws Exception {
+    return document.find("/catalog/book[2]/author");
+  }
+
+  /**
+   * Evaluates the same path as {@link #findAbsolute()} through the XPath engine.
+   */
+  @Benchmark
+  public XmlElement findViaXPathEngine() throws Exception {
+    return document.find("(/catalog/book[2]/author)");
+  }
+
+  @Benchmark
+  public XmlElement findRelative() throws Exception {
+    return book.find("./title");
+  }
+
+  @Benchmark
+  public List<XmlElement> findAllDescendants() throws Exception {
+    return document.findAll("//author");
+  }
+
+  /**
+   * Evaluates several expressions separately, for comparison with {@link #query()}.
+   */
+  @Benchmark
+  public int separateValues() throws Exception {
+    return document.values("/catalog/book/author/text()").size()
+        + document.values("/catalog/book/title/text()").size()
+        + document.values("/catalog/book/link/text()").size()
+        + document.values("/catalog/book/price/text()").size()
+        + document.values("//book/@id").size();
+  }
+
+  @Benchmark
+  public Map<String, List<String>> query() throws Exception {
+    return document.query()
+        .add("authors", "/catalog/book/author/text()")
+        .add("titles", "/catalog/book/title/text()")
+        .add("links", "/catalog/book/link/text()")
+        .add("prices", "/catalog/book/price/text()")
+        .add("ids", "//book/@id")
+        .evaluate();
+  }
+
+  @Benchmark
+  public String value() throws Exception {
+    return document.value("/catalog/book[1]/title/text()");
+  }
+
+  @Benchmark
+  public String valueRelative() throws Exception {
+    return book.value("./author/text()");
+  }
+
+  @Benchmark
+  public List<String> values() throws Exception {
+    return document.values("/catalog/book/author/text()");
+  }
+
+  /**
+   * Evaluates the same path as {@link #values()} through the XPath engine, since parenthesized
+   * expressions are not evaluated as simple paths.
+   */
+  @Benchmark
+  public List<String> valuesViaXPathEngine() throws Exception {
+    return document.values("(/catalog/book/author/text())");
+  }
+
+  @Benchmark
+  public List<Double> valuesAsDouble() throws Exception {
+    return document.valuesAsDouble("/catalog/book/price/text()");
+  }
+
+  @Benchmark
+  public List<String> valuesCompiled() throws Exception {
+    return document.values(pricesExpression);
+  }
+
+  @Benchmark
+  public List<String> valuesWithPredicate() throws Exception {
+    return document.values("//book[@subid='c']/@id");
+  }
+}
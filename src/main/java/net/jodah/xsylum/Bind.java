@@ -0,0 +1,24 @@
+package net.jodah.xsylum;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a field to XML when an element is bound by a {@link Binder}. See {@link Binder} for the
+ * supported field types.
+ * 
+ * @author Jonathan Halterman
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Bind {
+  /**
+   * The name of the child element to bind, {@code @name} for an attribute, or {@code .} for the
+   * element's own value. Defaults to a child element with the field's name.
+   */
+  String value() default "";
+}
@@ -0,0 +1,359 @@
+package net.jodah.xsylum;
+
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import net.jodah.xsylum.XmlSearchable.Converter;
+
+/**
+ * Binds XML elements to objects of type {@code T} using a plan that is compiled once per type.
+ * Binding an element reads its bound attributes and makes a single pass over its children,
+ * dispatching each child by name to the field bound to it.
+ * 
+ * <p>
+ * Fields are bound via {@link Bind} annotations, or via a {@link #builder(Class) builder}. Bound
+ * fields may be of type {@code String}, {@code int}, {@code long}, {@code double},
+ * {@code boolean}, their wrappers, enums, {@link XmlElement}, or any type with a no-argument
+ * constructor and {@link Bind} annotated fields, which is bound from the child element. Fields
+ * bound to child elements may also be {@code List}s of these types, which are bound from all
+ * matching children in document order. Otherwise the first matching child is bound. Fields with
+ * no matching XML are left unchanged.
+ * 
+ * <p>
+ * Binders are immutable and thread-safe.
+ * 
+ * @author Jonathan Halterman
+ * @param <T> bound type
+ */
+public final class Binder<T> {
+  private static final ConcurrentMap<Class<?>, Binder<?>> BINDERS =
+      new ConcurrentHashMap<Class<?>, Binder<?>>();
+  private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class,
+      Object.class);
+
+  private final Class<T> type;
+  private final MethodHandle constructor;
+  private final Binding[] attributeBindings;
+  private final Binding valueBinding;
+  /** Child bindings indexed by the ordinal of the child name */
+  private final Binding[] childBindings;
+  private final Map<String, Integer> childOrdinals;
+
+  private Binder(Class<T> type, Map<Field, String> paths) {
+    this.type = type;
+    try {
+      Constructor<T> noArgs = type.getDeclaredConstructor();
+      noArgs.setAccessible(true);
+      constructor = MethodHandles.lookup().unreflectConstructor(noArgs).asType(
+          MethodType.methodType(Object.class));
+    } catch (Exception e) {
+      throw new IllegalArgumentException(type.getName() + " has no accessible no-argument "
+          + "constructor", e);
+    }
+
+    List<Binding> attributes = new ArrayList<Binding>();
+    List<Binding> children = new ArrayList<Binding>();
+    Map<String, Integer> ordinals = new HashMap<String, Integer>();
+    Binding value = null;
+    for (Map.Entry<Field, String> entry : paths.entrySet()) {
+      Field field = entry.getKey();
+      String path = entry.getValue();
+      if (path.isEmpty() || path.indexOf('/') != -1 || path.indexOf('[') != -1)
+        throw new IllegalArgumentException("Unsupported binding " + path + " for " + field);
+
+      if (".".equals(path)) {
+        if (value != null)
+          throw new IllegalArgumentException("Multiple fields bound to the value of "
+              + type.getName());
+        value = new Binding(field, path, false);
+      } else if (path.charAt(0) == '@')
+        attributes.add(new Binding(field, path.substring(1), false));
+      else {
+        if (ordinals.containsKey(path))
+          throw new IllegalArgumentException("Multiple fields bound to child " + path + " of "
+              + type.getName());
+        ordinals.put(path, children.size());
+        children.add(new Binding(field, path, true));
+      }
+    }
+
+    attributeBindings = attributes.toArray(new Binding[attributes.size()]);
+    childBindings = children.toArray(new Binding[children.size()]);
+    childOrdinals = ordinals;
+    valueBinding = value;
+  }
+
+  /**
+   * Returns a builder for a Binder of the {@code type} whose bindings are specified explicitly
+   * rather than via {@link Bind} annotations.
+   * 
+   * @param <T> bound type
+   */
+  public static <T> Builder<T> builder(Class<T> type) {
+    return new Builder<T>(type);
+  }
+
+  /**
+   * Returns the Binder for the {@code type}'s {@link Bind} annotated fields, compiling it if
+   * necessary.
+   * 
+   * @throws IllegalArgumentException if the {@code type} cannot be bound
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Binder<T> forType(Class<T> type) {
+    Binder<T> binder = (Binder<T>) BINDERS.get(type);
+    if (binder == null) {
+      Map<Field, String> paths = new LinkedHashMap<Field, String>();
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+        for (Field field : c.getDeclaredFields()) {
+          Bind bind = field.getAnnotation(Bind.class);
+          if (bind != null)
+            paths.put(field, bind.value().isEmpty() ? field.getName() : bind.value());
+        }
+
+      binder = new Binder<T>(type, paths);
+      Binder<T> existing = (Binder<T>) BINDERS.putIfAbsent(type, binder);
+      if (existing != null)
+        binder = existing;
+    }
+
+    return binder;
+  }
+
+  /**
+   * Binds the {@code element} to a new instance of {@code T}.
+   * 
+   * @throws XsylumException if a value cannot be converted to its field's type
+   */
+  public T bind(XmlElement element) throws XsylumException {
+    return bind(element.element());
+  }
+
+  /**
+   * Returns a Stream of instances of {@code T} bound from the records matching the
+   * {@code recordPath} in the {@code inputStream}. See
+   * {@link Xsylum#stream(InputStream, String)}. The stream should be closed when no longer needed.
+   * 
+   * @throws IllegalArgumentException if the {@code recordPath} is not supported
+   * @throws XsylumException if the {@code inputStream} cannot be read from. Failures while reading
+   *           or binding records are thrown from stream operations as
+   *           {@link UncheckedXsylumException}s.
+   */
+  public Stream<T> stream(InputStream inputStream, String recordPath) throws XsylumException {
+    return Xsylum.stream(inputStream, recordPath).map(new Function<XmlElement, T>() {
+      @Override
+      public T apply(XmlElement element) {
+        try {
+          return bind(element);
+        } catch (XsylumException e) {
+          throw new UncheckedXsylumException(e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns the bound type.
+   */
+  public Class<T> type() {
+    return type;
+  }
+
+  @Override
+  public String toString() {
+    return "Binder[" + type.getName() + "]";
+  }
+
+  T bind(Element element) throws XsylumException {
+    Object target;
+    try {
+      target = constructor.invokeExact();
+    } catch (Throwable e) {
+      throw new XsylumException(e, "Failed to create %s", type.getName());
+    }
+
+    for (Binding binding : attributeBindings) {
+      Attr attr = element.getAttributeNode(binding.name);
+      if (attr != null)
+        binding.set(target, binding.convert(attr.getValue()));
+    }
+
+    if (valueBinding != null)
+      valueBinding.set(target, valueBinding.convert(new XmlElement(element).value()));
+
+    if (childBindings.length > 0) {
+      Object[] values = new Object[childBindings.length];
+      for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() != Node.ELEMENT_NODE)
+          continue;
+        Integer ordinal = childOrdinals.get(child.getNodeName());
+        if (ordinal == null)
+          continue;
+
+        Binding binding = childBindings[ordinal];
+        if (binding.list) {
+          @SuppressWarnings("unchecked")
+          List<Object> list = (List<Object>) values[ordinal];
+          if (list == null)
+            values[ordinal] = list = new ArrayList<Object>();
+          list.add(binding.convert((Element) child));
+        } else if (values[ordinal] == null)
+          values[ordinal] = binding.convert((Element) child);
+      }
+
+      for (int i = 0; i < values.length; i++)
+        if (values[i] != null)
+          childBindings[i].set(target, values[i]);
+    }
+
+    return type.cast(target);
+  }
+
+  /**
+   * Builds a {@link Binder} from explicit bindings.
+   * 
+   * @param <T> bound type
+   */
+  public static final class Builder<T> {
+    private final Class<T> type;
+    private final Map<Field, String> paths = new LinkedHashMap<Field, String>();
+
+    Builder(Class<T> type) {
+      this.type = type;
+    }
+
+    /**
+     * Binds the field with the {@code fieldName} to the {@code path}, which is the name of a child
+     * element, {@code @name} for an attribute, or {@code .} for the element's own value.
+     * 
+     * @throws IllegalArgumentException if the {@code type} has no field with the
+     *           {@code fieldName}
+     */
+    public Builder<T> bind(String fieldName, String path) {
+      for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+        try {
+          paths.put(c.getDeclaredField(fieldName), path);
+          return this;
+        } catch (NoSuchFieldException ignore) {
+        }
+      }
+
+      throw new IllegalArgumentException(type.getName() + " has no field " + fieldName);
+    }
+
+    /**
+     * Returns a new Binder for the bindings.
+     * 
+     * @throws IllegalArgumentException if the bindings are invalid
+     */
+    public Binder<T> build() {
+      return new Binder<T>(type, paths);
+    }
+  }
+
+  /**
+   * Binds a single field.
+   */
+  private static final class Binding {
+    final Field field;
+    final String name;
+    final boolean list;
+    final MethodHandle setter;
+    /** Converts string values, else null for String, XmlElement or nested values */
+    final Converter<?> converter;
+    final Class<?> valueType;
+
+    Binding(Field field, String name, boolean child) {
+      if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+        throw new IllegalArgumentException("Cannot bind static or final field " + field);
+
+      this.field = field;
+      this.name = name;
+      list = List.class.equals(field.getType());
+      if (list && !child)
+        throw new IllegalArgumentException("Only fields bound to child elements can be lists: "
+            + field);
+      valueType = list ? listElementType(field) : field.getType();
+      converter = converterFor(valueType);
+      if (!child && converter == null && !String.class.equals(valueType))
+        throw new IllegalArgumentException("Cannot bind " + field + " to an attribute or value");
+
+      try {
+        field.setAccessible(true);
+        setter = MethodHandles.lookup().unreflectSetter(field).asType(SETTER_TYPE);
+      } catch (Exception e) {
+        throw new IllegalArgumentException("Cannot access field " + field, e);
+      }
+    }
+
+    Object convert(Element element) throws XsylumException {
+      if (XmlElement.class.equals(valueType))
+        return new XmlElement(element);
+      if (converter == null && !String.class.equals(valueType))
+        return forType(valueType).bind(element);
+      return convert(new XmlElement(element).value());
+    }
+
+    Object convert(String value) throws XsylumException {
+      try {
+        return converter == null ? value : converter.convert(value);
+      } catch (RuntimeException e) {
+        throw new XsylumException(e, "Failed to bind %s to %s", value, field);
+      }
+    }
+
+    void set(Object target, Object value) throws XsylumException {
+      try {
+        setter.invokeExact(target, value);
+      } catch (Throwable e) {
+        throw new XsylumException(e, "Failed to set %s", field);
+      }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Converter<?> converterFor(Class<?> type) {
+      if (int.class.equals(type) || Integer.class.equals(type))
+        return Converter.intConverter;
+      if (long.class.equals(type) || Long.class.equals(type))
+        return Converter.longConverter;
+      if (double.class.equals(type) || Double.class.equals(type))
+        return Converter.doubleConverter;
+      if (boolean.class.equals(type) || Boolean.class.equals(type))
+        return Converter.booleanConverter;
+      if (type.isEnum())
+        return XmlSearchable.enumConverterFor((Class) type);
+      return null;
+    }
+
+    private static Class<?> listElementType(Field field) {
+      Type type = field.getGenericType();
+      if (type instanceof ParameterizedType) {
+        Type argument = ((ParameterizedType) type).getActualTypeArguments()[0];
+        if (argument instanceof Class)
+          return (Class<?>) argument;
+      }
+
+      throw new IllegalArgumentException("Cannot determine the element type of " + field);
+    }
+  }
+}
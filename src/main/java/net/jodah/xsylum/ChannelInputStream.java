@@ -0,0 +1,74 @@
+package net.jodah.xsylum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads from a ReadableByteChannel in large chunks, regardless of the size of the reads made
+ * against the stream. Closing the stream releases its buffer but leaves the channel open, since
+ * parsers close their input once they are done with it and the channel belongs to the caller.
+ * 
+ * @author Jonathan Halterman
+ */
+final class ChannelInputStream extends InputStream {
+  static final int BUFFER_SIZE = 64 * 1024;
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private final ReadableByteChannel channel;
+  private ByteBuffer buffer;
+  private boolean eof;
+
+  ChannelInputStream(ReadableByteChannel channel, int bufferSize) {
+    this.channel = channel;
+    buffer = ByteBuffer.allocate(bufferSize);
+    buffer.flip();
+  }
+
+  @Override
+  public int available() {
+    return buffer.remaining();
+  }
+
+  @Override
+  public void close() {
+    buffer = EMPTY;
+    eof = true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    return fill() ? buffer.get() & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0)
+      return 0;
+    if (!fill())
+      return -1;
+
+    int n = Math.min(len, buffer.remaining());
+    buffer.get(b, off, n);
+    return n;
+  }
+
+  /**
+   * Fills the buffer from the channel if it is empty, returning false if the end of the channel has
+   * been reached.
+   */
+  private boolean fill() throws IOException {
+    while (!buffer.hasRemaining()) {
+      if (eof)
+        return false;
+      buffer.clear();
+      int n = channel.read(buffer);
+      buffer.flip();
+      if (n == -1)
+        eof = true;
+    }
+
+    return true;
+  }
+}
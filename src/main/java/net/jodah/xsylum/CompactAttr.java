@@ -0,0 +1,122 @@
+package net.jodah.xsylum;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * A read-only view of an attribute in a {@link CompactDocument}.
+ * 
+ * @author Jonathan Halterman
+ */
+final class CompactAttr extends CompactNode implements Attr {
+  final int ownerIndex;
+
+  CompactAttr(CompactDocument document, CompactDocument.Views views, int index, int ownerIndex) {
+    super(document, views, index);
+    this.ownerIndex = ownerIndex;
+  }
+
+  @Override
+  public NodeList getChildNodes() {
+    return EMPTY_LIST;
+  }
+
+  @Override
+  public Node getFirstChild() {
+    return null;
+  }
+
+  @Override
+  public Node getLastChild() {
+    return null;
+  }
+
+  @Override
+  public String getName() {
+    return document.names[document.attributeNameIds[index]];
+  }
+
+  @Override
+  public Node getNextSibling() {
+    return null;
+  }
+
+  @Override
+  public String getNodeName() {
+    return getName();
+  }
+
+  @Override
+  public short getNodeType() {
+    return ATTRIBUTE_NODE;
+  }
+
+  @Override
+  public String getNodeValue() {
+    return getValue();
+  }
+
+  @Override
+  public Element getOwnerElement() {
+    return (Element) document.node(ownerIndex);
+  }
+
+  @Override
+  public Node getParentNode() {
+    return null;
+  }
+
+  @Override
+  public Node getPreviousSibling() {
+    return null;
+  }
+
+  @Override
+  public TypeInfo getSchemaTypeInfo() {
+    return null;
+  }
+
+  @Override
+  public boolean getSpecified() {
+    return true;
+  }
+
+  @Override
+  public String getTextContent() {
+    return getValue();
+  }
+
+  @Override
+  public String getValue() {
+    return new String(document.chars, document.attributeOffsets[index],
+        document.attributeLengths[index]);
+  }
+
+  @Override
+  public boolean hasChildNodes() {
+    return false;
+  }
+
+  @Override
+  public boolean isId() {
+    return false;
+  }
+
+  @Override
+  public void setValue(String value) {
+    throw readOnly();
+  }
+
+  @Override
+  int treeIndex() {
+    return ownerIndex;
+  }
+
+  @Override
+  boolean isAttribute() {
+    return true;
+  }
+}
@@ -0,0 +1,24 @@
+package net.jodah.xsylum;
+
+import org.w3c.dom.CDATASection;
+
+/**
+ * A read-only view of a CDATA section in a {@link CompactDocument}.
+ * 
+ * @author Jonathan Halterman
+ */
+final class CompactCDATASection extends CompactText implements CDATASection {
+  CompactCDATASection(CompactDocument document, CompactDocument.Views views, int index) {
+    super(document, views, index);
+  }
+
+  @Override
+  public String getNodeName() {
+    return "#cdata-section";
+  }
+
+  @Override
+  public short getNodeType() {
+    return CDATA_SECTION_NODE;
+  }
+}
@@ -0,0 +1,477 @@
+package net.jodah.xsylum;
+
+import java.lang.ref.WeakReference;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+
+/**
+ * A compact, read-only document that stores its tree in parallel int arrays over a single shared
+ * char buffer, rather than as a graph of node objects. Nodes are numbered in document order, with
+ * the document node at index 0, so each subtree occupies a contiguous range of indices.
+ * 
+ * <p>
+ * DOM node views are created on demand and are canonical, so the document can be used anywhere a
+ * {@link Document} can, including XPath evaluation. Views are kept in a table that each view
+ * references but the document references only weakly, so they stay canonical while any view is in
+ * use and are released together once none is, rather than being retained for the lifetime of the
+ * document. Comments and processing instructions are not retained. Since the document is never
+ * modified, it is safe for concurrent reads.
+ * 
+ * @author Jonathan Halterman
+ */
+final class CompactDocument extends CompactNode implements Document {
+  static final int NONE = -1;
+
+  /** Name ids used for non-element nodes */
+  static final int DOCUMENT = -1;
+  static final int TEXT = -2;
+  static final int CDATA = -3;
+
+  private static volatile DOMImplementation implementation;
+
+  final int[] parents;
+  final int[] firstChildren;
+  final int[] nextSiblings;
+  /** Element name ids, else the node type for non-element nodes */
+  final int[] nameIds;
+  /** Text offsets for character data, else the first attribute index for elements */
+  final int[] offsets;
+  /** Text lengths for character data, else the attribute count for elements */
+  final int[] lengths;
+  final int[] attributeNameIds;
+  final int[] attributeOffsets;
+  final int[] attributeLengths;
+  final String[] names;
+  final char[] chars;
+  /** A read-only view of {@link #chars} for parsing values in place */
+  final CharSequence charSequence;
+  final int nodeCount;
+  private final Map<String, Integer> nameIndex;
+  private final String documentURI;
+  private volatile WeakReference<Views> views;
+
+  CompactDocument(int[] parents, int[] firstChildren, int[] nextSiblings, int[] nameIds,
+      int[] offsets, int[] lengths, int[] attributeNameIds, int[] attributeOffsets,
+      int[] attributeLengths, String[] names, Map<String, Integer> nameIndex, char[] chars,
+      String documentURI) {
+    super(null, null, 0);
+    this.parents = parents;
+    this.firstChildren = firstChildren;
+    this.nextSiblings = nextSiblings;
+    this.nameIds = nameIds;
+    this.offsets = offsets;
+    this.lengths = lengths;
+    this.attributeNameIds = attributeNameIds;
+    this.attributeOffsets = attributeOffsets;
+    this.attributeLengths = attributeLengths;
+    this.names = names;
+    this.nameIndex = nameIndex;
+    this.chars = chars;
+    charSequence = CharBuffer.wrap(chars);
+    this.documentURI = documentURI;
+    nodeCount = parents.length;
+  }
+
+  /**
+   * Returns the canonical view for the node at the {@code index}, else null if the {@code index} is
+   * {@link #NONE}.
+   */
+  CompactNode node(int index) {
+    if (index == NONE)
+      return null;
+    if (index == 0)
+      return this;
+
+    Views views = views();
+    CompactNode node = views.nodes.get(index);
+    if (node == null) {
+      int nameId = nameIds[index];
+      node = nameId >= 0 ? new CompactElement(this, views, index)
+          : nameId == TEXT ? new CompactText(this, views, index)
+              : new CompactCDATASection(this, views, index);
+      if (!views.nodes.compareAndSet(index, null, node))
+        node = views.nodes.get(index);
+    }
+
+    return node;
+  }
+
+  /**
+   * Returns the canonical view for the attribute at the {@code attributeIndex}.
+   */
+  CompactAttr attribute(int attributeIndex, int ownerIndex) {
+    Views views = views();
+    AtomicReferenceArray<CompactAttr> attributes = views.attributes(attributeNameIds.length);
+    CompactAttr attr = attributes.get(attributeIndex);
+    if (attr == null) {
+      attr = new CompactAttr(this, views, attributeIndex, ownerIndex);
+      if (!attributes.compareAndSet(attributeIndex, null, attr))
+        attr = attributes.get(attributeIndex);
+    }
+
+    return attr;
+  }
+
+  /**
+   * Returns the name id for the {@code name}, else {@link #NONE} if no element or attribute has
+   * the {@code name}.
+   */
+  int nameId(String name) {
+    Integer id = nameIndex.get(name);
+    return id == null ? NONE : id.intValue();
+  }
+
+  /**
+   * Returns the index of the attribute with the {@code name} on the element at the {@code index},
+   * else {@link #NONE} if the element has no such attribute.
+   */
+  int attributeIndex(int index, String name) {
+    int nameId = nameId(name);
+    if (nameId != NONE) {
+      int first = offsets[index];
+      for (int i = first, end = first + lengths[index]; i < end; i++)
+        if (attributeNameIds[i] == nameId)
+          return i;
+    }
+
+    return NONE;
+  }
+
+  /**
+   * Returns the index following the last node in the subtree rooted at the {@code index}.
+   */
+  int subtreeEnd(int index) {
+    for (int i = index; i != NONE; i = parents[i])
+      if (nextSiblings[i] != NONE)
+        return nextSiblings[i];
+    return nodeCount;
+  }
+
+  /**
+   * Returns a new document whose root element is a copy of the subtree rooted at the element at the
+   * {@code index}. Each node in the copy is at an index {@code index - 1} lower than the original
+   * node, and each attribute at an index lower by the element's first attribute index. Names and
+   * characters are shared with this document rather than copied.
+   */
+  CompactDocument slice(int index) {
+    int end = subtreeEnd(index);
+    int shift = index - 1;
+    int count = end - shift;
+    int[] sliceParents = new int[count];
+    int[] sliceFirstChildren = new int[count];
+    int[] sliceNextSiblings = new int[count];
+    int[] sliceNameIds = new int[count];
+    int[] sliceOffsets = new int[count];
+    int[] sliceLengths = new int[count];
+    sliceParents[0] = NONE;
+    sliceFirstChildren[0] = 1;
+    sliceNextSiblings[0] = NONE;
+    sliceNameIds[0] = DOCUMENT;
+
+    int firstAttribute = offsets[index];
+    int endAttribute = firstAttribute;
+    for (int i = index; i < end; i++) {
+      int j = i - shift;
+      sliceParents[j] = parents[i] - shift;
+      sliceFirstChildren[j] = firstChildren[i] == NONE ? NONE : firstChildren[i] - shift;
+      sliceNextSiblings[j] = nextSiblings[i] == NONE ? NONE : nextSiblings[i] - shift;
+      sliceNameIds[j] = nameIds[i];
+      sliceLengths[j] = lengths[i];
+      if (nameIds[i] >= 0) {
+        sliceOffsets[j] = offsets[i] - firstAttribute;
+        endAttribute = Math.max(endAttribute, offsets[i] + lengths[i]);
+      } else
+        sliceOffsets[j] = offsets[i];
+    }
+
+    sliceParents[1] = 0;
+    sliceNextSiblings[1] = NONE;
+    return new CompactDocument(sliceParents, sliceFirstChildren, sliceNextSiblings, sliceNameIds,
+        sliceOffsets, sliceLengths,
+        Arrays.copyOfRange(attributeNameIds, firstAttribute, endAttribute),
+        Arrays.copyOfRange(attributeOffsets, firstAttribute, endAttribute),
+        Arrays.copyOfRange(attributeLengths, firstAttribute, endAttribute), names, nameIndex, chars,
+        documentURI);
+  }
+
+  /**
+   * Returns the character data for the node at the {@code index}.
+   */
+  String text(int index) {
+    return new String(chars, offsets[index], lengths[index]);
+  }
+
+  /**
+   * Appends the text of the text and CDATA nodes in the subtree rooted at the {@code index}.
+   */
+  StringBuilder appendTextContent(int index, StringBuilder sb) {
+    for (int i = index + 1, end = subtreeEnd(index); i < end; i++)
+      if (nameIds[i] == TEXT || nameIds[i] == CDATA)
+        sb.append(chars, offsets[i], lengths[i]);
+    return sb;
+  }
+
+  /**
+   * Returns the table of views in use, else a new table if none is in use. A table is only weakly
+   * referenced by the document, so at most one table is reachable at a time.
+   */
+  private Views views() {
+    WeakReference<Views> reference = views;
+    Views result = reference == null ? null : reference.get();
+    if (result == null) {
+      synchronized (this) {
+        reference = views;
+        result = reference == null ? null : reference.get();
+        if (result == null) {
+          result = new Views(nodeCount);
+          views = new WeakReference<Views>(result);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * The views created for a document's nodes and attributes. Each view references its table, so the
+   * table and every view in it are retained while any view is in use.
+   */
+  static final class Views {
+    final AtomicReferenceArray<CompactNode> nodes;
+    private volatile AtomicReferenceArray<CompactAttr> attributes;
+
+    Views(int nodeCount) {
+      nodes = new AtomicReferenceArray<CompactNode>(nodeCount);
+    }
+
+    AtomicReferenceArray<CompactAttr> attributes(int attributeCount) {
+      AtomicReferenceArray<CompactAttr> result = attributes;
+      if (result == null) {
+        synchronized (this) {
+          result = attributes;
+          if (result == null)
+            attributes = result = new AtomicReferenceArray<CompactAttr>(attributeCount);
+        }
+      }
+
+      return result;
+    }
+  }
+
+  // Node
+
+  @Override
+  public String getNodeName() {
+    return "#document";
+  }
+
+  @Override
+  public short getNodeType() {
+    return DOCUMENT_NODE;
+  }
+
+  @Override
+  public Document getOwnerDocument() {
+    return null;
+  }
+
+  @Override
+  public String getTextContent() {
+    return null;
+  }
+
+  @Override
+  public String getBaseURI() {
+    return documentURI;
+  }
+
+  // Document
+
+  @Override
+  public Node adoptNode(Node source) {
+    throw readOnly();
+  }
+
+  @Override
+  public Attr createAttribute(String name) {
+    throw readOnly();
+  }
+
+  @Override
+  public Attr createAttributeNS(String namespaceURI, String qualifiedName) {
+    throw readOnly();
+  }
+
+  @Override
+  public CDATASection createCDATASection(String data) {
+    throw readOnly();
+  }
+
+  @Override
+  public Comment createComment(String data) {
+    throw readOnly();
+  }
+
+  @Override
+  public DocumentFragment createDocumentFragment() {
+    throw readOnly();
+  }
+
+  @Override
+  public Element createElement(String tagName) {
+    throw readOnly();
+  }
+
+  @Override
+  public Element createElementNS(String namespaceURI, String qualifiedName) {
+    throw readOnly();
+  }
+
+  @Override
+  public EntityReference createEntityReference(String name) {
+    throw readOnly();
+  }
+
+  @Override
+  public ProcessingInstruction createProcessingInstruction(String target, String data) {
+    throw readOnly();
+  }
+
+  @Override
+  public Text createTextNode(String data) {
+    throw readOnly();
+  }
+
+  @Override
+  public DocumentType getDoctype() {
+    return null;
+  }
+
+  @Override
+  public Element getDocumentElement() {
+    for (int i = firstChildren[0]; i != NONE; i = nextSiblings[i])
+      if (nameIds[i] >= 0)
+        return (Element) node(i);
+    return null;
+  }
+
+  @Override
+  public String getDocumentURI() {
+    return documentURI;
+  }
+
+  @Override
+  public DOMConfiguration getDomConfig() {
+    return null;
+  }
+
+  @Override
+  public Element getElementById(String elementId) {
+    return null;
+  }
+
+  @Override
+  public NodeList getElementsByTagName(String tagname) {
+    return new ElementList(this, 0, tagname);
+  }
+
+  @Override
+  public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+    return namespaceURI == null || "*".equals(namespaceURI) ? getElementsByTagName(localName)
+        : EMPTY_LIST;
+  }
+
+  @Override
+  public DOMImplementation getImplementation() {
+    DOMImplementation result = implementation;
+    if (result == null) {
+      try {
+        implementation = result = DocumentBuilderFactory.newInstance()
+            .newDocumentBuilder()
+            .getDOMImplementation();
+      } catch (Exception e) {
+        throw new DOMException(DOMException.NOT_SUPPORTED_ERR, e.getMessage());
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public String getInputEncoding() {
+    return null;
+  }
+
+  @Override
+  public boolean getStrictErrorChecking() {
+    return true;
+  }
+
+  @Override
+  public String getXmlEncoding() {
+    return null;
+  }
+
+  @Override
+  public boolean getXmlStandalone() {
+    return false;
+  }
+
+  @Override
+  public String getXmlVersion() {
+    return "1.0";
+  }
+
+  @Override
+  public Node importNode(Node importedNode, boolean deep) {
+    throw readOnly();
+  }
+
+  @Override
+  public void normalizeDocument() {
+  }
+
+  @Override
+  public Node renameNode(Node n, String namespaceURI, String qualifiedName) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setDocumentURI(String documentURI) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setStrictErrorChecking(boolean strictErrorChecking) {
+  }
+
+  @Override
+  public void setXmlStandalone(boolean xmlStandalone) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setXmlVersion(String xmlVersion) {
+    throw readOnly();
+  }
+}
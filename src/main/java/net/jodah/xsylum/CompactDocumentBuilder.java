@@ -0,0 +1,311 @@
+package net.jodah.xsylum;
+
+import static net.jodah.xsylum.CompactDocument.CDATA;
+import static net.jodah.xsylum.CompactDocument.DOCUMENT;
+import static net.jodah.xsylum.CompactDocument.NONE;
+import static net.jodah.xsylum.CompactDocument.TEXT;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.ext.DefaultHandler2;
+
+/**
+ * Builds {@link CompactDocument}s from SAX events or from existing documents. Nodes are appended in
+ * document order into growable arrays, which are trimmed to size once the document is complete.
+ * 
+ * @author Jonathan Halterman
+ */
+final class CompactDocumentBuilder extends DefaultHandler2 {
+  private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+  private static final SAXParserFactory FACTORY = SAXParserFactory.newInstance();
+  private static final Queue<SAXParser> PARSERS = new ConcurrentLinkedQueue<SAXParser>();
+
+  private int[] parents = new int[64];
+  private int[] firstChildren = new int[64];
+  private int[] nextSiblings = new int[64];
+  private int[] nameIds = new int[64];
+  private int[] offsets = new int[64];
+  private int[] lengths = new int[64];
+  private int nodeCount;
+  private int[] attributeNameIds = new int[16];
+  private int[] attributeOffsets = new int[16];
+  private int[] attributeLengths = new int[16];
+  private int attributeCount;
+  private char[] chars = new char[256];
+  private int charCount;
+  private final Map<String, Integer> nameIndex = new HashMap<String, Integer>();
+  private String[] names = new String[16];
+
+  /** The open nodes and the last child of each */
+  private int[] openNodes = new int[16];
+  private int[] lastChildren = new int[16];
+  private int depth;
+  private boolean inCData;
+
+  CompactDocumentBuilder() {
+    addNode(DOCUMENT);
+    openNodes[0] = 0;
+    lastChildren[0] = NONE;
+  }
+
+  /**
+   * Parses the {@code source} into a CompactDocument.
+   */
+  static CompactDocument parse(InputSource source) throws Exception {
+    SAXParser parser = PARSERS.poll();
+    if (parser == null) {
+      synchronized (FACTORY) {
+        parser = FACTORY.newSAXParser();
+      }
+    }
+
+    try {
+      CompactDocumentBuilder builder = new CompactDocumentBuilder();
+      parser.getXMLReader().setProperty(LEXICAL_HANDLER, builder);
+      parser.parse(source, builder);
+      return builder.build(source.getSystemId());
+    } finally {
+      parser.reset();
+      if (PARSERS.size() < ParserPool.DEFAULT_MAX_IDLE)
+        PARSERS.offer(parser);
+    }
+  }
+
+  /**
+   * Builds a CompactDocument with the same content as the {@code document}. As when parsing,
+   * comments and processing instructions are not retained.
+   */
+  static CompactDocument build(Document document) {
+    CompactDocumentBuilder builder = new CompactDocumentBuilder();
+    Node node = document.getFirstChild();
+    while (node != null) {
+      short type = node.getNodeType();
+      if (type == Node.ELEMENT_NODE)
+        builder.startElement(node.getNodeName(), node.getAttributes());
+      else if (type == Node.TEXT_NODE)
+        builder.text(node.getNodeValue(), false);
+      else if (type == Node.CDATA_SECTION_NODE) {
+        builder.startCDATA();
+        builder.text(node.getNodeValue(), true);
+        builder.endCDATA();
+      }
+
+      // Entity references are transparent, with their children appended to the current element
+      Node next = type == Node.ELEMENT_NODE || type == Node.ENTITY_REFERENCE_NODE
+          ? node.getFirstChild() : null;
+      for (Node current = node; next == null && current != document;
+          current = current.getParentNode()) {
+        if (current.getNodeType() == Node.ELEMENT_NODE)
+          builder.endElement(null, null, null);
+        next = current.getNextSibling();
+      }
+      node = next;
+    }
+
+    return builder.build(document.getDocumentURI());
+  }
+
+  /**
+   * Returns the built document.
+   */
+  CompactDocument build(String documentURI) {
+    int n = nodeCount;
+    int a = attributeCount;
+    return new CompactDocument(Arrays.copyOf(parents, n), Arrays.copyOf(firstChildren, n),
+        Arrays.copyOf(nextSiblings, n), Arrays.copyOf(nameIds, n), Arrays.copyOf(offsets, n),
+        Arrays.copyOf(lengths, n), Arrays.copyOf(attributeNameIds, a),
+        Arrays.copyOf(attributeOffsets, a), Arrays.copyOf(attributeLengths, a),
+        Arrays.copyOf(names, nameIndex.size()), nameIndex, Arrays.copyOf(chars, charCount),
+        documentURI);
+  }
+
+  /**
+   * Appends text to the current element, merging it with a preceding text node.
+   */
+  private void text(char[] ch, int start, int length, boolean cdata) {
+    int last = lastChildren[depth];
+    if (last == NONE || nameIds[last] != (cdata ? CDATA : TEXT) || !isCharsTail(last)) {
+      last = addNode(cdata ? CDATA : TEXT);
+      offsets[last] = charCount;
+    }
+
+    appendChars(ch, start, length);
+    lengths[last] += length;
+  }
+
+  /**
+   * Appends the {@code value} to the current element, merging it with a preceding text node.
+   */
+  private void text(String value, boolean cdata) {
+    int last = lastChildren[depth];
+    if (last == NONE || nameIds[last] != (cdata ? CDATA : TEXT) || !isCharsTail(last)) {
+      last = addNode(cdata ? CDATA : TEXT);
+      offsets[last] = charCount;
+    }
+
+    ensureChars(value.length());
+    value.getChars(0, value.length(), chars, charCount);
+    charCount += value.length();
+    lengths[last] += value.length();
+  }
+
+  private void startElement(String name, NamedNodeMap attributes) {
+    int node = addNode(nameId(name));
+    int length = attributes.getLength();
+    offsets[node] = attributeCount;
+    lengths[node] = length;
+    for (int i = 0; i < length; i++) {
+      Node attribute = attributes.item(i);
+      addAttribute(attribute.getNodeName(), attribute.getNodeValue());
+    }
+
+    pushNode(node);
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes) {
+    int node = addNode(nameId(qName));
+    int length = attributes.getLength();
+    offsets[node] = attributeCount;
+    lengths[node] = length;
+    for (int i = 0; i < length; i++)
+      addAttribute(attributes.getQName(i), attributes.getValue(i));
+
+    pushNode(node);
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) {
+    depth--;
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int length) {
+    text(ch, start, length, inCData);
+  }
+
+  @Override
+  public void ignorableWhitespace(char[] ch, int start, int length) {
+    text(ch, start, length, false);
+  }
+
+  @Override
+  public void startCDATA() {
+    inCData = true;
+    // Empty CDATA sections are retained as nodes
+    int node = addNode(CDATA);
+    offsets[node] = charCount;
+  }
+
+  @Override
+  public void endCDATA() {
+    inCData = false;
+  }
+
+  private void addAttribute(String name, String value) {
+    if (attributeCount == attributeNameIds.length) {
+      int capacity = attributeCount * 2;
+      attributeNameIds = Arrays.copyOf(attributeNameIds, capacity);
+      attributeOffsets = Arrays.copyOf(attributeOffsets, capacity);
+      attributeLengths = Arrays.copyOf(attributeLengths, capacity);
+    }
+
+    attributeNameIds[attributeCount] = nameId(name);
+    attributeOffsets[attributeCount] = charCount;
+    attributeLengths[attributeCount] = value.length();
+    attributeCount++;
+    ensureChars(value.length());
+    value.getChars(0, value.length(), chars, charCount);
+    charCount += value.length();
+  }
+
+  /**
+   * Adds a node of the {@code nameId} as the last child of the current node.
+   */
+  private int addNode(int nameId) {
+    if (nodeCount == parents.length) {
+      int capacity = nodeCount * 2;
+      parents = Arrays.copyOf(parents, capacity);
+      firstChildren = Arrays.copyOf(firstChildren, capacity);
+      nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+      nameIds = Arrays.copyOf(nameIds, capacity);
+      offsets = Arrays.copyOf(offsets, capacity);
+      lengths = Arrays.copyOf(lengths, capacity);
+    }
+
+    int node = nodeCount++;
+    nameIds[node] = nameId;
+    firstChildren[node] = NONE;
+    nextSiblings[node] = NONE;
+    offsets[node] = 0;
+    lengths[node] = 0;
+    if (node == 0) {
+      parents[node] = NONE;
+      return node;
+    }
+
+    int parent = openNodes[depth];
+    parents[node] = parent;
+    int last = lastChildren[depth];
+    if (last == NONE)
+      firstChildren[parent] = node;
+    else
+      nextSiblings[last] = node;
+    lastChildren[depth] = node;
+    return node;
+  }
+
+  private void pushNode(int node) {
+    if (++depth == openNodes.length) {
+      openNodes = Arrays.copyOf(openNodes, depth * 2);
+      lastChildren = Arrays.copyOf(lastChildren, depth * 2);
+    }
+
+    openNodes[depth] = node;
+    lastChildren[depth] = NONE;
+  }
+
+  private void appendChars(char[] ch, int start, int length) {
+    ensureChars(length);
+    System.arraycopy(ch, start, chars, charCount, length);
+    charCount += length;
+  }
+
+  private void ensureChars(int length) {
+    if (charCount + length > chars.length)
+      chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+  }
+
+  /**
+   * Returns whether the chars for the {@code node} are at the end of the char buffer, allowing
+   * further chars to be appended to it.
+   */
+  private boolean isCharsTail(int node) {
+    return offsets[node] + lengths[node] == charCount;
+  }
+
+  private int nameId(String name) {
+    Integer id = nameIndex.get(name);
+    if (id == null) {
+      id = nameIndex.size();
+      if (id == names.length)
+        names = Arrays.copyOf(names, id * 2);
+      names[id] = name;
+      nameIndex.put(name, id);
+    }
+
+    return id;
+  }
+}
@@ -0,0 +1,197 @@
+package net.jodah.xsylum;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * A read-only view of an element in a {@link CompactDocument}.
+ * 
+ * @author Jonathan Halterman
+ */
+final class CompactElement extends CompactNode implements Element {
+  CompactElement(CompactDocument document, CompactDocument.Views views, int index) {
+    super(document, views, index);
+  }
+
+  @Override
+  public String getAttribute(String name) {
+    int attribute = attributeIndex(name);
+    return attribute == CompactDocument.NONE ? "" : attributeValue(attribute);
+  }
+
+  @Override
+  public String getAttributeNS(String namespaceURI, String localName) {
+    return namespaceURI == null ? getAttribute(localName) : "";
+  }
+
+  @Override
+  public Attr getAttributeNode(String name) {
+    int attribute = attributeIndex(name);
+    return attribute == CompactDocument.NONE ? null : document.attribute(attribute, index);
+  }
+
+  @Override
+  public Attr getAttributeNodeNS(String namespaceURI, String localName) {
+    return namespaceURI == null ? getAttributeNode(localName) : null;
+  }
+
+  @Override
+  public NamedNodeMap getAttributes() {
+    return new AttributeMap();
+  }
+
+  @Override
+  public NodeList getElementsByTagName(String name) {
+    return new ElementList(document, index, name);
+  }
+
+  @Override
+  public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+    return namespaceURI == null || "*".equals(namespaceURI) ? getElementsByTagName(localName)
+        : EMPTY_LIST;
+  }
+
+  @Override
+  public String getNodeName() {
+    return document.names[document.nameIds[index]];
+  }
+
+  @Override
+  public short getNodeType() {
+    return ELEMENT_NODE;
+  }
+
+  @Override
+  public TypeInfo getSchemaTypeInfo() {
+    return null;
+  }
+
+  @Override
+  public String getTagName() {
+    return getNodeName();
+  }
+
+  @Override
+  public boolean hasAttribute(String name) {
+    return attributeIndex(name) != CompactDocument.NONE;
+  }
+
+  @Override
+  public boolean hasAttributeNS(String namespaceURI, String localName) {
+    return namespaceURI == null && hasAttribute(localName);
+  }
+
+  @Override
+  public boolean hasAttributes() {
+    return document.lengths[index] > 0;
+  }
+
+  @Override
+  public void removeAttribute(String name) {
+    throw readOnly();
+  }
+
+  @Override
+  public void removeAttributeNS(String namespaceURI, String localName) {
+    throw readOnly();
+  }
+
+  @Override
+  public Attr removeAttributeNode(Attr oldAttr) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setAttribute(String name, String value) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setAttributeNS(String namespaceURI, String qualifiedName, String value) {
+    throw readOnly();
+  }
+
+  @Override
+  public Attr setAttributeNode(Attr newAttr) {
+    throw readOnly();
+  }
+
+  @Override
+  public Attr setAttributeNodeNS(Attr newAttr) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setIdAttribute(String name, boolean isId) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setIdAttributeNS(String namespaceURI, String localName, boolean isId) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setIdAttributeNode(Attr idAttr, boolean isId) {
+    throw readOnly();
+  }
+
+  private int attributeIndex(String name) {
+    return document.attributeIndex(index, name);
+  }
+
+  private String attributeValue(int attribute) {
+    return new String(document.chars, document.attributeOffsets[attribute],
+        document.attributeLengths[attribute]);
+  }
+
+  /**
+   * The attributes of the element.
+   */
+  private final class AttributeMap implements NamedNodeMap {
+    @Override
+    public int getLength() {
+      return document.lengths[index];
+    }
+
+    @Override
+    public Node getNamedItem(String name) {
+      return getAttributeNode(name);
+    }
+
+    @Override
+    public Node getNamedItemNS(String namespaceURI, String localName) {
+      return getAttributeNodeNS(namespaceURI, localName);
+    }
+
+    @Override
+    public Node item(int position) {
+      return position < 0 || position >= getLength() ? null
+          : document.attribute(document.offsets[index] + position, index);
+    }
+
+    @Override
+    public Node removeNamedItem(String name) {
+      throw readOnly();
+    }
+
+    @Override
+    public Node removeNamedItemNS(String namespaceURI, String localName) {
+      throw readOnly();
+    }
+
+    @Override
+    public Node setNamedItem(Node arg) {
+      throw readOnly();
+    }
+
+    @Override
+    public Node setNamedItemNS(Node arg) {
+      throw readOnly();
+    }
+  }
+}
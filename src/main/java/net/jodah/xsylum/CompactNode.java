@@ -0,0 +1,379 @@
+package net.jodah.xsylum;
+
+import static net.jodah.xsylum.CompactDocument.NONE;
+
+import java.util.Arrays;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * A read-only view of a node in a {@link CompactDocument}.
+ * 
+ * @author Jonathan Halterman
+ */
+abstract class CompactNode implements Node {
+  static final NodeList EMPTY_LIST = new NodeList() {
+    @Override
+    public Node item(int index) {
+      return null;
+    }
+
+    @Override
+    public int getLength() {
+      return 0;
+    }
+  };
+
+  final CompactDocument document;
+  /** The views that this view belongs to, retained to keep them canonical while it is in use */
+  final CompactDocument.Views views;
+  final int index;
+
+  CompactNode(CompactDocument document, CompactDocument.Views views, int index) {
+    this.document = document == null ? (CompactDocument) this : document;
+    this.views = views;
+    this.index = index;
+  }
+
+  static DOMException readOnly() {
+    return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+        "Compact documents are read-only");
+  }
+
+  @Override
+  public Node appendChild(Node newChild) {
+    throw readOnly();
+  }
+
+  @Override
+  public Node cloneNode(boolean deep) {
+    throw new DOMException(DOMException.NOT_SUPPORTED_ERR, "Compact nodes cannot be cloned");
+  }
+
+  @Override
+  public short compareDocumentPosition(Node other) {
+    if (other == this)
+      return 0;
+    if (!(other instanceof CompactNode) || ((CompactNode) other).document != document)
+      return (short) (DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+          | (System.identityHashCode(this) < System.identityHashCode(other)
+              ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING));
+
+    CompactNode that = (CompactNode) other;
+    int treeIndex = treeIndex();
+    int otherTreeIndex = that.treeIndex();
+    if (treeIndex == otherTreeIndex) {
+      // An element and its attribute, or attributes of the same element
+      if (!isAttribute())
+        return DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING;
+      if (!that.isAttribute())
+        return DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING;
+      return (short) (DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+          | (index < that.index ? DOCUMENT_POSITION_FOLLOWING : DOCUMENT_POSITION_PRECEDING));
+    }
+
+    if (treeIndex < otherTreeIndex)
+      return !isAttribute() && otherTreeIndex < document.subtreeEnd(treeIndex)
+          ? DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING
+          : DOCUMENT_POSITION_FOLLOWING;
+    return !that.isAttribute() && treeIndex < document.subtreeEnd(otherTreeIndex)
+        ? DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING
+        : DOCUMENT_POSITION_PRECEDING;
+  }
+
+  @Override
+  public NamedNodeMap getAttributes() {
+    return null;
+  }
+
+  @Override
+  public String getBaseURI() {
+    return document.getBaseURI();
+  }
+
+  @Override
+  public NodeList getChildNodes() {
+    return new ChildList(document, index);
+  }
+
+  @Override
+  public Object getFeature(String feature, String version) {
+    return isSupported(feature, version) ? this : null;
+  }
+
+  @Override
+  public Node getFirstChild() {
+    return document.node(document.firstChildren[index]);
+  }
+
+  @Override
+  public Node getLastChild() {
+    int last = NONE;
+    for (int i = document.firstChildren[index]; i != NONE; i = document.nextSiblings[i])
+      last = i;
+    return document.node(last);
+  }
+
+  @Override
+  public String getLocalName() {
+    return null;
+  }
+
+  @Override
+  public String getNamespaceURI() {
+    return null;
+  }
+
+  @Override
+  public Node getNextSibling() {
+    return document.node(document.nextSiblings[index]);
+  }
+
+  @Override
+  public String getNodeValue() {
+    return null;
+  }
+
+  @Override
+  public Document getOwnerDocument() {
+    return document;
+  }
+
+  @Override
+  public Node getParentNode() {
+    return document.node(document.parents[index]);
+  }
+
+  @Override
+  public String getPrefix() {
+    return null;
+  }
+
+  @Override
+  public Node getPreviousSibling() {
+    int parent = document.parents[index];
+    if (parent == NONE)
+      return null;
+
+    int previous = NONE;
+    for (int i = document.firstChildren[parent]; i != index; i = document.nextSiblings[i])
+      previous = i;
+    return document.node(previous);
+  }
+
+  @Override
+  public String getTextContent() {
+    return document.appendTextContent(index, new StringBuilder()).toString();
+  }
+
+  @Override
+  public Object getUserData(String key) {
+    return null;
+  }
+
+  @Override
+  public boolean hasAttributes() {
+    return false;
+  }
+
+  @Override
+  public boolean hasChildNodes() {
+    return document.firstChildren[index] != NONE;
+  }
+
+  @Override
+  public Node insertBefore(Node newChild, Node refChild) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean isDefaultNamespace(String namespaceURI) {
+    return false;
+  }
+
+  @Override
+  public boolean isEqualNode(Node arg) {
+    return arg == this;
+  }
+
+  @Override
+  public boolean isSameNode(Node other) {
+    return other == this;
+  }
+
+  @Override
+  public boolean isSupported(String feature, String version) {
+    return ("Core".equalsIgnoreCase(feature) || "XML".equalsIgnoreCase(feature))
+        && (version == null || version.isEmpty() || "1.0".equals(version)
+            || "2.0".equals(version) || "3.0".equals(version));
+  }
+
+  @Override
+  public String lookupNamespaceURI(String prefix) {
+    return null;
+  }
+
+  @Override
+  public String lookupPrefix(String namespaceURI) {
+    return null;
+  }
+
+  @Override
+  public void normalize() {
+  }
+
+  @Override
+  public Node removeChild(Node oldChild) {
+    throw readOnly();
+  }
+
+  @Override
+  public Node replaceChild(Node newChild, Node oldChild) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setNodeValue(String nodeValue) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setPrefix(String prefix) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setTextContent(String textContent) {
+    throw readOnly();
+  }
+
+  @Override
+  public Object setUserData(String key, Object data, UserDataHandler handler) {
+    throw readOnly();
+  }
+
+  @Override
+  public String toString() {
+    return "[" + getNodeName() + ": " + getNodeValue() + "]";
+  }
+
+  /**
+   * Returns the index of the node in the document tree, which for attributes is the index of the
+   * owner element.
+   */
+  int treeIndex() {
+    return index;
+  }
+
+  boolean isAttribute() {
+    return false;
+  }
+
+  /**
+   * The child nodes of a node. Tracks the last accessed child so that sequential access by index
+   * is constant time per item.
+   */
+  static final class ChildList implements NodeList {
+    private final CompactDocument document;
+    private final int parent;
+    private int length = -1;
+    private int lastPosition = -1;
+    private int lastIndex;
+
+    ChildList(CompactDocument document, int parent) {
+      this.document = document;
+      this.parent = parent;
+    }
+
+    @Override
+    public int getLength() {
+      if (length == -1) {
+        int count = 0;
+        for (int i = document.firstChildren[parent]; i != NONE; i = document.nextSiblings[i])
+          count++;
+        length = count;
+      }
+
+      return length;
+    }
+
+    @Override
+    public Node item(int position) {
+      if (position < 0)
+        return null;
+
+      int i;
+      int current;
+      if (lastPosition != -1 && position >= lastPosition) {
+        i = lastIndex;
+        current = lastPosition;
+      } else {
+        i = document.firstChildren[parent];
+        current = 0;
+      }
+
+      for (; i != NONE && current < position; current++)
+        i = document.nextSiblings[i];
+      if (i == NONE)
+        return null;
+
+      lastPosition = position;
+      lastIndex = i;
+      return document.node(i);
+    }
+  }
+
+  /**
+   * The descendant elements of a node matching a tag name, in document order.
+   */
+  static final class ElementList implements NodeList {
+    private final CompactDocument document;
+    private final int root;
+    private final int nameId;
+    private final boolean all;
+    private int[] matches;
+
+    ElementList(CompactDocument document, int root, String tagName) {
+      this.document = document;
+      this.root = root;
+      all = "*".equals(tagName);
+      nameId = all ? NONE : document.nameId(tagName);
+    }
+
+    @Override
+    public int getLength() {
+      return matches().length;
+    }
+
+    @Override
+    public Node item(int index) {
+      int[] matches = matches();
+      return index < 0 || index >= matches.length ? null : document.node(matches[index]);
+    }
+
+    private int[] matches() {
+      if (matches == null) {
+        int[] result = new int[8];
+        int count = 0;
+        if (all || nameId != NONE) {
+          for (int i = root + 1, end = document.subtreeEnd(root); i < end; i++) {
+            int id = document.nameIds[i];
+            if (all ? id >= 0 : id == nameId) {
+              if (count == result.length)
+                result = Arrays.copyOf(result, count * 2);
+              result[count++] = i;
+            }
+          }
+        }
+        matches = Arrays.copyOf(result, count);
+      }
+
+      return matches;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package net.jodah.xsylum;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * A read-only view of a text node in a {@link CompactDocument}.
+ * 
+ * @author Jonathan Halterman
+ */
+class CompactText extends CompactNode implements Text {
+  CompactText(CompactDocument document, CompactDocument.Views views, int index) {
+    super(document, views, index);
+  }
+
+  @Override
+  public void appendData(String arg) {
+    throw readOnly();
+  }
+
+  @Override
+  public void deleteData(int offset, int count) {
+    throw readOnly();
+  }
+
+  @Override
+  public String getData() {
+    return document.text(index);
+  }
+
+  @Override
+  public int getLength() {
+    return document.lengths[index];
+  }
+
+  @Override
+  public String getNodeName() {
+    return "#text";
+  }
+
+  @Override
+  public short getNodeType() {
+    return TEXT_NODE;
+  }
+
+  @Override
+  public String getNodeValue() {
+    return getData();
+  }
+
+  @Override
+  public String getTextContent() {
+    return getData();
+  }
+
+  @Override
+  public String getWholeText() {
+    int first = index;
+    Node previous = getPreviousSibling();
+    for (; previous instanceof CompactText; previous = previous.getPreviousSibling())
+      first = ((CompactText) previous).index;
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = first; i != CompactDocument.NONE && isText(i); i = document.nextSiblings[i])
+      sb.append(document.chars, document.offsets[i], document.lengths[i]);
+    return sb.toString();
+  }
+
+  @Override
+  public void insertData(int offset, String arg) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean isElementContentWhitespace() {
+    return false;
+  }
+
+  @Override
+  public void replaceData(int offset, int count, String arg) {
+    throw readOnly();
+  }
+
+  @Override
+  public Text replaceWholeText(String content) {
+    throw readOnly();
+  }
+
+  @Override
+  public void setData(String data) {
+    throw readOnly();
+  }
+
+  @Override
+  public Text splitText(int offset) {
+    throw readOnly();
+  }
+
+  @Override
+  public String substringData(int offset, int count) {
+    int length = getLength();
+    if (offset < 0 || offset > length || count < 0)
+      throw new DOMException(DOMException.INDEX_SIZE_ERR, "Invalid offset or count");
+    return new String(document.chars, document.offsets[index] + offset,
+        Math.min(count, length - offset));
+  }
+
+  private boolean isText(int index) {
+    int nameId = document.nameIds[index];
+    return nameId == CompactDocument.TEXT || nameId == CompactDocument.CDATA;
+  }
+}
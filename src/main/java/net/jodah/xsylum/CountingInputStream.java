@@ -0,0 +1,62 @@
+package net.jodah.xsylum;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from an InputStream, optionally failing once more than a limit have been
+ * read.
+ * 
+ * @author Jonathan Halterman
+ */
+final class CountingInputStream extends FilterInputStream {
+  private final long limit;
+  long count;
+
+  CountingInputStream(InputStream in) {
+    this(in, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a stream that throws an IOException once more than {@code limit} bytes are read.
+   */
+  CountingInputStream(InputStream in, long limit) {
+    super(in);
+    this.limit = limit;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = in.read();
+    if (b != -1)
+      count(1);
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    int n = in.read(b, off, len);
+    if (n > 0)
+      count(n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = in.skip(n);
+    count(skipped);
+    return skipped;
+  }
+
+  private void count(long n) throws IOException {
+    count += n;
+    if (count > limit)
+      throw new IOException("Document exceeds the maximum size of " + limit + " bytes");
+  }
+}
@@ -0,0 +1,62 @@
+package net.jodah.xsylum;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Counts the characters read from a Reader, optionally failing once more than a limit have been
+ * read.
+ * 
+ * @author Jonathan Halterman
+ */
+final class CountingReader extends FilterReader {
+  private final long limit;
+  long count;
+
+  CountingReader(Reader in) {
+    this(in, Long.MAX_VALUE);
+  }
+
+  /**
+   * Creates a reader that throws an IOException once more than {@code limit} characters are read.
+   */
+  CountingReader(Reader in, long limit) {
+    super(in);
+    this.limit = limit;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int c = in.read();
+    if (c != -1)
+      count(1);
+    return c;
+  }
+
+  @Override
+  public int read(char[] cbuf, int off, int len) throws IOException {
+    int n = in.read(cbuf, off, len);
+    if (n > 0)
+      count(n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = in.skip(n);
+    count(skipped);
+    return skipped;
+  }
+
+  private void count(long n) throws IOException {
+    count += n;
+    if (count > limit)
+      throw new IOException("Document exceeds the maximum size of " + limit + " characters");
+  }
+}
@@ -0,0 +1,439 @@
+package net.jodah.xsylum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A thread-safe cache of documents parsed from files. A cached document is returned for as long as
+ * its file is unchanged, and the file is parsed again once it changes. Files are considered
+ * changed when their modified time or size differ, or with {@link Validation#CONTENT_HASH}, when
+ * their content differs.
+ * 
+ * <p>
+ * The cache is bounded by a maximum number of documents and, optionally, by a maximum weight,
+ * where the weight of a document is the size of its file in bytes. The least recently used
+ * documents are evicted first. When several threads request the same uncached file at once, the
+ * file is parsed only once and the result is shared.
+ * 
+ * <p>
+ * Cached documents are shared by every caller, so they should be treated as read-only. Since DOM
+ * implementations are not guaranteed to be thread-safe even for reads, caches that are used from
+ * many threads should be built with {@link Builder#compact()} to hold read-only compact documents.
+ * 
+ * <pre>
+ * DocumentCache cache = DocumentCache.builder().maximumSize(100).compact().build();
+ * XmlDocument config = cache.get(configPath);
+ * </pre>
+ * 
+ * @author Jonathan Halterman
+ */
+public final class DocumentCache {
+  private final long maximumSize;
+  private final long maximumWeight;
+  private final Validation validation;
+  private final boolean compact;
+  private final ParserPool pool;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  /** Entries in access order, guarded by the lock */
+  private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<Path, Entry>(16, 0.75f,
+      true);
+  /** Guarded by the lock */
+  private long weight;
+  private final ConcurrentMap<Path, FutureTask<Entry>> loads =
+      new ConcurrentHashMap<Path, FutureTask<Entry>>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder loadCount = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * How cached documents are checked for changes to their files.
+   */
+  public enum Validation {
+    /** Files are changed when their last modified time or size differs. */
+    MODIFIED_TIME_AND_SIZE,
+    /**
+     * Files are changed when the SHA-256 hash of their content differs. Each lookup reads the
+     * whole file, which is slower than comparing modified times but detects changes that preserve
+     * them, and ignores changes that do not alter the content.
+     */
+    CONTENT_HASH;
+  }
+
+  /**
+   * Builds DocumentCaches.
+   */
+  public static final class Builder {
+    private long maximumSize = Long.MAX_VALUE;
+    private long maximumWeight = Long.MAX_VALUE;
+    private Validation validation = Validation.MODIFIED_TIME_AND_SIZE;
+    private boolean compact;
+    private ParserPool pool = Xsylum.DEFAULT_POOL;
+
+    Builder() {
+    }
+
+    /**
+     * Returns a new DocumentCache for the configuration.
+     */
+    public DocumentCache build() {
+      return new DocumentCache(this);
+    }
+
+    /**
+     * Caches compact, read-only documents, which use less memory and can be safely read from many
+     * threads. See {@link Xsylum#compactDocumentFor(java.io.InputStream)}.
+     */
+    public Builder compact() {
+      compact = true;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of cached documents. Defaults to unbounded.
+     * 
+     * @throws IllegalArgumentException if {@code maximumSize} is negative
+     */
+    public Builder maximumSize(long maximumSize) {
+      if (maximumSize < 0)
+        throw new IllegalArgumentException("maximumSize must be >= 0");
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum total size in bytes of the files for cached documents. Defaults to
+     * unbounded.
+     * 
+     * @throws IllegalArgumentException if {@code maximumWeight} is negative
+     */
+    public Builder maximumWeight(long maximumWeight) {
+      if (maximumWeight < 0)
+        throw new IllegalArgumentException("maximumWeight must be >= 0");
+      this.maximumWeight = maximumWeight;
+      return this;
+    }
+
+    /**
+     * Sets the {@code pool} that non-compact documents are parsed with.
+     */
+    public Builder pool(ParserPool pool) {
+      if (pool == null)
+        throw new NullPointerException("pool");
+      this.pool = pool;
+      return this;
+    }
+
+    /**
+     * Sets how cached documents are checked for changes to their files. Defaults to
+     * {@link Validation#MODIFIED_TIME_AND_SIZE}.
+     */
+    public Builder validation(Validation validation) {
+      if (validation == null)
+        throw new NullPointerException("validation");
+      this.validation = validation;
+      return this;
+    }
+  }
+
+  /**
+   * A cached document along with the state of its file when it was read.
+   */
+  private static final class Entry {
+    final long modifiedTime;
+    final long size;
+    final byte[] hash;
+    final XmlDocument document;
+
+    Entry(long modifiedTime, long size, byte[] hash, XmlDocument document) {
+      this.modifiedTime = modifiedTime;
+      this.size = size;
+      this.hash = hash;
+      this.document = document;
+    }
+  }
+
+  private DocumentCache(Builder builder) {
+    maximumSize = builder.maximumSize;
+    maximumWeight = builder.maximumWeight;
+    validation = builder.validation;
+    compact = builder.compact;
+    pool = builder.pool;
+  }
+
+  /**
+   * Returns a new Builder for a DocumentCache.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the number of documents that were evicted to keep the cache within its bounds.
+   */
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  /**
+   * Returns the document for the {@code file}. See {@link #get(Path)}.
+   */
+  public XmlDocument get(File file) throws XsylumException {
+    return get(file.toPath());
+  }
+
+  /**
+   * Returns the cached document for the file at the {@code path} if the file is unchanged, else
+   * parses the file, caches the document and returns it.
+   * 
+   * @throws XsylumException if the file cannot be read or parsed
+   */
+  public XmlDocument get(Path path) throws XsylumException {
+    final Path key = path.toAbsolutePath().normalize();
+    BasicFileAttributes attributes = attributesFor(key);
+    byte[] content = null;
+    byte[] hash = null;
+    if (validation == Validation.CONTENT_HASH) {
+      content = read(key);
+      hash = hash(content);
+    }
+
+    Entry entry;
+    lock.lock();
+    try {
+      entry = entries.get(key);
+    } finally {
+      lock.unlock();
+    }
+
+    if (entry != null && isCurrent(entry, attributes, hash)) {
+      recordLookup(true);
+      return entry.document;
+    }
+
+    recordLookup(false);
+    return load(key, attributes, content, hash).document;
+  }
+
+  /**
+   * Returns the fraction of lookups that were served from the cache, else 0 if there have been no
+   * lookups.
+   */
+  public double hitRate() {
+    long hits = this.hits.sum();
+    long total = hits + misses.sum();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * Returns the number of lookups that were served from the cache.
+   */
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Removes the document for the {@code path} from the cache.
+   */
+  public void invalidate(Path path) {
+    Path key = path.toAbsolutePath().normalize();
+    lock.lock();
+    try {
+      Entry entry = entries.remove(key);
+      if (entry != null)
+        weight -= entry.size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes all documents from the cache.
+   */
+  public void invalidateAll() {
+    lock.lock();
+    try {
+      entries.clear();
+      weight = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the number of files that were parsed.
+   */
+  public long loadCount() {
+    return loadCount.sum();
+  }
+
+  /**
+   * Returns the number of lookups that were not served from the cache.
+   */
+  public long missCount() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the number of cached documents.
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the total size in bytes of the files for cached documents.
+   */
+  public long weight() {
+    lock.lock();
+    try {
+      return weight;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("DocumentCache[size=%s, weight=%s, hits=%s, misses=%s, evictions=%s]",
+        size(), weight(), hitCount(), missCount(), evictionCount());
+  }
+
+  /**
+   * Loads the document for the {@code key}, waiting for and sharing the result of any load for the
+   * {@code key} that is already in progress.
+   */
+  private Entry load(final Path key, final BasicFileAttributes attributes, final byte[] content,
+      final byte[] hash) throws XsylumException {
+    FutureTask<Entry> task = new FutureTask<Entry>(new Callable<Entry>() {
+      @Override
+      public Entry call() throws Exception {
+        // Another load may have completed since the lookup
+        Entry current;
+        lock.lock();
+        try {
+          current = entries.get(key);
+        } finally {
+          lock.unlock();
+        }
+        if (current != null && isCurrent(current, attributes, hash))
+          return current;
+
+        XmlDocument document;
+        if (content != null)
+          document = compact ? Xsylum.compactDocumentFor(content) : Xsylum.documentFor(content,
+              pool);
+        else
+          document = compact ? Xsylum.compactDocumentFor(key) : Xsylum.documentFor(key, pool);
+        loadCount.increment();
+        Entry entry = new Entry(attributes.lastModifiedTime().toMillis(), attributes.size(), hash,
+            document);
+        put(key, entry);
+        return entry;
+      }
+    });
+
+    FutureTask<Entry> existing = loads.putIfAbsent(key, task);
+    if (existing == null) {
+      try {
+        task.run();
+      } finally {
+        loads.remove(key, task);
+      }
+    } else
+      task = existing;
+
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof XsylumException)
+        throw (XsylumException) e.getCause();
+      throw new XsylumException(e.getCause(), "Failed to load document from file %s",
+          key.getFileName());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new XsylumException(e, "Interrupted while loading document from file %s",
+          key.getFileName());
+    }
+  }
+
+  private void put(Path key, Entry entry) {
+    lock.lock();
+    try {
+      Entry previous = entries.put(key, entry);
+      if (previous != null)
+        weight -= previous.size;
+      weight += entry.size;
+
+      // Evict least recently used entries, which are first in access order
+      for (Iterator<Entry> i = entries.values().iterator(); i.hasNext()
+          && (entries.size() > maximumSize || weight > maximumWeight);) {
+        Entry eldest = i.next();
+        i.remove();
+        weight -= eldest.size;
+        evictions.increment();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private boolean isCurrent(Entry entry, BasicFileAttributes attributes, byte[] hash) {
+    if (hash != null)
+      return Arrays.equals(entry.hash, hash);
+    return entry.modifiedTime == attributes.lastModifiedTime().toMillis()
+        && entry.size == attributes.size();
+  }
+
+  private void recordLookup(boolean hit) {
+    (hit ? hits : misses).increment();
+    XsylumListener listener = Xsylum.listener;
+    if (listener != null)
+      listener.cacheAccessed("document", hit);
+  }
+
+  private static BasicFileAttributes attributesFor(Path path) throws XsylumException {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException e) {
+      throw new XsylumException(e, "Failed to read file %s", path.getFileName());
+    }
+  }
+
+  private static byte[] read(Path path) throws XsylumException {
+    try {
+      return Files.readAllBytes(path);
+    } catch (IOException e) {
+      throw new XsylumException(e, "Failed to read file %s", path.getFileName());
+    }
+  }
+
+  private static byte[] hash(byte[] content) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(content);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package net.jodah.xsylum;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file through a sequence of memory-mapped windows, so that reads are served from memory
+ * rather than by read calls on the file.
+ * 
+ * @author Jonathan Halterman
+ */
+final class MappedInputStream extends InputStream {
+  /** Files smaller than this are read into memory with a single channel read instead of mapped */
+  static final int MAPPING_THRESHOLD = 1 << 20;
+  static final long WINDOW_SIZE = 256L << 20;
+
+  private final FileChannel channel;
+  private final long size;
+  private final long windowSize;
+  private long windowEnd;
+  private ByteBuffer buffer;
+
+  MappedInputStream(FileChannel channel, long windowSize) throws IOException {
+    this.channel = channel;
+    this.size = channel.size();
+    this.windowSize = windowSize;
+  }
+
+  /**
+   * Opens an InputStream for the file at the {@code path}, which is mapped into memory if it is at
+   * least {@link #MAPPING_THRESHOLD} bytes, else read fully into memory.
+   */
+  static InputStream open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      long size = channel.size();
+      if (size >= MAPPING_THRESHOLD)
+        return new MappedInputStream(channel, WINDOW_SIZE);
+
+      byte[] bytes = new byte[(int) size];
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      while (buffer.hasRemaining())
+        if (channel.read(buffer) == -1)
+          throw new EOFException("Unexpected end of file " + path);
+      channel.close();
+      return new ByteArrayInputStream(bytes);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public int available() {
+    return buffer == null ? 0 : buffer.remaining();
+  }
+
+  @Override
+  public void close() throws IOException {
+    buffer = null;
+    channel.close();
+  }
+
+  @Override
+  public int read() throws IOException {
+    return nextWindow() ? buffer.get() & 0xff : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0)
+      return 0;
+    if (!nextWindow())
+      return -1;
+
+    int n = Math.min(len, buffer.remaining());
+    buffer.get(b, off, n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = 0;
+    while (skipped < n && nextWindow()) {
+      int count = (int) Math.min(n - skipped, buffer.remaining());
+      buffer.position(buffer.position() + count);
+      skipped += count;
+    }
+
+    return skipped;
+  }
+
+  /**
+   * Maps the next window of the file if the current window is exhausted, returning false if the
+   * end of the file has been reached.
+   */
+  private boolean nextWindow() throws IOException {
+    if (buffer != null && buffer.hasRemaining())
+      return true;
+    if (windowEnd >= size)
+      return false;
+
+    long position = windowEnd;
+    long length = Math.min(windowSize, size - position);
+    buffer = channel.map(MapMode.READ_ONLY, position, length);
+    windowEnd = position + length;
+    return true;
+  }
+}
@@ -0,0 +1,116 @@
+package net.jodah.xsylum;
+
+import org.w3c.dom.Node;
+
+/**
+ * Parses numbers directly from the character data of text, CDATA and attribute nodes. Integers
+ * are parsed with the same semantics as {@link Integer#parseInt(String)} and
+ * {@link Long#parseLong(String)}, but without copying a compact node's characters into a String.
+ * 
+ * @author Jonathan Halterman
+ */
+final class Numbers {
+  private Numbers() {
+  }
+
+  /**
+   * Returns whether the {@code node} has a value that can be parsed, which is the case for text,
+   * CDATA and attribute nodes.
+   */
+  static boolean hasValue(Node node) {
+    short type = node.getNodeType();
+    return type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE
+        || type == Node.ATTRIBUTE_NODE;
+  }
+
+  /**
+   * Parses the value of the {@code node} as a double.
+   * 
+   * @throws NumberFormatException if the value is not a valid double
+   */
+  static double parseDouble(Node node) {
+    return Double.parseDouble(node.getNodeValue());
+  }
+
+  /**
+   * Parses the value of the {@code node} as an int.
+   * 
+   * @throws NumberFormatException if the value is not a valid int
+   */
+  static int parseInt(Node node) {
+    return (int) parseLong(node, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Parses the value of the {@code node} as a long.
+   * 
+   * @throws NumberFormatException if the value is not a valid long
+   */
+  static long parseLong(Node node) {
+    return parseLong(node, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Parses the characters of {@code s} from {@code start} to {@code end} as a decimal integer
+   * between {@code min} and {@code max}.
+   * 
+   * @throws NumberFormatException if the characters are not a valid integer in range
+   */
+  static long parseLong(CharSequence s, int start, int end, long min, long max) {
+    if (start >= end)
+      throw formatException(s, start, end);
+
+    int i = start;
+    boolean negative = false;
+    long limit = -max;
+    char first = s.charAt(i);
+    if (first < '0') {
+      if (first == '-') {
+        negative = true;
+        limit = min;
+      } else if (first != '+')
+        throw formatException(s, start, end);
+      if (++i == end)
+        throw formatException(s, start, end);
+    }
+
+    // Accumulate negatively to handle the range of min
+    long multiplyMin = limit / 10;
+    long result = 0;
+    while (i < end) {
+      int digit = Character.digit(s.charAt(i++), 10);
+      if (digit < 0 || result < multiplyMin)
+        throw formatException(s, start, end);
+      result *= 10;
+      if (result < limit + digit)
+        throw formatException(s, start, end);
+      result -= digit;
+    }
+
+    return negative ? result : -result;
+  }
+
+  private static long parseLong(Node node, long min, long max) {
+    if (node instanceof CompactText) {
+      CompactText text = (CompactText) node;
+      CompactDocument document = text.document;
+      int offset = document.offsets[text.index];
+      return parseLong(document.charSequence, offset, offset + document.lengths[text.index], min,
+          max);
+    }
+    if (node instanceof CompactAttr) {
+      CompactAttr attr = (CompactAttr) node;
+      CompactDocument document = attr.document;
+      int offset = document.attributeOffsets[attr.index];
+      return parseLong(document.charSequence, offset,
+          offset + document.attributeLengths[attr.index], min, max);
+    }
+
+    String value = node.getNodeValue();
+    return parseLong(value, 0, value.length(), min, max);
+  }
+
+  private static NumberFormatException formatException(CharSequence s, int start, int end) {
+    return new NumberFormatException("For input string: \"" + s.subSequence(start, end) + "\"");
+  }
+}
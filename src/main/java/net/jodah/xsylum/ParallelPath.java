@@ -0,0 +1,531 @@
+package net.jodah.xsylum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Pattern;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Evaluates descendant expressions against {@link CompactDocument}s in parallel. An expression of
+ * the form {@code //step/...} selects the same nodes from a subtree whether it is evaluated
+ * against the subtree alone or against the whole document, provided that its steps and predicates
+ * only look down the tree from the nodes they are evaluated against, and that the predicates of
+ * its first step do not depend on position. Such expressions are evaluated by splitting the
+ * document into disjoint subtrees, largest first, evaluating the expression against each subtree
+ * in a ForkJoinPool, and merging the results into document order. The elements above the subtrees
+ * are evaluated against the first step individually. Since that evaluation is not split, elements
+ * that the first step may match are not split when the expression looks further down the tree
+ * from them, such as through later steps.
+ * 
+ * <p>
+ * Each subtree is evaluated against a {@link CompactDocument#slice(int) slice} of the document
+ * rather than in place, since the XPath engine models a DOM from the start of the document up to
+ * the nodes it visits, which would make the cost of each task grow with its position in the
+ * document.
+ * 
+ * @author Jonathan Halterman
+ */
+final class ParallelPath {
+  /** Documents with fewer nodes are evaluated sequentially */
+  static final int MIN_NODES = 1 << 16;
+  /** Subtrees with fewer nodes are not split further */
+  static final int MIN_TASK_NODES = 1 << 10;
+  /** The number of tasks to split a document into per thread, to balance uneven subtrees */
+  static final int TASKS_PER_THREAD = 4;
+
+  private static final String NAME = "[A-Za-z_][\\w.\\-]*(:(\\*|[A-Za-z_][\\w.\\-]*))?";
+  private static final String NODE_TEST = "(\\.|@?(\\*|" + NAME + ")|text\\(\\)|node\\(\\))";
+  /** A step name test or an empty step, which follows {@code //} */
+  private static final Pattern STEP = Pattern.compile(NODE_TEST + "?");
+  private static final Pattern FIRST_STEP = Pattern.compile("@?(\\*|" + NAME + ")");
+  private static final Pattern RELATIVE_PATH =
+      Pattern.compile(NODE_TEST + "(//?" + NODE_TEST + ")*");
+  private static final String[] BOOLEAN_FUNCTIONS = { "not(", "boolean(", "contains(",
+      "starts-with(", "true(", "false(" };
+  private static final String[] OPERATORS = { "and", "or", "div", "mod" };
+
+  private ParallelPath() {
+  }
+
+  /**
+   * Returns the nodes in the {@code document} that match the {@code expression} in document order,
+   * else null if the {@code expression} cannot be split or the {@code document} has fewer than
+   * {@code minNodes} nodes, in which case it should be evaluated sequentially. Subtrees are split
+   * until there are enough tasks to occupy the {@code pool} or the largest subtree has fewer than
+   * {@code minTaskNodes} nodes.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   */
+  static List<Node> select(CompactDocument document, XmlExpression expression, ForkJoinPool pool,
+      int minNodes, int minTaskNodes) throws XPathExpressionException {
+    String steps = descendantSteps(expression.expression());
+    if (steps == null || document.nodeCount < minNodes)
+      return null;
+
+    Plan plan = new Plan(document, expression, steps);
+    plan.tasks = split(plan, pool.getParallelism() * TASKS_PER_THREAD, minTaskNodes);
+    if (plan.tasks == null)
+      return null;
+
+    Keys keys;
+    try {
+      keys = pool.invoke(new Task(plan, 0, plan.tasks.length));
+    } catch (RuntimeException e) {
+      for (Throwable cause = e; cause != null; cause = cause.getCause())
+        if (cause instanceof XPathExpressionException)
+          throw (XPathExpressionException) cause;
+      throw e;
+    }
+
+    Arrays.sort(keys.keys, 0, keys.size);
+    List<Node> nodes = new ArrayList<Node>(keys.size);
+    for (int i = 0; i < keys.size; i++) {
+      long key = keys.keys[i];
+      if (i > 0 && key == keys.keys[i - 1])
+        continue;
+      int index = (int) (key >>> 32);
+      int attribute = (int) key;
+      nodes.add(attribute == 0 ? document.node(index) : document.attribute(attribute - 1, index));
+    }
+
+    return nodes;
+  }
+
+  /**
+   * Returns the steps that follow the leading {@code //} of the {@code expression}, else null if
+   * the {@code expression} cannot be evaluated in parallel. The first step must select elements or
+   * attributes by name or {@code *}, with predicates that evaluate to booleans, and the steps may
+   * not use axes other than child, descendant, attribute and self, or predicates that use them,
+   * absolute paths or {@code id} and {@code lang}.
+   */
+  static String descendantSteps(String expression) {
+    if (!expression.startsWith("//") || expression.length() == 2 || expression.charAt(2) == '/')
+      return null;
+
+    String steps = expression.substring(2);
+    int length = steps.length();
+    int i = 0;
+    for (boolean first = true;; first = false) {
+      int start = i;
+      while (i < length && steps.charAt(i) != '[' && steps.charAt(i) != '/')
+        i++;
+      String test = steps.substring(start, i);
+      if (!(first ? FIRST_STEP : STEP).matcher(test).matches())
+        return null;
+
+      while (i < length && steps.charAt(i) == '[') {
+        int end = predicateEnd(steps, i);
+        if (end == -1)
+          return null;
+        String predicate = steps.substring(i + 1, end).trim();
+        if (!isDownward(predicate) || (first && !isBoolean(predicate)))
+          return null;
+        i = end + 1;
+      }
+
+      if (i == length)
+        return test.isEmpty() ? null : steps;
+      if (steps.charAt(i++) != '/')
+        return null;
+    }
+  }
+
+  /**
+   * Splits the plan's document into up to {@code maxSubtrees} disjoint subtrees by repeatedly
+   * replacing the largest subtree that the {@code plan} can {@link Plan#canSplit(int) split} with
+   * the subtrees of its child elements. Returns the indexes of the subtree roots followed by the
+   * negated indexes of the replaced elements plus one, else null if the document cannot be split
+   * into more than one subtree.
+   */
+  static int[] split(Plan plan, int maxSubtrees, int minTaskNodes) {
+    final CompactDocument document = plan.document;
+    int root = CompactDocument.NONE;
+    for (int i = document.firstChildren[0]; i != CompactDocument.NONE; i =
+        document.nextSiblings[i])
+      if (document.nameIds[i] >= 0)
+        root = i;
+    if (root == CompactDocument.NONE)
+      return null;
+
+    PriorityQueue<Integer> subtrees = new PriorityQueue<Integer>(11, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return Integer.compare(size(document, b), size(document, a));
+      }
+    });
+    List<Integer> unsplit = new ArrayList<Integer>();
+    List<Integer> replaced = new ArrayList<Integer>();
+    subtrees.add(root);
+    while (!subtrees.isEmpty() && subtrees.size() + unsplit.size() < maxSubtrees) {
+      int largest = subtrees.peek();
+      if (size(document, largest) < minTaskNodes)
+        break;
+
+      subtrees.poll();
+      if (!hasChildElement(document, largest) || !plan.canSplit(largest)) {
+        unsplit.add(largest);
+        continue;
+      }
+
+      replaced.add(largest);
+      for (int i = document.firstChildren[largest]; i != CompactDocument.NONE; i =
+          document.nextSiblings[i])
+        if (document.nameIds[i] >= 0)
+          subtrees.add(i);
+    }
+
+    subtrees.addAll(unsplit);
+    if (subtrees.size() < 2)
+      return null;
+
+    int[] tasks = new int[subtrees.size() + replaced.size()];
+    int t = 0;
+    for (Integer subtree : subtrees)
+      tasks[t++] = subtree;
+    for (Integer element : replaced)
+      tasks[t++] = -(element + 1);
+    return tasks;
+  }
+
+  private static int size(CompactDocument document, int index) {
+    return document.subtreeEnd(index) - index;
+  }
+
+  private static boolean hasChildElement(CompactDocument document, int index) {
+    for (int i = document.firstChildren[index]; i != CompactDocument.NONE; i =
+        document.nextSiblings[i])
+      if (document.nameIds[i] >= 0)
+        return true;
+    return false;
+  }
+
+  /**
+   * Returns the index of the {@code ]} that closes the predicate opened at the {@code start}, else
+   * -1 if the predicate is not closed.
+   */
+  private static int predicateEnd(String steps, int start) {
+    int depth = 0;
+    for (int i = start; i < steps.length(); i++) {
+      char c = steps.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = steps.indexOf(c, i + 1);
+        if (i == -1)
+          return -1;
+      } else if (c == '[')
+        depth++;
+      else if (c == ']' && --depth == 0)
+        return i;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Returns whether the {@code predicate} only looks down the tree from its context node, which is
+   * the case when it has no axes other than the abbreviated ones, no {@code ..}, no absolute paths
+   * and no {@code id} or {@code lang} functions.
+   */
+  private static boolean isDownward(String predicate) {
+    for (int i = 0; i < predicate.length(); i++) {
+      char c = predicate.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = predicate.indexOf(c, i + 1);
+        if (i == -1)
+          return false;
+      } else if (c == ':' && i + 1 < predicate.length() && predicate.charAt(i + 1) == ':')
+        return false;
+      else if (c == '.' && i + 1 < predicate.length() && predicate.charAt(i + 1) == '.')
+        return false;
+      else if (c == '(') {
+        String function = precedingName(predicate, i);
+        if (function.equals("id") || function.equals("lang"))
+          return false;
+      } else if (c == '/') {
+        // A path is relative when a step or another / immediately precedes it
+        char previous = i == 0 ? ' ' : predicate.charAt(i - 1);
+        if (isNameChar(previous)) {
+          if (Arrays.asList(OPERATORS).contains(precedingName(predicate, i)))
+            return false;
+        } else if (previous != ')' && previous != ']' && previous != '/')
+          return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns whether the {@code predicate} evaluates to a boolean or node-set, rather than a number
+   * that would be compared against the position of the context node. This is the case for
+   * comparisons, boolean operators and functions, and relative paths.
+   */
+  private static boolean isBoolean(String predicate) {
+    if (predicate.contains("position(") || predicate.contains("last("))
+      return false;
+    if (RELATIVE_PATH.matcher(predicate).matches() || isBooleanFunction(predicate))
+      return true;
+
+    // Comparisons and boolean operators bind more loosely than arithmetic
+    int depth = 0;
+    for (int i = 0; i < predicate.length(); i++) {
+      char c = predicate.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = predicate.indexOf(c, i + 1);
+        if (i == -1)
+          return false;
+      } else if (c == '(' || c == '[')
+        depth++;
+      else if (c == ')' || c == ']')
+        depth--;
+      else if (depth == 0) {
+        if (c == '=' || c == '<' || c == '>')
+          return true;
+        if (c == ' ' && (predicate.startsWith("and ", i + 1) || predicate.startsWith("or ", i + 1)))
+          return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Returns whether the {@code predicate} is a single call to a boolean function.
+   */
+  private static boolean isBooleanFunction(String predicate) {
+    for (String function : BOOLEAN_FUNCTIONS)
+      if (predicate.startsWith(function) && predicate.endsWith(")"))
+        return openingParen(predicate) == function.length() - 1;
+    return false;
+  }
+
+  /**
+   * Returns the index of the {@code (} matched by the {@code )} that ends the {@code predicate},
+   * else -1.
+   */
+  private static int openingParen(String predicate) {
+    int depth = 0;
+    for (int i = predicate.length() - 1; i >= 0; i--) {
+      char c = predicate.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = predicate.lastIndexOf(c, i - 1);
+        if (i == -1)
+          return -1;
+      } else if (c == ')')
+        depth++;
+      else if (c == '(' && --depth == 0)
+        return i;
+    }
+
+    return -1;
+  }
+
+  private static String precedingName(String s, int end) {
+    int start = end;
+    while (start > 0 && isNameChar(s.charAt(start - 1)))
+      start--;
+    return s.substring(start, end);
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+  }
+
+  /**
+   * Returns the key of the {@code node}, which sorts in document order, for a node from a slice
+   * whose indexes are {@code shift} lower and attribute indexes {@code attributeShift} lower than
+   * the original document's.
+   */
+  private static long key(Node node, int shift, int attributeShift) {
+    if (node instanceof CompactAttr) {
+      CompactAttr attr = (CompactAttr) node;
+      return (long) (attr.ownerIndex + shift) << 32 | (attr.index + attributeShift + 1);
+    }
+
+    return (long) (((CompactNode) node).index + shift) << 32;
+  }
+
+  private static NodeList evaluate(XmlExpression expression, Node context)
+      throws XPathExpressionException {
+    return expression.path != null
+        ? new XmlSearchable.ListNodeList(expression.path.select(context))
+        : (NodeList) expression.compiled().evaluate(context, XPathConstants.NODESET);
+  }
+
+  /**
+   * The expressions and tasks for a parallel evaluation.
+   */
+  static final class Plan {
+    final CompactDocument document;
+    final XmlExpression expression;
+    /** The first step evaluated against an element above the subtrees */
+    final XmlExpression elementExpression;
+    /** The name tested by the first step, else null if the step may match any element */
+    final String firstName;
+    /** Whether evaluating the first step against an element looks below its children */
+    final boolean deep;
+    int[] tasks;
+
+    Plan(CompactDocument document, XmlExpression expression, String steps)
+        throws XPathExpressionException {
+      this.document = document;
+      this.expression = expression;
+      int end = 0;
+      while (end < steps.length() && steps.charAt(end) != '[' && steps.charAt(end) != '/')
+        end++;
+      if (steps.startsWith("@")) {
+        elementExpression = XPathCache.get("./" + steps);
+        firstName = null;
+        deep = false;
+      } else {
+        elementExpression = XPathCache.get("self::" + steps);
+        String name = steps.substring(0, end);
+        firstName = name.equals("*") || name.endsWith(":*") ? null : name;
+        deep = isDeep(steps, end);
+      }
+    }
+
+    /**
+     * Returns whether the element at the {@code index} can be replaced by the subtrees of its
+     * children, which is the case unless evaluating the first step against the element would look
+     * below its children.
+     */
+    boolean canSplit(int index) {
+      return !deep || !mayMatch(document.names[document.nameIds[index]]);
+    }
+
+    /**
+     * Returns whether an element with the {@code name} may match the first step.
+     */
+    boolean mayMatch(String name) {
+      return firstName == null || name.equals(firstName) || name.endsWith(":" + firstName)
+          || firstName.endsWith(":" + name);
+    }
+
+    /**
+     * Returns whether the {@code steps}, whose first step's predicates start at the {@code start},
+     * have later steps or predicates that may look below an element's children.
+     */
+    private static boolean isDeep(String steps, int start) {
+      int i = start;
+      while (i < steps.length() && steps.charAt(i) == '[') {
+        int end = predicateEnd(steps, i);
+        if (!isShallow(steps.substring(i + 1, end)))
+          return true;
+        i = end + 1;
+      }
+
+      return i < steps.length();
+    }
+
+    /**
+     * Returns whether the {@code predicate} looks no further than its context node's attributes and
+     * children, which is the case when it has no paths, does not refer to the context node with
+     * {@code .} and does not call string functions, which take the context node's string value by
+     * default.
+     */
+    private static boolean isShallow(String predicate) {
+      for (int i = 0; i < predicate.length(); i++) {
+        char c = predicate.charAt(i);
+        if (c == '\'' || c == '"')
+          i = predicate.indexOf(c, i + 1);
+        else if (c == '.' || c == '/')
+          return false;
+        else if (c == '(') {
+          String function = precedingName(predicate, i);
+          if (function.equals("string") || function.equals("string-length")
+              || function.equals("normalize-space") || function.equals("number"))
+            return false;
+        }
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * Evaluates a range of a plan's tasks, returning the keys of the selected nodes.
+   */
+  private static final class Task extends RecursiveTask<Keys> {
+    private static final long serialVersionUID = 1L;
+
+    private final Plan plan;
+    private final int from;
+    private final int to;
+
+    Task(Plan plan, int from, int to) {
+      this.plan = plan;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Keys compute() {
+      if (to - from > 1) {
+        int middle = (from + to) >>> 1;
+        Task left = new Task(plan, from, middle);
+        left.fork();
+        Keys keys = new Task(plan, middle, to).compute();
+        return left.join().addAll(keys);
+      }
+
+      try {
+        return evaluate(plan.tasks[from]);
+      } catch (XPathExpressionException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    private Keys evaluate(int task) throws XPathExpressionException {
+      CompactDocument document = plan.document;
+      Keys keys = new Keys();
+      if (task >= 0) {
+        NodeList nodes = ParallelPath.evaluate(plan.expression, document.slice(task));
+        int shift = task - 1;
+        int attributeShift = document.offsets[task];
+        for (int i = 0; i < nodes.getLength(); i++)
+          keys.add(key(nodes.item(i), shift, attributeShift));
+      } else {
+        int element = -task - 1;
+        if (plan.mayMatch(document.names[document.nameIds[element]])) {
+          NodeList nodes = ParallelPath.evaluate(plan.elementExpression, document.node(element));
+          for (int i = 0; i < nodes.getLength(); i++)
+            keys.add(key(nodes.item(i), 0, 0));
+        }
+      }
+
+      return keys;
+    }
+  }
+
+  /**
+   * A growable array of node keys.
+   */
+  private static final class Keys {
+    long[] keys = new long[16];
+    int size;
+
+    void add(long key) {
+      if (size == keys.length)
+        keys = Arrays.copyOf(keys, size * 2);
+      keys[size++] = key;
+    }
+
+    Keys addAll(Keys other) {
+      if (size + other.size > keys.length)
+        keys = Arrays.copyOf(keys, Math.max(keys.length * 2, size + other.size));
+      System.arraycopy(other.keys, 0, keys, size, other.size);
+      size += other.size;
+      return this;
+    }
+  }
+}
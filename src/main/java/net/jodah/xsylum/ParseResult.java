@@ -0,0 +1,62 @@
+package net.jodah.xsylum;
+
+/**
+ * The result of parsing one source in a batch, holding either the parsed document or the failure.
+ * 
+ * @author Jonathan Halterman
+ * @param <S> source type
+ */
+public final class ParseResult<S> {
+  private final int index;
+  private final S source;
+  private final XmlDocument document;
+  private final XsylumException failure;
+
+  ParseResult(int index, S source, XmlDocument document, XsylumException failure) {
+    this.index = index;
+    this.source = source;
+    this.document = document;
+    this.failure = failure;
+  }
+
+  /**
+   * Returns the parsed document, else null if parsing failed.
+   */
+  public XmlDocument document() {
+    return document;
+  }
+
+  /**
+   * Returns the failure that occurred while parsing, else null if parsing succeeded.
+   */
+  public XsylumException failure() {
+    return failure;
+  }
+
+  /**
+   * Returns the position of the source in the batch.
+   */
+  public int index() {
+    return index;
+  }
+
+  /**
+   * Returns whether parsing succeeded.
+   */
+  public boolean isSuccess() {
+    return failure == null;
+  }
+
+  /**
+   * Returns the source that was parsed.
+   */
+  public S source() {
+    return source;
+  }
+
+  @Override
+  public String toString() {
+    return "ParseResult[index=" + index + ", source=" + source
+        + (failure == null ? "]" : ", failure=" + failure + "]");
+  }
+}
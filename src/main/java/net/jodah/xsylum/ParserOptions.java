@@ -0,0 +1,332 @@
+package net.jodah.xsylum;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Node;
+
+/**
+ * Options for parsing documents, which trade fidelity to the source XML for parsing speed and
+ * document footprint. Options are immutable and thread-safe, and each owns a {@link ParserPool} of
+ * builders configured for them, so they should be created once and reused:
+ * 
+ * <pre>
+ * static final ParserOptions OPTIONS = ParserOptions.readMostly().toBuilder().frozen().build();
+ * XmlDocument document = Xsylum.documentFor(file, OPTIONS);
+ * </pre>
+ * 
+ * @author Jonathan Halterman
+ */
+public final class ParserOptions {
+  static final String DEFER_NODE_EXPANSION =
+      "http://apache.org/xml/features/dom/defer-node-expansion";
+  static final String ENTITY_EXPANSION_LIMIT =
+      "http://www.oracle.com/xml/jaxp/properties/entityExpansionLimit";
+  static final String MAX_ELEMENT_DEPTH =
+      "http://www.oracle.com/xml/jaxp/properties/maxElementDepth";
+
+  private static final ParserOptions DEFAULTS = builder().build();
+  private static final ParserOptions READ_MOSTLY = builder().dropWhitespace()
+      .dropComments()
+      .coalescing()
+      .deferredDom(false)
+      .deduplicate(StringTable.shared())
+      .build();
+
+  final boolean dropWhitespace;
+  final boolean dropComments;
+  final boolean coalescing;
+  final boolean namespaceAware;
+  final boolean deferredDom;
+  final boolean expandEntityReferences;
+  final int maxEntityExpansions;
+  final int maxElementDepth;
+  final long maxDocumentSize;
+  final StringTable stringTable;
+  final boolean frozen;
+  final ParserPool pool;
+
+  private ParserOptions(Builder builder) {
+    dropWhitespace = builder.dropWhitespace;
+    dropComments = builder.dropComments;
+    coalescing = builder.coalescing;
+    namespaceAware = builder.namespaceAware;
+    deferredDom = builder.deferredDom;
+    expandEntityReferences = builder.expandEntityReferences;
+    maxEntityExpansions = builder.maxEntityExpansions;
+    maxElementDepth = builder.maxElementDepth;
+    maxDocumentSize = builder.maxDocumentSize;
+    stringTable = builder.stringTable;
+    frozen = builder.frozen;
+    pool = new ParserPool(createFactory(), ParserPool.DEFAULT_MAX_IDLE, stringTable, this);
+  }
+
+  /**
+   * Returns a new builder of options, which starts from the {@link #defaults()}.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the default options, which retain everything in the source XML and which documents
+   * are parsed with when no options are given.
+   */
+  public static ParserOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Returns options for documents that are parsed once and then read many times. Whitespace between
+   * elements and comments are dropped, CDATA sections are coalesced into text, nodes are created
+   * up front rather than deferred, and attribute values and short text are deduplicated through
+   * the {@link StringTable#shared() shared} StringTable.
+   */
+  public static ParserOptions readMostly() {
+    return READ_MOSTLY;
+  }
+
+  /**
+   * Returns the pool of builders that documents are parsed with for these options.
+   */
+  public ParserPool pool() {
+    return pool;
+  }
+
+  /**
+   * Returns a new builder that starts from these options.
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder();
+    builder.dropWhitespace = dropWhitespace;
+    builder.dropComments = dropComments;
+    builder.coalescing = coalescing;
+    builder.namespaceAware = namespaceAware;
+    builder.deferredDom = deferredDom;
+    builder.expandEntityReferences = expandEntityReferences;
+    builder.maxEntityExpansions = maxEntityExpansions;
+    builder.maxElementDepth = maxElementDepth;
+    builder.maxDocumentSize = maxDocumentSize;
+    builder.stringTable = stringTable;
+    builder.frozen = frozen;
+    return builder;
+  }
+
+  @Override
+  public String toString() {
+    return "ParserOptions[dropWhitespace=" + dropWhitespace + ", dropComments=" + dropComments
+        + ", coalescing=" + coalescing + ", namespaceAware=" + namespaceAware + ", deferredDom="
+        + deferredDom + ", expandEntityReferences=" + expandEntityReferences
+        + ", maxEntityExpansions=" + maxEntityExpansions + ", maxElementDepth=" + maxElementDepth
+        + ", maxDocumentSize=" + maxDocumentSize + ", stringTable=" + stringTable + ", frozen="
+        + frozen + "]";
+  }
+
+  /**
+   * Removes the text nodes that contain only whitespace from the elements in the tree rooted at the
+   * {@code root} that have child elements.
+   */
+  static void dropWhitespace(Node root) {
+    Node node = root;
+    while (node != null) {
+      if (hasChildElement(node)) {
+        Node child = node.getFirstChild();
+        while (child != null) {
+          Node next = child.getNextSibling();
+          if (child.getNodeType() == Node.TEXT_NODE && isWhitespace(child.getNodeValue()))
+            node.removeChild(child);
+          child = next;
+        }
+      }
+
+      Node next = node.getFirstChild();
+      for (Node current = node; next == null && current != root; current = current
+          .getParentNode())
+        next = current.getNextSibling();
+      node = next;
+    }
+  }
+
+  private static boolean hasChildElement(Node node) {
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+      if (child.getNodeType() == Node.ELEMENT_NODE)
+        return true;
+    return false;
+  }
+
+  private static boolean isWhitespace(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+        return false;
+    }
+
+    return true;
+  }
+
+  private DocumentBuilderFactory createFactory() {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setValidating(false);
+    factory.setIgnoringComments(dropComments);
+    factory.setCoalescing(coalescing);
+    factory.setNamespaceAware(namespaceAware);
+    factory.setExpandEntityReferences(expandEntityReferences);
+    try {
+      factory.setFeature(DEFER_NODE_EXPANSION, deferredDom);
+    } catch (ParserConfigurationException ignore) {
+      // Parsers without deferred node expansion always create nodes up front
+    }
+    if (maxEntityExpansions > 0)
+      factory.setAttribute(ENTITY_EXPANSION_LIMIT, String.valueOf(maxEntityExpansions));
+    if (maxElementDepth > 0)
+      factory.setAttribute(MAX_ELEMENT_DEPTH, String.valueOf(maxElementDepth));
+    return factory;
+  }
+
+  /**
+   * Builds ParserOptions.
+   */
+  public static final class Builder {
+    private boolean dropWhitespace;
+    private boolean dropComments;
+    private boolean coalescing;
+    private boolean namespaceAware;
+    private boolean deferredDom = true;
+    private boolean expandEntityReferences = true;
+    private int maxEntityExpansions;
+    private int maxElementDepth;
+    private long maxDocumentSize;
+    private StringTable stringTable;
+    private boolean frozen;
+
+    Builder() {
+    }
+
+    /**
+     * Returns new ParserOptions for the configuration.
+     * 
+     * @throws IllegalArgumentException if the parser does not support the entity or depth limits,
+     *           or if both {@link #namespaceAware(boolean) namespace awareness} and
+     *           {@link #frozen()} are set, since frozen documents do not record namespaces
+     */
+    public ParserOptions build() {
+      if (namespaceAware && frozen)
+        throw new IllegalArgumentException("Namespace aware documents cannot be frozen");
+      return new ParserOptions(this);
+    }
+
+    /**
+     * Merges CDATA sections into the adjacent text, so that each run of text is a single node.
+     */
+    public Builder coalescing() {
+      coalescing = true;
+      return this;
+    }
+
+    /**
+     * Deduplicates attribute values and short text through the {@code stringTable}. See
+     * {@link StringTable}.
+     */
+    public Builder deduplicate(StringTable stringTable) {
+      if (stringTable == null)
+        throw new NullPointerException("stringTable");
+      this.stringTable = stringTable;
+      return this;
+    }
+
+    /**
+     * Sets whether nodes are created lazily as the document is read, which makes parsing faster for
+     * documents that are only partially read, or up front, which makes reading faster for documents
+     * that are read in full. Defaults to true.
+     */
+    public Builder deferredDom(boolean deferredDom) {
+      this.deferredDom = deferredDom;
+      return this;
+    }
+
+    /**
+     * Drops comments.
+     */
+    public Builder dropComments() {
+      dropComments = true;
+      return this;
+    }
+
+    /**
+     * Drops text nodes that contain only whitespace from elements that have child elements, such as
+     * the indentation between elements, while keeping the text of elements that contain only text.
+     */
+    public Builder dropWhitespace() {
+      dropWhitespace = true;
+      return this;
+    }
+
+    /**
+     * Sets whether entity references are replaced by their content rather than kept as entity
+     * reference nodes. Defaults to true. Expressions against documents that declare entities and
+     * keep their references are always evaluated by the XPath engine, rather than by walking the
+     * tree directly.
+     */
+    public Builder expandEntityReferences(boolean expandEntityReferences) {
+      this.expandEntityReferences = expandEntityReferences;
+      return this;
+    }
+
+    /**
+     * Produces {@link XmlDocument#freeze() frozen} documents, which are immutable and safe for
+     * concurrent reads. Documents are parsed with the other options and then frozen. Cannot be
+     * combined with {@link #namespaceAware(boolean) namespace awareness}.
+     */
+    public Builder frozen() {
+      frozen = true;
+      return this;
+    }
+
+    /**
+     * Sets the maximum size of a document, in bytes, or in characters for documents parsed from a
+     * String, beyond which parsing fails. Defaults to unlimited.
+     * 
+     * @throws IllegalArgumentException if {@code maxDocumentSize} is not positive
+     */
+    public Builder maxDocumentSize(long maxDocumentSize) {
+      if (maxDocumentSize <= 0)
+        throw new IllegalArgumentException("maxDocumentSize must be > 0");
+      this.maxDocumentSize = maxDocumentSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum depth of elements, beyond which parsing fails. Defaults to the parser's
+     * limit.
+     * 
+     * @throws IllegalArgumentException if {@code maxElementDepth} is not positive
+     */
+    public Builder maxElementDepth(int maxElementDepth) {
+      if (maxElementDepth <= 0)
+        throw new IllegalArgumentException("maxElementDepth must be > 0");
+      this.maxElementDepth = maxElementDepth;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of entity expansions in a document, beyond which parsing fails.
+     * Defaults to the parser's limit.
+     * 
+     * @throws IllegalArgumentException if {@code maxEntityExpansions} is not positive
+     */
+    public Builder maxEntityExpansions(int maxEntityExpansions) {
+      if (maxEntityExpansions <= 0)
+        throw new IllegalArgumentException("maxEntityExpansions must be > 0");
+      this.maxEntityExpansions = maxEntityExpansions;
+      return this;
+    }
+
+    /**
+     * Sets whether the parser is namespace aware. Defaults to false.
+     */
+    public Builder namespaceAware(boolean namespaceAware) {
+      this.namespaceAware = namespaceAware;
+      return this;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package net.jodah.xsylum;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * A thread-safe pool of DocumentBuilders created from a configured DocumentBuilderFactory. Builders
+ * are {@link DocumentBuilder#reset() reset} after each use and kept for reuse, up to a maximum
+ * number of idle builders. The pool does not block or hold monitors while parsing, so it can be
+ * shared by platform and virtual threads alike.
+ * 
+ * @author Jonathan Halterman
+ */
+public final class ParserPool {
+  static final int DEFAULT_MAX_IDLE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+  private final DocumentBuilderFactory factory;
+  private final int maxIdle;
+  /** Deduplicates values in parsed documents, else null */
+  final StringTable stringTable;
+  /** The options the pool was created for, else null */
+  final ParserOptions options;
+  private final Queue<DocumentBuilder> idle = new ConcurrentLinkedQueue<DocumentBuilder>();
+  private final AtomicInteger idleCount = new AtomicInteger();
+
+  /**
+   * Creates a pool of builders from the {@code factory} that retains up to twice as many idle
+   * builders as there are available processors.
+   */
+  public ParserPool(DocumentBuilderFactory factory) {
+    this(factory, DEFAULT_MAX_IDLE);
+  }
+
+  /**
+   * Creates a pool of builders from the {@code factory} that retains up to {@code maxIdle} idle
+   * builders.
+   * 
+   * @throws IllegalArgumentException if {@code maxIdle} is negative
+   */
+  public ParserPool(DocumentBuilderFactory factory, int maxIdle) {
+    this(factory, maxIdle, null);
+  }
+
+  /**
+   * Creates a pool of builders from the {@code factory} that retains up to {@code maxIdle} idle
+   * builders, and that deduplicates the attribute values and short text of parsed documents through
+   * the {@code stringTable}, if not null. Deduplication makes parsing somewhat slower, in exchange
+   * for less retained heap when documents with repeated values are kept resident.
+   * 
+   * @throws IllegalArgumentException if {@code maxIdle} is negative
+   */
+  public ParserPool(DocumentBuilderFactory factory, int maxIdle, StringTable stringTable) {
+    this(factory, maxIdle, stringTable, null);
+  }
+
+  ParserPool(DocumentBuilderFactory factory, int maxIdle, StringTable stringTable,
+      ParserOptions options) {
+    if (factory == null)
+      throw new NullPointerException("factory");
+    if (maxIdle < 0)
+      throw new IllegalArgumentException("maxIdle must be >= 0");
+    this.factory = factory;
+    this.maxIdle = maxIdle;
+    this.stringTable = stringTable;
+    this.options = options;
+  }
+
+  /**
+   * Returns the factory that builders are created from.
+   */
+  public DocumentBuilderFactory factory() {
+    return factory;
+  }
+
+  /**
+   * Returns the number of idle builders in the pool.
+   */
+  public int idleCount() {
+    return idleCount.get();
+  }
+
+  /**
+   * Returns the table that values in parsed documents are deduplicated through, else null if they
+   * are not deduplicated.
+   */
+  public StringTable stringTable() {
+    return stringTable;
+  }
+
+  /**
+   * Returns an idle builder, else a newly created builder if none are idle.
+   */
+  DocumentBuilder acquire() throws ParserConfigurationException {
+    DocumentBuilder builder = idle.poll();
+    if (builder != null) {
+      idleCount.decrementAndGet();
+      return builder;
+    }
+
+    // DocumentBuilderFactory is not guaranteed to be thread-safe
+    synchronized (factory) {
+      return factory.newDocumentBuilder();
+    }
+  }
+
+  /**
+   * Resets the {@code builder} and returns it to the pool if there is room for it.
+   */
+  void release(DocumentBuilder builder) {
+    try {
+      builder.reset();
+    } catch (UnsupportedOperationException e) {
+      return;
+    }
+
+    if (idleCount.incrementAndGet() <= maxIdle)
+      idle.offer(builder);
+    else
+      idleCount.decrementAndGet();
+  }
+}
@@ -0,0 +1,298 @@
+package net.jodah.xsylum;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Extracts the values of simple paths from an XML stream without building a DOM, reading only as
+ * far as needed to resolve each path or to determine that it cannot match. Paths are evaluated
+ * from the document, with the same matching rules as {@link SimplePath}, and each path's value is
+ * the XPath string value of the first node it selects.
+ * 
+ * @author Jonathan Halterman
+ */
+final class PathExtractor {
+  private static final String REPORT_CDATA =
+      "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+  private final String[] expressions;
+  private final SimplePath[] paths;
+  private final int[] offsets;
+  private final int[] stepPaths;
+  private final int words;
+
+  /** The steps active at each open node, where depth 0 is the document */
+  private long[][] states = new long[16][];
+  private int[][] counts = new int[16][];
+  private int depth;
+  /** The number of open elements with active steps for each path */
+  private final int[] activeElements;
+  /** The depth of the text run or element whose value is being captured for each path, else -1 */
+  private final int[] captureDepths;
+  private final boolean[] capturingText;
+  private final StringBuilder[] values;
+  private final boolean[] done;
+  private final Map<String, String> results = new LinkedHashMap<String, String>();
+  private int remaining;
+
+  private PathExtractor(String[] expressions) {
+    this.expressions = expressions;
+    paths = new SimplePath[expressions.length];
+    offsets = new int[expressions.length + 1];
+    for (int p = 0; p < expressions.length; p++) {
+      paths[p] = SimplePath.parse(expressions[p]);
+      if (paths[p] == null)
+        throw new IllegalArgumentException("Unsupported path " + expressions[p]);
+      offsets[p + 1] = offsets[p] + paths[p].kinds.length;
+    }
+
+    stepPaths = new int[offsets[paths.length]];
+    for (int p = 0; p < paths.length; p++)
+      Arrays.fill(stepPaths, offsets[p], offsets[p + 1], p);
+    words = (stepPaths.length + 63) >>> 6;
+    activeElements = new int[paths.length];
+    captureDepths = new int[paths.length];
+    Arrays.fill(captureDepths, -1);
+    capturingText = new boolean[paths.length];
+    values = new StringBuilder[paths.length];
+    done = new boolean[paths.length];
+    remaining = paths.length;
+  }
+
+  /**
+   * Returns the values of the {@code paths} that resolve in the {@code inputStream}, by path.
+   * 
+   * @throws IllegalArgumentException if a path is not supported
+   * @throws XsylumException if the {@code inputStream} cannot be read
+   */
+  static Map<String, String> extract(InputStream inputStream, String... paths)
+      throws XsylumException {
+    PathExtractor extractor = new PathExtractor(paths);
+    XMLStreamReader reader = null;
+    try {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      if (factory.isPropertySupported(REPORT_CDATA))
+        factory.setProperty(REPORT_CDATA, Boolean.TRUE);
+      // Match names as a DOM built without namespace support would
+      if (factory.isPropertySupported(XMLInputFactory.IS_NAMESPACE_AWARE))
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+      reader = factory.createXMLStreamReader(inputStream);
+      extractor.read(reader);
+    } catch (XMLStreamException e) {
+      throw new XsylumException(e, "Failed to extract paths from InputStream");
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException ignore) {
+        }
+      }
+    }
+
+    return extractor.results();
+  }
+
+  private void read(XMLStreamReader reader) throws XMLStreamException {
+    long[] initial = state(0);
+    for (int p = 0; p < paths.length; p++)
+      SimplePath.setBit(initial, offsets[p]);
+    counts[0] = new int[stepPaths.length];
+
+    while (remaining > 0 && reader.hasNext()) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          endTextRuns();
+          startElement(reader);
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          endTextRuns();
+          endElement();
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+        case XMLStreamConstants.ENTITY_REFERENCE:
+          text(reader);
+          break;
+        case XMLStreamConstants.COMMENT:
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          endTextRuns();
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  private Map<String, String> results() {
+    // Order the results by path
+    Map<String, String> ordered = new LinkedHashMap<String, String>();
+    for (String expression : expressions)
+      if (results.containsKey(expression))
+        ordered.put(expression, results.get(expression));
+    return ordered;
+  }
+
+  private void startElement(XMLStreamReader reader) {
+    String name = qualifiedName(reader.getPrefix(), reader.getLocalName());
+    long[] parentState = states[depth];
+    int[] parentCounts = counts[depth];
+    long[] state = state(depth + 1);
+
+    for (int w = 0; w < words; w++) {
+      for (long bits = parentState[w]; bits != 0; bits &= bits - 1) {
+        int step = (w << 6) + Long.numberOfTrailingZeros(bits);
+        int p = stepPaths[step];
+        if (done[p] || values[p] != null)
+          continue;
+
+        SimplePath path = paths[p];
+        int s = step - offsets[p];
+        if (path.descendant[s])
+          SimplePath.setBit(state, step);
+        if (path.kinds[s] != SimplePath.ELEMENT || !matches(path, s, name))
+          continue;
+        if (path.positions[s] != SimplePath.ANY_POSITION
+            && ++parentCounts[step] != path.positions[s])
+          continue;
+
+        if (s == path.kinds.length - 1) {
+          values[p] = new StringBuilder();
+          captureDepths[p] = depth + 1;
+        } else
+          SimplePath.setBit(state, step + 1);
+      }
+    }
+
+    depth++;
+    if (counts[depth] == null)
+      counts[depth] = new int[stepPaths.length];
+    else
+      Arrays.fill(counts[depth], 0);
+    for (int p = 0; p < paths.length; p++)
+      if (hasSteps(state, p))
+        activeElements[p]++;
+
+    // Select attributes
+    for (int w = 0; w < words; w++) {
+      for (long bits = state[w]; bits != 0; bits &= bits - 1) {
+        int step = (w << 6) + Long.numberOfTrailingZeros(bits);
+        int p = stepPaths[step];
+        int s = step - offsets[p];
+        if (done[p] || values[p] != null || paths[p].kinds[s] != SimplePath.ATTRIBUTE)
+          continue;
+
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+          String attributeName = qualifiedName(reader.getAttributePrefix(i),
+              reader.getAttributeLocalName(i));
+          if (!SimplePath.isNamespaceDeclaration(attributeName)
+              && (paths[p].names[s] == null
+                  || SimplePath.matchesLocalPart(paths[p].names[s], attributeName))) {
+            resolve(p, reader.getAttributeValue(i));
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  private void endElement() {
+    for (int p = 0; p < paths.length; p++) {
+      if (captureDepths[p] == depth && !capturingText[p])
+        resolve(p, values[p].toString());
+      if (hasSteps(states[depth], p))
+        activeElements[p]--;
+    }
+
+    depth--;
+
+    // Paths with no active steps in any open element can no longer be selected
+    for (int p = 0; p < paths.length; p++)
+      if (!done[p] && values[p] == null && (depth == 0 || activeElements[p] == 0)) {
+        done[p] = true;
+        remaining--;
+      }
+  }
+
+  private void text(XMLStreamReader reader) {
+    long[] state = states[depth];
+    for (int p = 0; p < paths.length; p++) {
+      if (done[p])
+        continue;
+      if (values[p] != null) {
+        if (captureDepths[p] != -1)
+          values[p].append(reader.getTextCharacters(), reader.getTextStart(),
+              reader.getTextLength());
+        continue;
+      }
+
+      // Start capturing the first text run selected by a text step
+      int s = paths[p].kinds.length - 1;
+      if (depth > 0 && paths[p].kinds[s] == SimplePath.TEXT
+          && SimplePath.isSet(state, offsets[p] + s)) {
+        values[p] = new StringBuilder().append(reader.getTextCharacters(), reader.getTextStart(),
+            reader.getTextLength());
+        captureDepths[p] = depth;
+        capturingText[p] = true;
+      }
+    }
+  }
+
+  /**
+   * Resolves paths whose text run has ended.
+   */
+  private void endTextRuns() {
+    for (int p = 0; p < paths.length; p++)
+      if (capturingText[p] && !done[p])
+        resolve(p, values[p].toString());
+  }
+
+  private void resolve(int p, String value) {
+    results.put(expressions[p], value);
+    if (values[p] == null)
+      values[p] = new StringBuilder(0);
+    captureDepths[p] = -1;
+    capturingText[p] = false;
+    done[p] = true;
+    remaining--;
+  }
+
+  private boolean hasSteps(long[] state, int p) {
+    for (int step = offsets[p]; step < offsets[p + 1]; step++)
+      if (SimplePath.isSet(state, step))
+        return true;
+    return false;
+  }
+
+  private long[] state(int depth) {
+    if (depth >= states.length) {
+      states = Arrays.copyOf(states, states.length * 2);
+      counts = Arrays.copyOf(counts, counts.length * 2);
+    }
+
+    long[] state = states[depth];
+    if (state == null)
+      states[depth] = state = new long[words];
+    else
+      Arrays.fill(state, 0);
+    return state;
+  }
+
+  private static boolean matches(SimplePath path, int step, String name) {
+    String pathName = path.names[step];
+    if (pathName == null)
+      return true;
+    return path.exactNames ? pathName.equals(name) : SimplePath.matchesLocalPart(pathName, name);
+  }
+
+  private static String qualifiedName(String prefix, String localName) {
+    return prefix == null || prefix.isEmpty() ? localName : prefix + ':' + localName;
+  }
+}
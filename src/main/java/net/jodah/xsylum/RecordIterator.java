@@ -0,0 +1,240 @@
+package net.jodah.xsylum;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * Iterates over the elements matching a record path in an XML stream, materializing each record as
+ * a small standalone DOM. Only the current record is retained, so memory use is bounded by record
+ * size rather than document size.
+ * 
+ * <p>
+ * Record paths are either absolute paths of element names, such as {@code /catalog/book}, or a
+ * single descendant element name such as {@code //book}. The {@code *} wildcard matches any element
+ * name. A record includes its whole content, so records nested in a record matching a descendant
+ * name are returned as part of the outer record rather than separately.
+ * 
+ * @author Jonathan Halterman
+ */
+final class RecordIterator implements Iterator<XmlElement>, Closeable {
+  private static final String REPORT_CDATA =
+      "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+  private static volatile DOMImplementation implementation;
+
+  private final XMLStreamReader reader;
+  private final ParserPool pool;
+  private final String[] path;
+  private final boolean descendant;
+  private XmlElement next;
+  private int depth;
+  private int matchedDepth;
+  private boolean closed;
+
+  RecordIterator(InputStream inputStream, String recordPath, ParserPool pool)
+      throws XsylumException {
+    descendant = recordPath.startsWith("//");
+    path = parsePath(recordPath, descendant);
+    this.pool = pool;
+
+    try {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      if (factory.isPropertySupported(REPORT_CDATA))
+        factory.setProperty(REPORT_CDATA, Boolean.TRUE);
+      reader = factory.createXMLStreamReader(inputStream);
+      // Created up front so that failures are reported here rather than per record
+      implementation();
+    } catch (Exception e) {
+      throw new XsylumException(e, "Failed to read records for %s from InputStream", recordPath);
+    }
+  }
+
+  static String[] parsePath(String recordPath, boolean descendant) {
+    String path = recordPath.substring(descendant ? 2 : 1);
+    if (!recordPath.startsWith("/") || path.isEmpty() || (descendant && path.indexOf('/') != -1))
+      throw new IllegalArgumentException("Unsupported record path " + recordPath);
+    String[] names = path.split("/", -1);
+    for (String name : names)
+      if (name.isEmpty() || name.indexOf('[') != -1 || name.indexOf('@') != -1)
+        throw new IllegalArgumentException("Unsupported record path " + recordPath);
+    return names;
+  }
+
+  @Override
+  public void close() {
+    if (closed)
+      return;
+    closed = true;
+    next = null;
+    try {
+      reader.close();
+    } catch (XMLStreamException ignore) {
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null && !closed) {
+      try {
+        next = readNext();
+      } catch (XMLStreamException e) {
+        close();
+        throw new UncheckedXsylumException(new XsylumException(e,
+            "Failed to read record from InputStream"));
+      }
+
+      if (next == null)
+        close();
+    }
+
+    return next != null;
+  }
+
+  @Override
+  public XmlElement next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    XmlElement result = next;
+    next = null;
+    return result;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Advances the reader to the next matching record and returns it, else returns null if the end of
+   * the stream is reached.
+   */
+  private XmlElement readNext() throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+        String name = currentName();
+        if (descendant) {
+          if (matches(path[0], name))
+            return readRecord(name);
+        } else if (matchedDepth == depth - 1 && depth <= path.length
+            && matches(path[depth - 1], name)) {
+          if (depth == path.length)
+            return readRecord(name);
+          matchedDepth = depth;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        if (matchedDepth == depth)
+          matchedDepth--;
+        depth--;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Reads the record element at the current position, including its content, into a new document.
+   */
+  private XmlElement readRecord(String name) throws XMLStreamException {
+    Document document = implementation.createDocument(null, null, null);
+    Element element = startElement(document, name);
+    document.appendChild(element);
+    Node parent = element;
+
+    for (int recordDepth = 1; recordDepth > 0;) {
+      switch (reader.next()) {
+        case XMLStreamConstants.START_ELEMENT:
+          recordDepth++;
+          element = startElement(document, currentName());
+          parent.appendChild(element);
+          parent = element;
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          recordDepth--;
+          parent = parent.getParentNode();
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.SPACE:
+        case XMLStreamConstants.ENTITY_REFERENCE:
+          Node last = parent.getLastChild();
+          if (last != null && last.getNodeType() == Node.TEXT_NODE)
+            ((Text) last).appendData(reader.getText());
+          else
+            parent.appendChild(document.createTextNode(reader.getText()));
+          break;
+        case XMLStreamConstants.CDATA:
+          parent.appendChild(document.createCDATASection(reader.getText()));
+          break;
+        case XMLStreamConstants.COMMENT:
+          parent.appendChild(document.createComment(reader.getText()));
+          break;
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          parent.appendChild(document.createProcessingInstruction(reader.getPITarget(),
+              reader.getPIData()));
+          break;
+        default:
+          break;
+      }
+    }
+
+    depth--;
+    if (pool.stringTable != null)
+      pool.stringTable.canonicalize(document);
+    return new XmlElement(document.getDocumentElement());
+  }
+
+  /**
+   * Returns the shared DOMImplementation that record documents are created with, creating it if
+   * needed.
+   */
+  private static DOMImplementation implementation() throws ParserConfigurationException {
+    DOMImplementation result = implementation;
+    if (result == null)
+      implementation = result = DocumentBuilderFactory.newInstance()
+          .newDocumentBuilder()
+          .getDOMImplementation();
+    return result;
+  }
+
+  private Element startElement(Document document, String name) {
+    Element element = document.createElement(name);
+    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+      String prefix = reader.getNamespacePrefix(i);
+      element.setAttribute(prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix,
+          reader.getNamespaceURI(i));
+    }
+    for (int i = 0; i < reader.getAttributeCount(); i++)
+      element.setAttribute(
+          qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+          reader.getAttributeValue(i));
+    return element;
+  }
+
+  private String currentName() {
+    return qualifiedName(reader.getPrefix(), reader.getLocalName());
+  }
+
+  private static boolean matches(String pathName, String name) {
+    return "*".equals(pathName) || pathName.equals(name);
+  }
+
+  private static String qualifiedName(String prefix, String localName) {
+    return prefix == null || prefix.isEmpty() ? localName : prefix + ':' + localName;
+  }
+}
@@ -0,0 +1,589 @@
+package net.jodah.xsylum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A location path using only the abbreviated child, descendant and attribute axes, which can be
+ * evaluated with a single walk over the tree rather than by the general XPath engine. Simple paths
+ * consist of steps separated by {@code /} or {@code //}, optionally starting with {@code /},
+ * {@code //} or {@code ./}, where each step is an element name or {@code *} with an optional
+ * {@code [n]} position, and the last step may instead be {@code text()}, {@code @name} or
+ * {@code @*}. A {@code text()} step may not follow {@code //}.
+ * 
+ * <p>
+ * Evaluation selects the same nodes, in document order, as the XPath engine does over a DOM.
+ * Unprefixed names match nodes with no namespace by local name, namespace declarations are not
+ * attributes, and each run of adjacent text and CDATA nodes is a single text node, represented by
+ * its first node. Documents that may contain entity reference nodes are not walked, since the XPath
+ * engine treats their content as part of the enclosing element. See {@link #canWalk(Node)}.
+ * 
+ * @author Jonathan Halterman
+ */
+final class SimplePath {
+  static final int ELEMENT = 0;
+  static final int TEXT = 1;
+  static final int ATTRIBUTE = 2;
+  /** The position of a step that selects nodes at any position */
+  static final int ANY_POSITION = -1;
+  /** The user data key that marks documents that were parsed without expanding entity references */
+  static final String ENTITY_REFERENCES = "net.jodah.xsylum.entityReferences";
+
+  final String expression;
+  final boolean absolute;
+  /** The node kind selected by each step */
+  final int[] kinds;
+  /** The name tested by each step, else null for {@code *} or {@code text()} */
+  final String[] names;
+  /** Whether each step is preceded by {@code //} */
+  final boolean[] descendant;
+  /** The position required by each step, else {@link #ANY_POSITION} */
+  final int[] positions;
+  /**
+   * Whether names match nodes by their full name rather than their local name. The XPath engine
+   * evaluates paths of the form {@code //name} and {@code .//name} with an iterator that does so.
+   */
+  final boolean exactNames;
+
+  private SimplePath(String expression, boolean absolute, int[] kinds, String[] names,
+      boolean[] descendant, int[] positions) {
+    this.expression = expression;
+    this.absolute = absolute;
+    this.kinds = kinds;
+    this.names = names;
+    this.descendant = descendant;
+    this.positions = positions;
+    exactNames = kinds.length == 1 && kinds[0] == ELEMENT && descendant[0] && names[0] != null
+        && positions[0] == ANY_POSITION;
+  }
+
+  /**
+   * Returns the SimplePath for the {@code expression}, else null if the {@code expression} is not
+   * a simple path.
+   */
+  static SimplePath parse(String expression) {
+    String path = expression.trim();
+    int length = path.length();
+    int i = 0;
+    boolean absolute = false;
+    boolean nextDescendant = false;
+    if (path.startsWith("//")) {
+      absolute = true;
+      nextDescendant = true;
+      i = 2;
+    } else if (path.startsWith("/")) {
+      absolute = true;
+      i = 1;
+    }
+
+    int[] kinds = new int[4];
+    String[] names = new String[4];
+    boolean[] descendant = new boolean[4];
+    int[] positions = new int[4];
+    Arrays.fill(positions, ANY_POSITION);
+    int steps = 0;
+    boolean terminal = false;
+
+    while (i < length) {
+      int end = path.indexOf('/', i);
+      if (end == -1)
+        end = length;
+      String step = path.substring(i, end);
+      if (terminal || step.isEmpty())
+        return null;
+
+      if (".".equals(step)) {
+        // Only a leading self step is supported, as in ./a or .//a
+        if (steps > 0 || absolute || end == length)
+          return null;
+      } else {
+        if (steps == kinds.length) {
+          kinds = Arrays.copyOf(kinds, steps * 2);
+          names = Arrays.copyOf(names, steps * 2);
+          descendant = Arrays.copyOf(descendant, steps * 2);
+          positions = Arrays.copyOf(positions, steps * 2);
+          Arrays.fill(positions, steps, positions.length, ANY_POSITION);
+        }
+
+        descendant[steps] = nextDescendant;
+        if ("text()".equals(step)) {
+          // The XPath engine's descendant text() iterator skips text that starts with CDATA
+          if (nextDescendant)
+            return null;
+          kinds[steps] = TEXT;
+          terminal = true;
+        } else if (step.charAt(0) == '@') {
+          String name = step.substring(1);
+          if (!"*".equals(name) && !isName(name))
+            return null;
+          kinds[steps] = ATTRIBUTE;
+          names[steps] = "*".equals(name) ? null : name;
+          terminal = true;
+        } else {
+          String name = step;
+          int bracket = step.indexOf('[');
+          if (bracket != -1) {
+            if (!step.endsWith("]") || bracket + 2 > step.length() - 1)
+              return null;
+            // A position of 0 is valid and selects nothing
+            String position = step.substring(bracket + 1, step.length() - 1);
+            if (!isPosition(position))
+              return null;
+            positions[steps] = Integer.parseInt(position);
+            name = step.substring(0, bracket);
+          }
+          if (!"*".equals(name) && !isName(name))
+            return null;
+          kinds[steps] = ELEMENT;
+          names[steps] = "*".equals(name) ? null : name;
+        }
+
+        steps++;
+      }
+
+      if (end == length)
+        break;
+      if (end + 1 < length && path.charAt(end + 1) == '/') {
+        nextDescendant = true;
+        i = end + 2;
+      } else {
+        nextDescendant = false;
+        i = end + 1;
+      }
+      if (i >= length)
+        return null;
+    }
+
+    if (steps == 0)
+      return null;
+    return new SimplePath(expression, absolute, Arrays.copyOf(kinds, steps),
+        Arrays.copyOf(names, steps), Arrays.copyOf(descendant, steps),
+        Arrays.copyOf(positions, steps));
+  }
+
+  /**
+   * Returns the first node in document order selected by the path from the {@code context} node,
+   * else null if none is selected. The walk stops at the first selected node.
+   */
+  Node first(Node context) {
+    List<Node> result = select(new SimplePath[] { this }, context, true).get(0);
+    return result.isEmpty() ? null : result.get(0);
+  }
+
+  /**
+   * Returns the nodes selected by the path from the {@code context} node, in document order.
+   */
+  List<Node> select(Node context) {
+    return select(new SimplePath[] { this }, context, false).get(0);
+  }
+
+  /**
+   * Returns the nodes selected by each of the {@code paths} from the {@code context} node, in
+   * document order, using a single walk over the tree.
+   */
+  static List<List<Node>> select(SimplePath[] paths, Node context) {
+    return select(paths, context, false);
+  }
+
+  /**
+   * Returns whether paths can be walked from the {@code context} node, which is not the case when
+   * its document may contain entity reference nodes. These require a document type declaration,
+   * and documents parsed without expanding entity references are marked with
+   * {@link #ENTITY_REFERENCES}.
+   */
+  static boolean canWalk(Node context) {
+    Document document = context.getNodeType() == Node.DOCUMENT_NODE ? (Document) context
+        : context.getOwnerDocument();
+    return document == null || document.getDoctype() == null
+        || document.getUserData(ENTITY_REFERENCES) == null;
+  }
+
+  /**
+   * Returns the string value of the {@code node} as defined by XPath, where a text node includes
+   * any adjacent text and CDATA nodes that follow it.
+   */
+  static String stringValue(Node node) {
+    short type = node.getNodeType();
+    if (type != Node.TEXT_NODE && type != Node.CDATA_SECTION_NODE)
+      return type == Node.ATTRIBUTE_NODE ? node.getNodeValue() : node.getTextContent();
+
+    Node next = node.getNextSibling();
+    if (next == null || !isText(next))
+      return node.getNodeValue();
+    StringBuilder sb = new StringBuilder(node.getNodeValue());
+    for (; next != null && isText(next); next = next.getNextSibling())
+      sb.append(next.getNodeValue());
+    return sb.toString();
+  }
+
+  private static boolean isText(Node node) {
+    return node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE;
+  }
+
+  /**
+   * Returns an iterator over the nodes selected by the path from the {@code context} node, in
+   * document order. The tree is walked lazily as the iterator is advanced, so a caller that stops
+   * early does not walk the rest of the tree.
+   */
+  Iterator<Node> iterator(Node context) {
+    final List<Node> buffer = new ArrayList<Node>();
+    final Walk walk = walk(new SimplePath[] { this }, context,
+        Collections.<List<Node>> singletonList(buffer));
+    return new Iterator<Node>() {
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+        if (index < buffer.size())
+          return true;
+
+        buffer.clear();
+        index = 0;
+        while (walk != null && walk.depth >= 0 && buffer.isEmpty())
+          walk.next();
+        return !buffer.isEmpty();
+      }
+
+      @Override
+      public Node next() {
+        if (!hasNext())
+          throw new NoSuchElementException();
+        return buffer.get(index++);
+      }
+    };
+  }
+
+  /**
+   * Returns the nodes selected by each of the {@code paths}, stopping once a node is selected if
+   * {@code first} is true.
+   */
+  private static List<List<Node>> select(SimplePath[] paths, Node context, boolean first) {
+    List<List<Node>> results = new ArrayList<List<Node>>(paths.length);
+    for (int p = 0; p < paths.length; p++)
+      results.add(new ArrayList<Node>());
+    if (paths.length == 0)
+      return results;
+
+    Walk walk = walk(paths, context, results);
+    while (walk != null && walk.depth >= 0 && !(first && !results.get(0).isEmpty()))
+      walk.next();
+    return results;
+  }
+
+  /**
+   * Returns a walk that selects the nodes for each of the {@code paths} from the {@code context}
+   * node into the {@code results}, else null if no nodes can be selected.
+   */
+  private static Walk walk(SimplePath[] paths, Node context, List<List<Node>> results) {
+    // Number the steps of all paths so that the active steps at each node form a bit set
+    int[] offsets = new int[paths.length + 1];
+    boolean anyAbsolute = false;
+    for (int p = 0; p < paths.length; p++) {
+      offsets[p + 1] = offsets[p] + paths[p].kinds.length;
+      anyAbsolute |= paths[p].absolute;
+    }
+    int stepCount = offsets[paths.length];
+    int[] stepPaths = new int[stepCount];
+    int[] stepIndexes = new int[stepCount];
+    for (int p = 0; p < paths.length; p++)
+      for (int s = 0; s < paths[p].kinds.length; s++) {
+        stepPaths[offsets[p] + s] = p;
+        stepIndexes[offsets[p] + s] = s;
+      }
+
+    int words = (stepCount + 63) >>> 6;
+    Node start = context;
+    Map<Node, Boolean> ancestors = Collections.emptyMap();
+    if (anyAbsolute && context.getNodeType() != Node.DOCUMENT_NODE) {
+      start = context.getOwnerDocument();
+      if (start == null)
+        return null;
+      // Relative paths start at the context, so its ancestors must be walked into
+      ancestors = new IdentityHashMap<Node, Boolean>();
+      for (Node n = context.getParentNode(); n != null; n = n.getParentNode())
+        ancestors.put(n, Boolean.TRUE);
+    }
+
+    Walk walk = new Walk(paths, results, offsets, stepPaths, stepIndexes, words, context, start,
+        ancestors);
+    long[] initial = walk.state(0);
+    for (int p = 0; p < paths.length; p++)
+      if (paths[p].absolute || start == context)
+        setBit(initial, offsets[p]);
+    walk.push(start);
+    return walk;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+  /**
+   * Returns whether the {@code node}'s name matches the {@code name}, else any name if the
+   * {@code name} is null.
+   */
+  static boolean matches(String name, Node node) {
+    if (name == null)
+      return true;
+    if (node.getNamespaceURI() != null)
+      return false;
+
+    // Nodes created without namespace support match by the local part of their name
+    return matchesLocalPart(name, node.getNodeName());
+  }
+
+  /**
+   * Returns whether the local part of the {@code qualifiedName} is the {@code name}.
+   */
+  static boolean matchesLocalPart(String name, String qualifiedName) {
+    int localStart = qualifiedName.indexOf(':') + 1;
+    return qualifiedName.length() - localStart == name.length()
+        && qualifiedName.regionMatches(localStart, name, 0, name.length());
+  }
+
+  /**
+   * Returns whether the {@code node}'s expanded name is the {@code name} with no namespace, where
+   * nodes created without namespace support are named by their full name.
+   */
+  static boolean matchesExactly(String name, Node node) {
+    if (node.getNamespaceURI() != null)
+      return false;
+    String localName = node.getLocalName();
+    return name.equals(localName != null ? localName : node.getNodeName());
+  }
+
+  /**
+   * Returns whether the {@code attribute} is a namespace declaration, which XPath does not treat
+   * as an attribute.
+   */
+  static boolean isNamespaceDeclaration(Node attribute) {
+    return isNamespaceDeclaration(attribute.getNodeName());
+  }
+
+  static boolean isNamespaceDeclaration(String attributeName) {
+    return attributeName.startsWith("xmlns")
+        && (attributeName.length() == 5 || attributeName.charAt(5) == ':');
+  }
+
+  private static boolean isName(String name) {
+    if (name.isEmpty() || !(Character.isLetter(name.charAt(0)) || name.charAt(0) == '_'))
+      return false;
+    for (int i = 1; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.')
+        return false;
+    }
+    return true;
+  }
+
+  private static boolean isPosition(String position) {
+    if (position.length() > 9)
+      return false;
+    for (int i = 0; i < position.length(); i++)
+      if (position.charAt(i) < '0' || position.charAt(i) > '9')
+        return false;
+    return true;
+  }
+
+  static void setBit(long[] bits, int index) {
+    bits[index >>> 6] |= 1L << index;
+  }
+
+  static boolean isSet(long[] bits, int index) {
+    return (bits[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * The state of a walk over the tree. For each open node, tracks the steps that are active with
+   * the node as their context, the next child to visit, and the number of children matched by each
+   * positional step.
+   */
+  private static final class Walk {
+    final SimplePath[] paths;
+    final List<List<Node>> results;
+    final int[] offsets;
+    final int[] stepPaths;
+    final int[] stepIndexes;
+    final int words;
+    final Node context;
+    final Node start;
+    final Map<Node, Boolean> ancestors;
+    long[][] states = new long[16][];
+    int[][] counts = new int[16][];
+    Node[] cursors = new Node[16];
+    boolean[] inTextRun = new boolean[16];
+    int depth = -1;
+
+    Walk(SimplePath[] paths, List<List<Node>> results, int[] offsets, int[] stepPaths,
+        int[] stepIndexes, int words, Node context, Node start, Map<Node, Boolean> ancestors) {
+      this.paths = paths;
+      this.results = results;
+      this.offsets = offsets;
+      this.stepPaths = stepPaths;
+      this.stepIndexes = stepIndexes;
+      this.words = words;
+      this.context = context;
+      this.start = start;
+      this.ancestors = ancestors;
+    }
+
+    /**
+     * Visits the next child of the current node, or closes the current node if it has no more
+     * children. The walk is complete once {@link #depth} is negative.
+     */
+    void next() {
+      Node child = cursors[depth];
+      if (child == null) {
+        depth--;
+        return;
+      }
+      cursors[depth] = child.getNextSibling();
+
+      short type = child.getNodeType();
+      if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+        if (!inTextRun[depth]) {
+          inTextRun[depth] = true;
+          selectText(child);
+        }
+        return;
+      }
+
+      inTextRun[depth] = false;
+      if (type != Node.ELEMENT_NODE)
+        return;
+
+      long[] childState = state(depth + 1);
+      boolean active = advance(child, childState);
+      if (child == context && start != context) {
+        for (int p = 0; p < paths.length; p++)
+          if (!paths[p].absolute)
+            setBit(childState, offsets[p]);
+        active = true;
+      }
+
+      if (active || ancestors.containsKey(child))
+        push(child);
+    }
+
+    /**
+     * Returns the cleared state for the {@code depth}.
+     */
+    long[] state(int depth) {
+      ensureDepth(depth);
+      long[] state = states[depth];
+      if (state == null)
+        states[depth] = state = new long[words];
+      else
+        Arrays.fill(state, 0);
+      return state;
+    }
+
+    /**
+     * Opens the {@code node}, whose state has been set, selecting its matching attributes.
+     */
+    void push(Node node) {
+      int d = ++depth;
+      ensureDepth(d);
+      cursors[d] = node.getFirstChild();
+      inTextRun[d] = false;
+      if (counts[d] == null)
+        counts[d] = new int[offsets[paths.length]];
+      else
+        Arrays.fill(counts[d], 0);
+
+      long[] state = states[d];
+      if (node.getNodeType() != Node.ELEMENT_NODE || !node.hasAttributes())
+        return;
+      for (int w = 0; w < words; w++) {
+        for (long bits = state[w]; bits != 0; bits &= bits - 1) {
+          int step = (w << 6) + Long.numberOfTrailingZeros(bits);
+          SimplePath path = paths[stepPaths[step]];
+          int s = stepIndexes[step];
+          if (path.kinds[s] != ATTRIBUTE)
+            continue;
+
+          NamedNodeMap attributes = node.getAttributes();
+          for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            if (!isNamespaceDeclaration(attribute) && matches(path.names[s], attribute))
+              results.get(stepPaths[step]).add(attribute);
+          }
+        }
+      }
+    }
+
+    /**
+     * Selects the text {@code node}, a child of the current node, for active text steps.
+     */
+    void selectText(Node node) {
+      long[] state = states[depth];
+      for (int w = 0; w < words; w++)
+        for (long bits = state[w]; bits != 0; bits &= bits - 1) {
+          int step = (w << 6) + Long.numberOfTrailingZeros(bits);
+          if (paths[stepPaths[step]].kinds[stepIndexes[step]] == TEXT)
+            results.get(stepPaths[step]).add(node);
+        }
+    }
+
+    /**
+     * Applies the active steps of the current node to its child {@code element}, selecting the
+     * {@code element} for completed paths and setting the steps active for the {@code element} in
+     * the {@code childState}. Returns whether any steps are active for the {@code element}.
+     */
+    boolean advance(Node element, long[] childState) {
+      long[] state = states[depth];
+      int[] count = counts[depth];
+      boolean active = false;
+      for (int w = 0; w < words; w++) {
+        for (long bits = state[w]; bits != 0; bits &= bits - 1) {
+          int step = (w << 6) + Long.numberOfTrailingZeros(bits);
+          int p = stepPaths[step];
+          SimplePath path = paths[p];
+          int s = stepIndexes[step];
+
+          // Steps after // apply to all descendants of their context
+          if (path.descendant[s]) {
+            setBit(childState, step);
+            active = true;
+          }
+
+          if (path.kinds[s] != ELEMENT || !(path.exactNames
+              ? matchesExactly(path.names[s], element) : matches(path.names[s], element)))
+            continue;
+          if (path.positions[s] != ANY_POSITION && ++count[step] != path.positions[s])
+            continue;
+
+          if (s == path.kinds.length - 1)
+            results.get(p).add(element);
+          else {
+            setBit(childState, step + 1);
+            active = true;
+          }
+        }
+      }
+
+      return active;
+    }
+
+    private void ensureDepth(int depth) {
+      if (depth >= cursors.length) {
+        int capacity = cursors.length * 2;
+        states = Arrays.copyOf(states, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        cursors = Arrays.copyOf(cursors, capacity);
+        inTextRun = Arrays.copyOf(inTextRun, capacity);
+      }
+    }
+  }
+}
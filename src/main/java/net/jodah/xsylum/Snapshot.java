@@ -0,0 +1,392 @@
+package net.jodah.xsylum;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Saves parsed documents to a binary snapshot that can be loaded without parsing, and loads them.
+ * A snapshot holds a compact document's node arrays, its deduplicated element and attribute names,
+ * and its text, each length-prefixed, so that loading is limited by I/O rather than by parsing.
+ * Snapshots are memory-mapped when loaded, and node views are created lazily as the document is
+ * read.
+ * 
+ * <p>
+ * Snapshots record the SHA-256 hash of the file they were created from, so that stale snapshots
+ * are detected and replaced when the file changes:
+ * 
+ * <pre>
+ * XmlDocument document = Snapshot.load(referenceXml, referenceSnapshot);
+ * </pre>
+ * 
+ * Loaded documents are compact, read-only documents. See
+ * {@link Xsylum#compactDocumentFor(java.io.InputStream)}.
+ * 
+ * @author Jonathan Halterman
+ */
+public final class Snapshot {
+  private static final int MAGIC = 0x5853594C;
+  private static final int VERSION = 1;
+  private static final int HASH_LENGTH = 32;
+  private static final int HEADER_LENGTH = 8 + HASH_LENGTH;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private Snapshot() {
+  }
+
+  /**
+   * Returns whether the {@code snapshot} exists and was created from the current content of the
+   * {@code source} file.
+   * 
+   * @throws XsylumException if the {@code source} cannot be read
+   */
+  public static boolean isCurrent(Path source, Path snapshot) throws XsylumException {
+    byte[] snapshotHash = sourceHash(snapshot);
+    return snapshotHash != null && Arrays.equals(snapshotHash, hash(source));
+  }
+
+  /**
+   * Loads the document in the {@code snapshot}.
+   * 
+   * @throws XsylumException if the {@code snapshot} cannot be read or is not a valid snapshot
+   */
+  public static XmlDocument load(Path snapshot) throws XsylumException {
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      return new XmlDocument(read(buffer, snapshot));
+    } catch (XsylumException e) {
+      throw e;
+    } catch (BufferUnderflowException e) {
+      throw new XsylumException(e, "Snapshot %s is truncated or corrupt", snapshot.getFileName());
+    } catch (Exception e) {
+      throw new XsylumException(e, "Failed to load snapshot %s", snapshot.getFileName());
+    }
+  }
+
+  /**
+   * Loads the document in the {@code snapshot} if it is current for the {@code source} file, else
+   * parses the {@code source}, writes a new {@code snapshot} for it, and returns the parsed
+   * document. The {@code source} is read once, and the same content is both hashed and parsed, so
+   * a snapshot always records the hash of the content it holds.
+   * 
+   * @throws XsylumException if the {@code source} cannot be read or parsed, or if the
+   *           {@code snapshot} cannot be read or written
+   */
+  public static XmlDocument load(Path source, Path snapshot) throws XsylumException {
+    byte[] xml;
+    try {
+      xml = Files.readAllBytes(source);
+    } catch (IOException e) {
+      throw new XsylumException(e, "Failed to read file %s", source.getFileName());
+    }
+
+    byte[] hash = digest().digest(xml);
+    if (Arrays.equals(hash, sourceHash(snapshot)))
+      return load(snapshot);
+
+    XmlDocument document = Xsylum.compactDocumentFor(xml, source);
+    write((CompactDocument) document.source, hash, snapshot);
+    return document;
+  }
+
+  /**
+   * Writes the {@code document} to the {@code snapshot}, replacing any existing snapshot. Since the
+   * snapshot is not associated with a source file, it is never current for one. The snapshot is
+   * written to a temporary file first and then moved into place, so readers never see a partially
+   * written snapshot.
+   * 
+   * @throws IllegalStateException if the {@code document} is namespace aware, and so cannot be
+   *           {@link XmlDocument#freeze() frozen}
+   * @throws XsylumException if the {@code snapshot} cannot be written
+   */
+  public static void write(XmlDocument document, Path snapshot) throws XsylumException {
+    write((CompactDocument) document.freeze().source, new byte[HASH_LENGTH], snapshot);
+  }
+
+  private static void write(CompactDocument document, byte[] sourceHash, Path snapshot)
+      throws XsylumException {
+    Path directory = snapshot.toAbsolutePath().getParent();
+    Path temp = null;
+    try {
+      temp = Files.createTempFile(directory, snapshot.getFileName().toString(), ".tmp");
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        new Writer(channel).write(document, sourceHash);
+      }
+
+      try {
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      throw new XsylumException(e, "Failed to write snapshot %s", snapshot.getFileName());
+    } finally {
+      if (temp != null) {
+        try {
+          Files.deleteIfExists(temp);
+        } catch (IOException ignore) {
+        }
+      }
+    }
+  }
+
+  private static CompactDocument read(ByteBuffer buffer, Path snapshot) throws XsylumException {
+    if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC)
+      throw new XsylumException("File %s is not a snapshot", snapshot.getFileName());
+    int version = buffer.getInt();
+    if (version != VERSION)
+      throw new XsylumException("Snapshot %s has unsupported version %s", snapshot.getFileName(),
+          version);
+    buffer.position(buffer.position() + HASH_LENGTH);
+
+    int nodeCount = buffer.getInt();
+    int attributeCount = buffer.getInt();
+    int nameCount = buffer.getInt();
+    int charCount = buffer.getInt();
+    String documentURI = readString(buffer);
+    int[] parents = readInts(buffer, nodeCount);
+    int[] firstChildren = readInts(buffer, nodeCount);
+    int[] nextSiblings = readInts(buffer, nodeCount);
+    int[] nameIds = readInts(buffer, nodeCount);
+    int[] offsets = readInts(buffer, nodeCount);
+    int[] lengths = readInts(buffer, nodeCount);
+    int[] attributeNameIds = readInts(buffer, attributeCount);
+    int[] attributeOffsets = readInts(buffer, attributeCount);
+    int[] attributeLengths = readInts(buffer, attributeCount);
+    if (nameCount < 0 || nameCount * 4L > buffer.remaining())
+      throw new BufferUnderflowException();
+    String[] names = new String[nameCount];
+    Map<String, Integer> nameIndex = new HashMap<String, Integer>(nameCount * 2);
+    for (int i = 0; i < nameCount; i++) {
+      names[i] = readString(buffer);
+      nameIndex.put(names[i], i);
+    }
+
+    char[] chars = readChars(buffer, charCount);
+    if (!isValid(parents, firstChildren, nextSiblings, nameIds, offsets, lengths, attributeNameIds,
+        attributeOffsets, attributeLengths, nameCount, charCount))
+      throw new XsylumException("Snapshot %s is corrupt", snapshot.getFileName());
+    return new CompactDocument(parents, firstChildren, nextSiblings, nameIds, offsets, lengths,
+        attributeNameIds, attributeOffsets, attributeLengths, names, nameIndex, chars,
+        documentURI);
+  }
+
+  /**
+   * Returns whether the node and attribute arrays form a tree whose name ids, attribute ranges and
+   * character ranges are in bounds, so that navigating the loaded document cannot fail. Children
+   * and siblings must follow their nodes, as they do in document order, which also rules out
+   * cycles.
+   */
+  private static boolean isValid(int[] parents, int[] firstChildren, int[] nextSiblings,
+      int[] nameIds, int[] offsets, int[] lengths, int[] attributeNameIds, int[] attributeOffsets,
+      int[] attributeLengths, int nameCount, int charCount) {
+    int nodeCount = parents.length;
+    if (nodeCount == 0 || parents[0] != CompactDocument.NONE
+        || nameIds[0] != CompactDocument.DOCUMENT)
+      return false;
+
+    for (int i = 0; i < nodeCount; i++) {
+      if (i > 0 && (parents[i] < 0 || parents[i] >= i))
+        return false;
+      if (!isFollowing(firstChildren[i], i, nodeCount) || !isFollowing(nextSiblings[i], i,
+          nodeCount))
+        return false;
+      if ((firstChildren[i] != CompactDocument.NONE && parents[firstChildren[i]] != i)
+          || (nextSiblings[i] != CompactDocument.NONE && parents[nextSiblings[i]] != parents[i]))
+        return false;
+
+      int nameId = nameIds[i];
+      if (i > 0 && nameId >= 0) {
+        if (nameId >= nameCount || !isRange(offsets[i], lengths[i], attributeNameIds.length))
+          return false;
+      } else if (i > 0 && (nameId == CompactDocument.TEXT || nameId == CompactDocument.CDATA)) {
+        if (!isRange(offsets[i], lengths[i], charCount))
+          return false;
+      } else if (i > 0)
+        return false;
+    }
+
+    for (int i = 0; i < attributeNameIds.length; i++)
+      if (attributeNameIds[i] < 0 || attributeNameIds[i] >= nameCount
+          || !isRange(attributeOffsets[i], attributeLengths[i], charCount))
+        return false;
+    return true;
+  }
+
+  private static boolean isFollowing(int index, int node, int nodeCount) {
+    return index == CompactDocument.NONE || (index > node && index < nodeCount);
+  }
+
+  private static boolean isRange(int offset, int length, int limit) {
+    return offset >= 0 && length >= 0 && (long) offset + length <= limit;
+  }
+
+  private static char[] readChars(ByteBuffer buffer, int count) {
+    if (count < 0 || count * 2L > buffer.remaining())
+      throw new BufferUnderflowException();
+    char[] chars = new char[count];
+    buffer.asCharBuffer().get(chars);
+    buffer.position(buffer.position() + count * 2);
+    return chars;
+  }
+
+  private static int[] readInts(ByteBuffer buffer, int count) {
+    if (count < 0 || count * 4L > buffer.remaining())
+      throw new BufferUnderflowException();
+    int[] ints = new int[count];
+    buffer.asIntBuffer().get(ints);
+    buffer.position(buffer.position() + count * 4);
+    return ints;
+  }
+
+  private static String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    return length == -1 ? null : new String(readChars(buffer, length));
+  }
+
+  /**
+   * Returns the source hash recorded in the {@code snapshot}, else null if the {@code snapshot}
+   * does not exist or is not a valid snapshot.
+   */
+  private static byte[] sourceHash(Path snapshot) {
+    if (!Files.isRegularFile(snapshot))
+      return null;
+
+    try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining())
+        if (channel.read(header) == -1)
+          break;
+      header.flip();
+      if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC
+          || header.getInt() != VERSION)
+        return null;
+      byte[] hash = new byte[HASH_LENGTH];
+      header.get(hash);
+      return hash;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the SHA-256 hash of the content of the {@code source} file.
+   */
+  private static byte[] hash(Path source) throws XsylumException {
+    try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+      MessageDigest digest = digest();
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        digest.update(buffer);
+        buffer.clear();
+      }
+
+      return digest.digest();
+    } catch (IOException e) {
+      throw new XsylumException(e, "Failed to read file %s", source.getFileName());
+    }
+  }
+
+  private static MessageDigest digest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Writes snapshots through a fixed size buffer.
+   */
+  private static final class Writer {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(
+        ByteOrder.LITTLE_ENDIAN);
+
+    Writer(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    void write(CompactDocument document, byte[] sourceHash) throws IOException {
+      int nodeCount = document.nodeCount;
+      int attributeCount = document.attributeNameIds.length;
+      buffer.putInt(MAGIC).putInt(VERSION).put(sourceHash);
+      buffer.putInt(nodeCount).putInt(attributeCount).putInt(document.names.length)
+          .putInt(document.chars.length);
+      writeString(document.getDocumentURI());
+      writeInts(document.parents);
+      writeInts(document.firstChildren);
+      writeInts(document.nextSiblings);
+      writeInts(document.nameIds);
+      writeInts(document.offsets);
+      writeInts(document.lengths);
+      writeInts(document.attributeNameIds);
+      writeInts(document.attributeOffsets);
+      writeInts(document.attributeLengths);
+      for (String name : document.names)
+        writeString(name);
+      writeChars(document.chars, 0, document.chars.length);
+      flush();
+      channel.force(false);
+    }
+
+    private void writeInts(int[] ints) throws IOException {
+      for (int i = 0; i < ints.length;) {
+        if (buffer.remaining() < 4)
+          flush();
+        int n = Math.min(ints.length - i, buffer.remaining() / 4);
+        buffer.asIntBuffer().put(ints, i, n);
+        buffer.position(buffer.position() + n * 4);
+        i += n;
+      }
+    }
+
+    private void writeChars(char[] chars, int offset, int length) throws IOException {
+      for (int i = offset, end = offset + length; i < end;) {
+        if (buffer.remaining() < 2)
+          flush();
+        int n = Math.min(end - i, buffer.remaining() / 2);
+        buffer.asCharBuffer().put(chars, i, n);
+        buffer.position(buffer.position() + n * 2);
+        i += n;
+      }
+    }
+
+    private void writeString(String value) throws IOException {
+      if (buffer.remaining() < 4)
+        flush();
+      if (value == null) {
+        buffer.putInt(-1);
+        return;
+      }
+
+      buffer.putInt(value.length());
+      char[] chars = value.toCharArray();
+      writeChars(chars, 0, chars.length);
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+      buffer.clear();
+    }
+  }
+}
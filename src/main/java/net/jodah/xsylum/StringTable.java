@@ -0,0 +1,141 @@
+package net.jodah.xsylum;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A bounded, thread-safe table of canonical strings, used to deduplicate the repeated attribute
+ * values and short text of parsed documents so that documents that are kept resident share a single
+ * instance of each. A table can be shared by any number of documents and threads.
+ * 
+ * <p>
+ * The table has a fixed number of slots, each holding one string, and is never locked. When two
+ * strings map to the same slot the most recent one replaces the other, so deduplication is best
+ * effort and memory use is bounded. Strings longer than the table's maximum length are not
+ * deduplicated, since long values rarely repeat.
+ * 
+ * <p>
+ * Documents are deduplicated by parsing them with a {@link ParserPool} that has a StringTable.
+ * Element and attribute names are already deduplicated by the parser's own symbol table.
+ * 
+ * @author Jonathan Halterman
+ */
+public final class StringTable {
+  static final int DEFAULT_CAPACITY = 64 * 1024;
+  static final int DEFAULT_MAX_LENGTH = 64;
+  private static final StringTable SHARED = new StringTable(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+
+  private final AtomicReferenceArray<String> slots;
+  private final int mask;
+  private final int maxLength;
+
+  /**
+   * Creates a table with at least {@code capacity} slots, rounded up to a power of two, that
+   * deduplicates strings of up to {@code maxLength} chars.
+   * 
+   * @throws IllegalArgumentException if {@code capacity} is not positive or exceeds 2^30, or if
+   *           {@code maxLength} is negative
+   */
+  public StringTable(int capacity, int maxLength) {
+    if (capacity <= 0 || capacity > 1 << 30)
+      throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+    if (maxLength < 0)
+      throw new IllegalArgumentException("maxLength must be >= 0");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity)
+      size <<= 1;
+    slots = new AtomicReferenceArray<String>(size);
+    mask = size - 1;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Returns a table shared across the JVM, with {@value #DEFAULT_CAPACITY} slots, that deduplicates
+   * strings of up to {@value #DEFAULT_MAX_LENGTH} chars.
+   */
+  public static StringTable shared() {
+    return SHARED;
+  }
+
+  /**
+   * Returns the canonical instance of the {@code value}, which is the {@code value} itself if no
+   * equal string is in the table. Returns null if the {@code value} is null.
+   */
+  public String canonical(String value) {
+    if (value == null || value.length() > maxLength)
+      return value;
+
+    int hash = value.hashCode();
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    String existing = slots.get(slot);
+    if (existing != null && existing.equals(value))
+      return existing;
+    slots.lazySet(slot, value);
+    return value;
+  }
+
+  /**
+   * Returns the number of slots in the table.
+   */
+  public int capacity() {
+    return slots.length();
+  }
+
+  /**
+   * Returns the maximum length of strings that are deduplicated.
+   */
+  public int maxLength() {
+    return maxLength;
+  }
+
+  @Override
+  public String toString() {
+    return "StringTable[capacity=" + capacity() + ", maxLength=" + maxLength + "]";
+  }
+
+  /**
+   * Replaces the attribute values and text in the tree rooted at the {@code root} with their
+   * canonical instances. Nodes that cannot be modified are skipped.
+   */
+  void canonicalize(Node root) {
+    Node node = root;
+    while (node != null) {
+      short type = node.getNodeType();
+      if (type == Node.ELEMENT_NODE) {
+        if (node.hasAttributes()) {
+          NamedNodeMap attributes = node.getAttributes();
+          for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            String value = attribute.getValue();
+            String canonical = canonical(value);
+            if (canonical != value)
+              set(attribute, canonical);
+          }
+        }
+      } else if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+        String value = node.getNodeValue();
+        String canonical = canonical(value);
+        if (canonical != value)
+          set(node, canonical);
+      }
+
+      Node next = node.getFirstChild();
+      for (Node current = node; next == null && current != root; current = current
+          .getParentNode())
+        next = current.getNextSibling();
+      node = next;
+    }
+  }
+
+  private static void set(Node node, String value) {
+    try {
+      node.setNodeValue(value);
+    } catch (DOMException ignore) {
+      // Read-only nodes, such as entity reference content, are left as is
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package net.jodah.xsylum;
+
+/**
+ * Wraps an {@link XsylumException} that occurs where checked exceptions cannot be thrown, such as
+ * while iterating over a stream of elements.
+ * 
+ * @author Jonathan Halterman
+ */
+public class UncheckedXsylumException extends RuntimeException {
+  private static final long serialVersionUID = 5382760617722510390L;
+
+  public UncheckedXsylumException(XsylumException cause) {
+    super(cause.getMessage(), cause);
+  }
+
+  @Override
+  public XsylumException getCause() {
+    return (XsylumException) super.getCause();
+  }
+}
@@ -0,0 +1,90 @@
+package net.jodah.xsylum;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.xpath.XPathExpressionException;
+
+/**
+ * A bounded, thread-safe cache of compiled XPath expressions, keyed by expression string. Used by
+ * {@link XmlSearchable} when searching with expression strings.
+ * 
+ * @author Jonathan Halterman
+ */
+public final class XPathCache {
+  static final int MAXIMUM_SIZE = 1024;
+
+  private static final ConcurrentMap<String, XmlExpression> EXPRESSIONS =
+      new ConcurrentHashMap<String, XmlExpression>();
+  private static final LongAdder HITS = new LongAdder();
+  private static final LongAdder MISSES = new LongAdder();
+
+  private XPathCache() {
+  }
+
+  /**
+   * Removes all cached expressions and resets the hit and miss counts.
+   */
+  public static void clear() {
+    EXPRESSIONS.clear();
+    HITS.reset();
+    MISSES.reset();
+  }
+
+  /**
+   * Returns the number of lookups that were served from the cache.
+   */
+  public static long hitCount() {
+    return HITS.sum();
+  }
+
+  /**
+   * Returns the number of lookups that required an expression to be compiled.
+   */
+  public static long missCount() {
+    return MISSES.sum();
+  }
+
+  /**
+   * Returns the number of cached expressions.
+   */
+  public static int size() {
+    return EXPRESSIONS.size();
+  }
+
+  /**
+   * Returns the cached XmlExpression for the {@code expression}, compiling and caching it if
+   * necessary. When the cache is full an arbitrary entry is evicted.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   */
+  static XmlExpression get(String expression) throws XPathExpressionException {
+    XmlExpression result = EXPRESSIONS.get(expression);
+    XsylumListener listener = Xsylum.listener;
+    if (listener != null)
+      listener.cacheAccessed("xpath", result != null);
+    if (result != null) {
+      HITS.increment();
+      return result;
+    }
+
+    MISSES.increment();
+    result = new XmlExpression(expression);
+    XmlExpression existing = EXPRESSIONS.putIfAbsent(expression, result);
+    if (existing != null)
+      return existing;
+
+    if (EXPRESSIONS.size() > MAXIMUM_SIZE) {
+      Iterator<String> keys = EXPRESSIONS.keySet().iterator();
+      while (EXPRESSIONS.size() > MAXIMUM_SIZE && keys.hasNext()) {
+        String key = keys.next();
+        if (!key.equals(expression))
+          keys.remove();
+      }
+    }
+
+    return result;
+  }
+}
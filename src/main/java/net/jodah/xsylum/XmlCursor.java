@@ -0,0 +1,397 @@
+package net.jodah.xsylum;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A mutable position within an element's subtree, for traversing large documents without
+ * allocating an {@link XmlElement} per node. A cursor starts at the element it was obtained from,
+ * which is its root, and moves between elements within the root's subtree. Moves return whether
+ * they succeeded, leaving the cursor where it was if they did not:
+ * 
+ * <pre>
+ * XmlCursor cursor = document.cursor();
+ * if (cursor.toChild("book")) {
+ *   do {
+ *     int copies = cursor.attributeAsInt("copies");
+ *   } while (cursor.toNextSibling("book"));
+ * }
+ * </pre>
+ * 
+ * <p>
+ * Names and values are read in place, and numeric values of compact documents are parsed from the
+ * document's characters without creating Strings. Cursors over compact documents navigate the
+ * document's node arrays directly, without creating DOM node views. Cursors are not thread-safe,
+ * though any number of cursors may traverse the same document.
+ * 
+ * @author Jonathan Halterman
+ */
+public final class XmlCursor {
+  /** The compact document being traversed, else null for DOM documents */
+  private final CompactDocument compact;
+  private final Element root;
+  private final int rootIndex;
+  /** The current element, for DOM documents */
+  private Node node;
+  /** The index of the current element, for compact documents */
+  private int index;
+  private int depth;
+
+  XmlCursor(Element root) {
+    if (root == null)
+      throw new NullPointerException("root");
+    this.root = root;
+    if (root instanceof CompactElement) {
+      compact = ((CompactElement) root).document;
+      rootIndex = ((CompactElement) root).index;
+    } else {
+      compact = null;
+      rootIndex = CompactDocument.NONE;
+    }
+
+    toRoot();
+  }
+
+  /**
+   * Returns the value of the current element's {@code attribute}.
+   * 
+   * @throws XsylumException if the {@code attribute} cannot be found
+   */
+  public String attribute(String attribute) throws XsylumException {
+    if (compact != null) {
+      int a = compactAttribute(attribute);
+      return new String(compact.chars, compact.attributeOffsets[a], compact.attributeLengths[a]);
+    }
+
+    return domAttribute(attribute).getNodeValue();
+  }
+
+  /**
+   * Returns the value of the current element's {@code attribute} as a boolean. Returns true for
+   * "true", "1", "yes", "y" ignoring case, else returns false.
+   * 
+   * @throws XsylumException if the {@code attribute} cannot be found
+   */
+  public boolean attributeAsBoolean(String attribute) throws XsylumException {
+    return XmlSearchable.Converter.booleanConverter.convert(attribute(attribute));
+  }
+
+  /**
+   * Returns the value of the current element's {@code attribute} as a double.
+   * 
+   * @throws XsylumException if the {@code attribute} cannot be found
+   * @throws NumberFormatException if the attribute is not a valid double
+   */
+  public double attributeAsDouble(String attribute) throws XsylumException {
+    return Double.parseDouble(attribute(attribute));
+  }
+
+  /**
+   * Returns the value of the current element's {@code attribute} as an int, parsed in place.
+   * 
+   * @throws XsylumException if the {@code attribute} cannot be found
+   * @throws NumberFormatException if the attribute is not a valid int
+   */
+  public int attributeAsInt(String attribute) throws XsylumException {
+    return (int) attributeAsLong(attribute, Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the value of the current element's {@code attribute} as a long, parsed in place.
+   * 
+   * @throws XsylumException if the {@code attribute} cannot be found
+   * @throws NumberFormatException if the attribute is not a valid long
+   */
+  public long attributeAsLong(String attribute) throws XsylumException {
+    return attributeAsLong(attribute, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns the depth of the current element below the cursor's root, which is at depth 0.
+   */
+  public int depth() {
+    return depth;
+  }
+
+  /**
+   * Returns the current element.
+   */
+  public Element element() {
+    return compact == null ? (Element) node : (Element) compact.node(index);
+  }
+
+  /**
+   * Returns whether the current element has the {@code attribute}.
+   */
+  public boolean hasAttribute(String attribute) {
+    return compact == null ? ((Element) node).hasAttribute(attribute)
+        : compact.attributeIndex(index, attribute) != CompactDocument.NONE;
+  }
+
+  /**
+   * Returns the current element's name.
+   */
+  public String name() {
+    return compact == null ? node.getNodeName() : compact.names[compact.nameIds[index]];
+  }
+
+  /**
+   * Moves to the first child element of the current element with the {@code name}.
+   * 
+   * @return whether the cursor moved
+   */
+  public boolean toChild(String name) {
+    if (compact != null) {
+      int nameId = compact.nameId(name);
+      if (nameId == CompactDocument.NONE)
+        return false;
+      for (int i = compact.firstChildren[index]; i != CompactDocument.NONE; i =
+          compact.nextSiblings[i])
+        if (compact.nameIds[i] == nameId)
+          return moveTo(i, depth + 1);
+      return false;
+    }
+
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+      if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(name))
+        return moveTo(child, depth + 1);
+    return false;
+  }
+
+  /**
+   * Returns a new XmlElement for the current element.
+   */
+  public XmlElement toElement() {
+    return new XmlElement(element());
+  }
+
+  /**
+   * Moves to the first child element of the current element.
+   * 
+   * @return whether the cursor moved
+   */
+  public boolean toFirstChild() {
+    if (compact != null) {
+      for (int i = compact.firstChildren[index]; i != CompactDocument.NONE; i =
+          compact.nextSiblings[i])
+        if (compact.nameIds[i] >= 0)
+          return moveTo(i, depth + 1);
+      return false;
+    }
+
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+      if (child.getNodeType() == Node.ELEMENT_NODE)
+        return moveTo(child, depth + 1);
+    return false;
+  }
+
+  /**
+   * Moves to the next sibling element of the current element. The cursor's root has no siblings.
+   * 
+   * @return whether the cursor moved
+   */
+  public boolean toNextSibling() {
+    if (depth == 0)
+      return false;
+
+    if (compact != null) {
+      for (int i = compact.nextSiblings[index]; i != CompactDocument.NONE; i =
+          compact.nextSiblings[i])
+        if (compact.nameIds[i] >= 0)
+          return moveTo(i, depth);
+      return false;
+    }
+
+    for (Node sibling = node.getNextSibling(); sibling != null; sibling = sibling.getNextSibling())
+      if (sibling.getNodeType() == Node.ELEMENT_NODE)
+        return moveTo(sibling, depth);
+    return false;
+  }
+
+  /**
+   * Moves to the next sibling element of the current element with the {@code name}. The cursor's
+   * root has no siblings.
+   * 
+   * @return whether the cursor moved
+   */
+  public boolean toNextSibling(String name) {
+    if (depth == 0)
+      return false;
+
+    if (compact != null) {
+      int nameId = compact.nameId(name);
+      if (nameId == CompactDocument.NONE)
+        return false;
+      for (int i = compact.nextSiblings[index]; i != CompactDocument.NONE; i =
+          compact.nextSiblings[i])
+        if (compact.nameIds[i] == nameId)
+          return moveTo(i, depth);
+      return false;
+    }
+
+    for (Node sibling = node.getNextSibling(); sibling != null; sibling = sibling.getNextSibling())
+      if (sibling.getNodeType() == Node.ELEMENT_NODE && sibling.getNodeName().equals(name))
+        return moveTo(sibling, depth);
+    return false;
+  }
+
+  /**
+   * Moves to the parent of the current element. The cursor does not move above its root.
+   * 
+   * @return whether the cursor moved
+   */
+  public boolean toParent() {
+    if (depth == 0)
+      return false;
+    if (compact != null)
+      return moveTo(compact.parents[index], depth - 1);
+    return moveTo(node.getParentNode(), depth - 1);
+  }
+
+  /**
+   * Moves to the cursor's root.
+   */
+  public void toRoot() {
+    node = root;
+    index = rootIndex;
+    depth = 0;
+  }
+
+  @Override
+  public String toString() {
+    return "XmlCursor[name=" + name() + ", depth=" + depth + "]";
+  }
+
+  /**
+   * Returns the text value of the current element.
+   */
+  public String value() {
+    if (compact != null) {
+      int first = compact.firstChildren[index];
+      if (first != CompactDocument.NONE && compact.nextSiblings[first] == CompactDocument.NONE
+          && compact.nameIds[first] < 0)
+        return compact.text(first);
+
+      StringBuilder sb = new StringBuilder();
+      for (int i = first; i != CompactDocument.NONE; i = compact.nextSiblings[i])
+        if (compact.nameIds[i] < 0)
+          sb.append(compact.chars, compact.offsets[i], compact.lengths[i]);
+      return sb.toString();
+    }
+
+    Node text = singleTextChild();
+    if (text != null)
+      return text.getNodeValue();
+    StringBuilder sb = new StringBuilder();
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+      if (isText(child))
+        sb.append(child.getNodeValue());
+    return sb.toString();
+  }
+
+  /**
+   * Returns the current element's value as a boolean. Returns true for "true", "1", "yes", "y"
+   * ignoring case, else returns false.
+   */
+  public boolean valueAsBoolean() {
+    return XmlSearchable.Converter.booleanConverter.convert(value());
+  }
+
+  /**
+   * Returns the current element's value as a double.
+   * 
+   * @throws NumberFormatException if the value is not a valid double
+   */
+  public double valueAsDouble() {
+    return Double.parseDouble(value());
+  }
+
+  /**
+   * Returns the current element's value as an int, parsed in place.
+   * 
+   * @throws NumberFormatException if the value is not a valid int
+   */
+  public int valueAsInt() {
+    return (int) valueAsLong(Integer.MIN_VALUE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the current element's value as a long, parsed in place.
+   * 
+   * @throws NumberFormatException if the value is not a valid long
+   */
+  public long valueAsLong() {
+    return valueAsLong(Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  private long attributeAsLong(String attribute, long min, long max) throws XsylumException {
+    if (compact != null) {
+      int a = compactAttribute(attribute);
+      int offset = compact.attributeOffsets[a];
+      return Numbers.parseLong(compact.charSequence, offset, offset + compact.attributeLengths[a],
+          min, max);
+    }
+
+    String value = domAttribute(attribute).getNodeValue();
+    return Numbers.parseLong(value, 0, value.length(), min, max);
+  }
+
+  private long valueAsLong(long min, long max) {
+    if (compact != null) {
+      int first = compact.firstChildren[index];
+      if (first != CompactDocument.NONE && compact.nextSiblings[first] == CompactDocument.NONE
+          && compact.nameIds[first] < 0) {
+        int offset = compact.offsets[first];
+        return Numbers.parseLong(compact.charSequence, offset, offset + compact.lengths[first],
+            min, max);
+      }
+    } else {
+      Node text = singleTextChild();
+      if (text != null) {
+        String value = text.getNodeValue();
+        return Numbers.parseLong(value, 0, value.length(), min, max);
+      }
+    }
+
+    String value = value();
+    return Numbers.parseLong(value, 0, value.length(), min, max);
+  }
+
+  private int compactAttribute(String attribute) throws XsylumException {
+    int a = compact.attributeIndex(index, attribute);
+    if (a == CompactDocument.NONE)
+      throw new XsylumException("Attribute %s does not exist", attribute);
+    return a;
+  }
+
+  private Node domAttribute(String attribute) throws XsylumException {
+    Node result = ((Element) node).getAttributeNode(attribute);
+    if (result == null)
+      throw new XsylumException("Attribute %s does not exist", attribute);
+    return result;
+  }
+
+  private boolean moveTo(Node target, int targetDepth) {
+    node = target;
+    depth = targetDepth;
+    return true;
+  }
+
+  private boolean moveTo(int target, int targetDepth) {
+    index = target;
+    depth = targetDepth;
+    return true;
+  }
+
+  /**
+   * Returns the current element's child if it is a single text or CDATA node, else null.
+   */
+  private Node singleTextChild() {
+    Node child = node.getFirstChild();
+    return child != null && child.getNextSibling() == null && isText(child) ? child : null;
+  }
+
+  private static boolean isText(Node node) {
+    return node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE;
+  }
+}
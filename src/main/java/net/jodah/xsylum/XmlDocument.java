@@ -1,22 +1,51 @@
 package net.jodah.xsylum;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import javax.xml.xpath.XPathExpressionException;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 /**
  * An XML document.
  * 
+ * <p>
+ * Documents that are searched for many tag names can be {@link #index() indexed}, after which
+ * {@link #get(String)} and {@link #getAll(String)} are lookups rather than traversals of the
+ * document.
+ * 
  * @author Jonathan Halterman
  */
 public class XmlDocument extends XmlSearchable<Document> {
+  private volatile TagIndex tagIndex;
+
   public XmlDocument(Document document) {
     super(document);
   }
 
+  /**
+   * Returns a new cursor positioned at the root element, for traversing the document without
+   * allocating an XmlElement per node.
+   */
+  public XmlCursor cursor() {
+    return new XmlCursor(source.getDocumentElement());
+  }
+
   /**
    * Returns the underlying document.
    */
@@ -29,6 +58,12 @@ public class XmlDocument extends XmlSearchable<Document> {
    */
   @Override
   public XmlElement get(String tagName) {
+    TagIndex index = tagIndex;
+    if (index != null && !"*".equals(tagName)) {
+      Element[] elements = index.elements.get(tagName);
+      return elements == null ? null : new XmlElement(elements[0]);
+    }
+
     NodeList nodeList = source.getElementsByTagName(tagName);
     return nodeList.getLength() == 0 ? null : new XmlElement((Element) nodeList.item(0));
   }
@@ -38,6 +73,17 @@ public class XmlDocument extends XmlSearchable<Document> {
    */
   @Override
   public List<XmlElement> getAll(String tagName) {
+    TagIndex index = tagIndex;
+    if (index != null && !"*".equals(tagName)) {
+      Element[] elements = index.elements.get(tagName);
+      if (elements == null)
+        return new ArrayList<XmlElement>(0);
+      List<XmlElement> result = new ArrayList<XmlElement>(elements.length);
+      for (Element element : elements)
+        result.add(new XmlElement(element));
+      return result;
+    }
+
     NodeList nodeList = source.getElementsByTagName(tagName);
     List<XmlElement> result = new ArrayList<XmlElement>(nodeList.getLength());
     for (int i = 0; i < nodeList.getLength(); i++)
@@ -45,6 +91,158 @@ public class XmlDocument extends XmlSearchable<Document> {
     return result;
   }
 
+  /**
+   * Returns a sequential Stream of the elements matching the {@code tagName}, in document order.
+   * Unlike {@link #getAll(String)}, elements are found as the stream is consumed, or from the
+   * document's index if it is {@link #index() indexed}.
+   */
+  @Override
+  public Stream<XmlElement> streamAll(String tagName) {
+    TagIndex index = tagIndex;
+    if (index != null && !"*".equals(tagName)) {
+      Element[] elements = index.elements.get(tagName);
+      return elements == null ? Stream.<XmlElement>empty() : stream(new ElementIterator(Arrays
+          .<Node>asList(elements).iterator(), null));
+    }
+
+    return stream(new ElementIterator(new NodeListIterator(source.getElementsByTagName(tagName)),
+        null));
+  }
+
+  /**
+   * Returns all elements that match the {@code expression}, evaluating it in parallel for large
+   * frozen documents. See {@link #findAllParallel(XmlExpression)}.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   */
+  public List<XmlElement> findAllParallel(String expression) throws XPathExpressionException {
+    return findAllParallel(XPathCache.get(expression));
+  }
+
+  /**
+   * Returns all elements that match the {@code expression}, in document order, as
+   * {@link #findAll(XmlExpression)} does. If the document is {@link #isFrozen() frozen} and large,
+   * and the {@code expression} is a descendant search such as {@code //transaction[amount > 1000]}
+   * or {@code //order//item/@sku}, the document is split into subtrees that are searched in
+   * parallel in the {@link ForkJoinPool#commonPool() common pool}. Descendant searches may have
+   * further child, descendant and attribute steps, and predicates that look only at the nodes
+   * below the nodes they apply to, and the predicates of the first step may not select by
+   * position. Elements that the first step may match are searched whole when later steps or
+   * predicates look below their children, such as {@code //root//item}, which limits the
+   * parallelism for such searches. Other expressions and documents are searched sequentially.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   */
+  public List<XmlElement> findAllParallel(XmlExpression expression)
+      throws XPathExpressionException {
+    List<Node> nodes = selectParallel(expression);
+    if (nodes == null)
+      return findAll(expression);
+
+    List<XmlElement> elements = new ArrayList<XmlElement>(nodes.size());
+    for (Node node : nodes)
+      if (node.getNodeType() == Node.ELEMENT_NODE)
+        elements.add(new XmlElement((Element) node));
+    return elements;
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression}, evaluating it in parallel for large frozen
+   * documents. See {@link #findAllParallel(XmlExpression)}.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   */
+  public List<String> valuesParallel(String expression) throws XPathExpressionException {
+    return valuesParallel(XPathCache.get(expression));
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression}, in document order, as
+   * {@link #values(XmlExpression)} does, evaluating it in parallel for large frozen documents. See
+   * {@link #findAllParallel(XmlExpression)}.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   */
+  public List<String> valuesParallel(XmlExpression expression) throws XPathExpressionException {
+    List<Node> nodes = selectParallel(expression);
+    return nodes == null ? values(expression) : valuesOf(nodes);
+  }
+
+  /**
+   * Returns a frozen copy of the document, else this document if it is already
+   * {@link #isFrozen() frozen}. A frozen document is a fully built, immutable compact document, so
+   * unlike a DOM document, which may expand nodes and cache node lists lazily as it is read, it is
+   * safe for any number of threads to read concurrently without locking, including through
+   * {@code get}, {@code find}, {@code value} and their variants. A single frozen copy of a
+   * reference document can therefore be shared by all threads. If this document is
+   * {@link #index() indexed} the frozen copy is indexed too.
+   * 
+   * <p>
+   * This document must not be read or modified by other threads while it is being frozen. As with
+   * {@link Xsylum#compactDocumentFor(java.io.InputStream) compact documents}, the frozen copy does
+   * not retain comments and processing instructions. Compact documents do not record namespaces,
+   * so namespace aware documents, whose XPath results depend on them, cannot be frozen.
+   * 
+   * @throws IllegalStateException if the document is namespace aware
+   */
+  public XmlDocument freeze() {
+    if (isFrozen())
+      return this;
+    Element root = source.getDocumentElement();
+    if (root != null && root.getLocalName() != null)
+      throw new IllegalStateException("Namespace aware documents cannot be frozen");
+
+    XmlDocument frozen = new XmlDocument(CompactDocumentBuilder.build(source));
+    if (tagIndex != null)
+      frozen.index();
+    return frozen;
+  }
+
+  /**
+   * Returns whether the document is frozen, and so is immutable and safe for concurrent reads. See
+   * {@link #freeze()}.
+   */
+  public boolean isFrozen() {
+    return source instanceof CompactDocument;
+  }
+
+  /**
+   * Indexes the document's elements by tag name in a single traversal, so that subsequent calls to
+   * {@link #get(String)} and {@link #getAll(String)} for a tag name are lookups. The index reflects
+   * the document at the time it was built, so it should be rebuilt, or
+   * {@link #removeIndex() removed}, after the document is modified.
+   * 
+   * @return this document
+   */
+  public XmlDocument index() {
+    tagIndex = new TagIndex(source);
+    return this;
+  }
+
+  /**
+   * Returns the estimated number of bytes retained by the document's tag index, else 0 if the
+   * document is not indexed. The estimate assumes compressed object references and excludes the
+   * indexed elements and tag names, which are owned by the document.
+   */
+  public long indexSizeInBytes() {
+    TagIndex index = tagIndex;
+    return index == null ? 0 : index.sizeInBytes;
+  }
+
+  /**
+   * Returns whether the document has been {@link #index() indexed}.
+   */
+  public boolean isIndexed() {
+    return tagIndex != null;
+  }
+
+  /**
+   * Removes the document's tag index, if any.
+   */
+  public void removeIndex() {
+    tagIndex = null;
+  }
+
   /**
    * Returns the root document element.
    */
@@ -52,8 +250,104 @@ public class XmlDocument extends XmlSearchable<Document> {
     return new XmlElement(source.getDocumentElement());
   }
 
+  /**
+   * Returns the nodes that match the {@code expression} evaluated in parallel, else null if the
+   * expression should be evaluated sequentially.
+   */
+  private List<Node> selectParallel(XmlExpression expression) throws XPathExpressionException {
+    if (!isFrozen())
+      return null;
+
+    XsylumListener listener = Xsylum.listener;
+    long start = listener == null ? 0 : System.nanoTime();
+    List<Node> nodes = ParallelPath.select((CompactDocument) source, expression,
+        ForkJoinPool.commonPool(), ParallelPath.MIN_NODES, ParallelPath.MIN_TASK_NODES);
+    if (nodes != null && listener != null)
+      listener.expressionEvaluated(expression.expression(), System.nanoTime() - start);
+    return nodes;
+  }
+
   @Override
   public String toString() {
     return root().toString();
   }
+
+  /**
+   * Writes a XML representation of the document's root element to the {@code out} in a single
+   * pass. See {@link XmlElement#writeTo(Appendable)}.
+   * 
+   * @throws IOException if writing to {@code out} fails
+   */
+  public void writeTo(Appendable out) throws IOException {
+    root().writeTo(out);
+  }
+
+  /**
+   * Writes the document to the {@code out} encoded in the {@code charset}, starting with an XML
+   * declaration naming the {@code charset}. Characters that cannot be encoded in the
+   * {@code charset} are written as character references. The {@code out} is flushed but not
+   * closed.
+   * 
+   * @throws IOException if writing to {@code out} fails
+   */
+  public void writeTo(OutputStream out, Charset charset) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+    writer.append("<?xml version=\"1.0\" encoding=\"").append(charset.name()).append("\"?>");
+    new XmlWriter(writer, charset).writeElement(source.getDocumentElement());
+    writer.flush();
+  }
+
+  /**
+   * An immutable index of a document's elements by tag name, in document order.
+   */
+  private static final class TagIndex {
+    /** Object header and fields of a HashMap, and its table header */
+    private static final int MAP_OVERHEAD = 48 + 16;
+    /** A HashMap entry and its table slot */
+    private static final int ENTRY_SIZE = 32 + 4;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE_SIZE = 4;
+
+    final Map<String, Element[]> elements;
+    final long sizeInBytes;
+
+    TagIndex(Document document) {
+      Map<String, List<Element>> lists = new HashMap<String, List<Element>>();
+      Node node = document.getFirstChild();
+      while (node != null) {
+        if (node.getNodeType() == Node.ELEMENT_NODE) {
+          List<Element> list = lists.get(node.getNodeName());
+          if (list == null) {
+            list = new ArrayList<Element>();
+            lists.put(node.getNodeName(), list);
+          }
+          list.add((Element) node);
+
+          Node child = node.getFirstChild();
+          if (child != null) {
+            node = child;
+            continue;
+          }
+        }
+
+        while (node != null && node.getNextSibling() == null)
+          node = node.getParentNode();
+        if (node != null)
+          node = node.getNextSibling();
+      }
+
+      elements = new HashMap<String, Element[]>((int) (lists.size() / 0.75f) + 1);
+      long size = MAP_OVERHEAD;
+      for (Map.Entry<String, List<Element>> entry : lists.entrySet()) {
+        List<Element> list = entry.getValue();
+        elements.put(entry.getKey(), list.toArray(new Element[list.size()]));
+        size += ENTRY_SIZE + align(ARRAY_HEADER + (long) REFERENCE_SIZE * list.size());
+      }
+      sizeInBytes = size;
+    }
+
+    private static long align(long size) {
+      return (size + 7) & ~7L;
+    }
+  }
 }
@@ -1,10 +1,18 @@
 package net.jodah.xsylum;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.w3c.dom.CharacterData;
 import org.w3c.dom.Element;
@@ -15,9 +23,20 @@ import org.w3c.dom.NodeList;
 /**
  * A named XML element.
  * 
+ * <p>
+ * Lookups of children by name on elements with many children build an index of the children by
+ * name, which is retained by the XmlElement so that repeated lookups are constant time. The index
+ * reflects the children at the time it was built, so changes made through {@link #element()}
+ * afterwards should be followed by a new XmlElement for the element.
+ * 
  * @author Jonathan Halterman
  */
 public final class XmlElement extends XmlSearchable<Element> {
+  /** The number of children scanned by a lookup after which the children are indexed */
+  static final int INDEX_THRESHOLD = 16;
+
+  private volatile ChildIndex childIndex;
+
   public XmlElement(Element element) {
     super(element);
   }
@@ -113,8 +132,8 @@ public final class XmlElement extends XmlSearchable<Element> {
       return Collections.emptyList();
 
     List<XmlElement> result = new ArrayList<XmlElement>(children.getLength());
-    for (int i = 0; i < source.getChildNodes().getLength(); i++) {
-      Node child = source.getChildNodes().item(i);
+    for (int i = 0; i < children.getLength(); i++) {
+      Node child = children.item(i);
       if (child.getNodeType() == Node.ELEMENT_NODE)
         result.add(new XmlElement((Element) child));
     }
@@ -122,6 +141,35 @@ public final class XmlElement extends XmlSearchable<Element> {
     return result;
   }
 
+  /**
+   * Returns a sequential Stream of the element's children. Unlike {@link #children()}, children are
+   * reached by walking the element's siblings as the stream is consumed, without building a list.
+   */
+  public Stream<XmlElement> streamChildren() {
+    return stream(new ElementIterator(new SiblingIterator(source.getFirstChild()), null));
+  }
+
+  /**
+   * Returns a sequential Stream of the child elements matching the {@code tagName}. Unlike
+   * {@link #getAll(String)}, children are reached by walking the element's siblings as the stream
+   * is consumed, or from the element's index of its children by name if one has been built.
+   */
+  @Override
+  public Stream<XmlElement> streamAll(String tagName) {
+    ChildIndex index = childIndex;
+    Iterator<Node> nodes = index == null ? new SiblingIterator(source.getFirstChild())
+        : Collections.<Node>unmodifiableList(index.all(tagName)).iterator();
+    return stream(new ElementIterator(nodes, tagName));
+  }
+
+  /**
+   * Returns a new cursor positioned at the element, for traversing the element's subtree without
+   * allocating an XmlElement per node.
+   */
+  public XmlCursor cursor() {
+    return new XmlCursor(source);
+  }
+
   /**
    * Returns the underlying element.
    */
@@ -143,13 +191,24 @@ public final class XmlElement extends XmlSearchable<Element> {
    */
   @Override
   public XmlElement get(String tagName) {
-    for (int i = 0; i < source.getChildNodes().getLength(); i++) {
-      Node child = source.getChildNodes().item(i);
-      if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(tagName))
-        return new XmlElement((Element) child);
+    ChildIndex index = childIndex;
+    if (index == null) {
+      int scanned = 0;
+      for (Node child = source.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(tagName))
+          return new XmlElement((Element) child);
+        if (++scanned == INDEX_THRESHOLD) {
+          index = childIndex();
+          break;
+        }
+      }
+
+      if (index == null)
+        return null;
     }
 
-    return null;
+    Element child = index.first(tagName);
+    return child == null ? null : new XmlElement(child);
   }
 
   /**
@@ -157,13 +216,27 @@ public final class XmlElement extends XmlSearchable<Element> {
    */
   @Override
   public List<XmlElement> getAll(String tagName) {
-    List<XmlElement> result = new ArrayList<XmlElement>();
-    for (int i = 0; i < source.getChildNodes().getLength(); i++) {
-      Node child = source.getChildNodes().item(i);
-      if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(tagName))
-        result.add(new XmlElement((Element) child));
+    ChildIndex index = childIndex;
+    if (index == null) {
+      List<XmlElement> result = new ArrayList<XmlElement>();
+      int scanned = 0;
+      for (Node child = source.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(tagName))
+          result.add(new XmlElement((Element) child));
+        if (++scanned == INDEX_THRESHOLD) {
+          index = childIndex();
+          break;
+        }
+      }
+
+      if (index == null)
+        return result;
     }
 
+    List<Element> children = index.all(tagName);
+    List<XmlElement> result = new ArrayList<XmlElement>(children.size());
+    for (Element child : children)
+      result.add(new XmlElement(child));
     return result;
   }
 
@@ -185,13 +258,23 @@ public final class XmlElement extends XmlSearchable<Element> {
    * Returns whether the element contains any child elements with the {@code name}.
    */
   public boolean hasChild(String name) {
-    for (int i = 0; i < source.getChildNodes().getLength(); i++) {
-      Node child = source.getChildNodes().item(i);
-      if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(name))
-        return true;
+    ChildIndex index = childIndex;
+    if (index == null) {
+      int scanned = 0;
+      for (Node child = source.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() == Node.ELEMENT_NODE && child.getNodeName().equals(name))
+          return true;
+        if (++scanned == INDEX_THRESHOLD) {
+          index = childIndex();
+          break;
+        }
+      }
+
+      if (index == null)
+        return false;
     }
 
-    return false;
+    return index.first(name) != null;
   }
 
   /**
@@ -210,36 +293,12 @@ public final class XmlElement extends XmlSearchable<Element> {
    * Returns a XML representation of the element, including its attributes and value.
    */
   public String toXml() {
-    String name = name();
-    NodeList children = source.getChildNodes();
-    NamedNodeMap attributes = source.getAttributes();
-    StringBuilder sb = new StringBuilder("<").append(name);
-
-    if (attributes.getLength() > 0) {
-      sb.append(' ');
-      for (int i = 0; i < attributes.getLength(); i++) {
-        Node n = attributes.item(i);
-        if (i > 0)
-          sb.append(' ');
-        sb.append(n.getNodeName()).append("=").append("\"").append(n.getNodeValue()).append("\"");
-      }
-    }
-    if (children.getLength() == 0)
-      sb.append("/>");
-    else {
-      sb.append('>');
-      for (int i = 0; i < children.getLength(); i++) {
-        Node child = children.item(i);
-        if (child.getNodeType() == Node.ELEMENT_NODE)
-          sb.append(new XmlElement((Element) child));
-        else if (child.getNodeType() == Node.TEXT_NODE)
-          sb.append(child.getNodeValue());
-        else if (child.getNodeType() == Node.CDATA_SECTION_NODE)
-          sb.append("<![CDATA[").append(((CharacterData) child).getData()).append("]]>");
-      }
-      sb.append("</").append(name).append('>');
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeTo(sb);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
     }
-
     return sb.toString();
   }
 
@@ -259,6 +318,30 @@ public final class XmlElement extends XmlSearchable<Element> {
     return sb.toString();
   }
 
+  /**
+   * Writes a XML representation of the element, including its attributes and value, to the
+   * {@code out} in a single pass, escaping text and attribute values.
+   * 
+   * @throws IOException if writing to {@code out} fails
+   */
+  public void writeTo(Appendable out) throws IOException {
+    new XmlWriter(out, null).writeElement(source);
+  }
+
+  /**
+   * Writes a XML representation of the element, including its attributes and value, to the
+   * {@code out} encoded in the {@code charset}. Characters that cannot be encoded in the
+   * {@code charset} are written as character references. The {@code out} is flushed but not
+   * closed.
+   * 
+   * @throws IOException if writing to {@code out} fails
+   */
+  public void writeTo(OutputStream out, Charset charset) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset));
+    new XmlWriter(writer, charset).writeElement(source);
+    writer.flush();
+  }
+
   /**
    * Get the element value as a boolean. Returns true for "true", "1", "yes", "y" ignoring case,
    * else returns false.
@@ -273,7 +356,8 @@ public final class XmlElement extends XmlSearchable<Element> {
    * @throws NumberFormatException if the value is not a valid double
    */
   public double valueAsDouble() {
-    return Converter.doubleConverter.convert(value());
+    Node text = singleTextChild();
+    return text == null ? Converter.doubleConverter.convert(value()) : Numbers.parseDouble(text);
   }
 
   /**
@@ -292,7 +376,8 @@ public final class XmlElement extends XmlSearchable<Element> {
    * @throws NumberFormatException if the value is not a valid int
    */
   public int valueAsInt() {
-    return Converter.intConverter.convert(value());
+    Node text = singleTextChild();
+    return text == null ? Converter.intConverter.convert(value()) : Numbers.parseInt(text);
   }
 
   /**
@@ -301,6 +386,73 @@ public final class XmlElement extends XmlSearchable<Element> {
    * @throws NumberFormatException if the value is not a valid long
    */
   public long valueAsLong() {
-    return Converter.longConverter.convert(value());
+    Node text = singleTextChild();
+    return text == null ? Converter.longConverter.convert(value()) : Numbers.parseLong(text);
+  }
+
+  /**
+   * Returns the element's child if it is a single text or CDATA node, else null.
+   */
+  private Node singleTextChild() {
+    Node child = source.getFirstChild();
+    return child != null && child.getNextSibling() == null
+        && (child.getNodeType() == Node.TEXT_NODE
+            || child.getNodeType() == Node.CDATA_SECTION_NODE) ? child : null;
+  }
+
+  /**
+   * Returns the index of the element's children, building it if necessary.
+   */
+  private ChildIndex childIndex() {
+    ChildIndex result = childIndex;
+    if (result == null)
+      childIndex = result = new ChildIndex(source);
+    return result;
+  }
+
+  /**
+   * An immutable index of an element's child elements by name. Each name maps to either the single
+   * child with that name, or a list of the children with that name in document order.
+   */
+  private static final class ChildIndex {
+    private final Map<String, Object> children = new HashMap<String, Object>();
+
+    ChildIndex(Element element) {
+      for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() != Node.ELEMENT_NODE)
+          continue;
+
+        String name = child.getNodeName();
+        Object existing = children.put(name, child);
+        if (existing instanceof Element) {
+          List<Element> list = new ArrayList<Element>(4);
+          list.add((Element) existing);
+          list.add((Element) child);
+          children.put(name, list);
+        } else if (existing != null) {
+          @SuppressWarnings("unchecked")
+          List<Element> list = (List<Element>) existing;
+          list.add((Element) child);
+          children.put(name, list);
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    List<Element> all(String name) {
+      Object value = children.get(name);
+      if (value == null)
+        return Collections.emptyList();
+      if (value instanceof Element)
+        return Collections.singletonList((Element) value);
+      return (List<Element>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    Element first(String name) {
+      Object value = children.get(name);
+      return value == null || value instanceof Element ? (Element) value
+          : ((List<Element>) value).get(0);
+    }
   }
 }
@@ -0,0 +1,72 @@
+package net.jodah.xsylum;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * A compiled XPath expression that can be retained and reused. Since compiled XPath expressions are
+ * not thread-safe, each thread that evaluates an XmlExpression compiles and keeps its own copy on
+ * first use.
+ * 
+ * @author Jonathan Halterman
+ */
+public final class XmlExpression {
+  private static final ThreadLocal<XPath> XPATH = new ThreadLocal<XPath>() {
+    @Override
+    protected XPath initialValue() {
+      return XPathFactory.newInstance().newXPath();
+    }
+  };
+
+  private final String expression;
+  /** The expression as a simple path, else null if the expression is not a simple path */
+  final SimplePath path;
+  private final ThreadLocal<XPathExpression> compiled = new ThreadLocal<XPathExpression>();
+
+  /**
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   */
+  XmlExpression(String expression) throws XPathExpressionException {
+    this.expression = expression;
+    compiled.set(compile(expression));
+    path = SimplePath.parse(expression);
+  }
+
+  /**
+   * Returns the expression string.
+   */
+  public String expression() {
+    return expression;
+  }
+
+  @Override
+  public String toString() {
+    return expression;
+  }
+
+  /**
+   * Returns the compiled expression for the current thread, compiling it if necessary.
+   */
+  XPathExpression compiled() throws XPathExpressionException {
+    XPathExpression result = compiled.get();
+    if (result == null) {
+      result = compile(expression);
+      compiled.set(result);
+    }
+
+    return result;
+  }
+
+  private static XPathExpression compile(String expression) throws XPathExpressionException {
+    XsylumListener listener = Xsylum.listener;
+    if (listener == null)
+      return XPATH.get().compile(expression);
+
+    long start = System.nanoTime();
+    XPathExpression result = XPATH.get().compile(expression);
+    listener.expressionCompiled(expression, System.nanoTime() - start);
+    return result;
+  }
+}
@@ -0,0 +1,142 @@
+package net.jodah.xsylum;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Accepts an XML document in chunks as they arrive, such as from a non-blocking network channel,
+ * and parses it once it is complete. Writing a chunk copies it and returns immediately, so no
+ * thread is held while waiting for more input. Parsing happens on the feed's executor once
+ * {@link #complete()} is called, and the {@link #result()} completes with the parsed document.
+ * 
+ * <pre>
+ * XmlFeed feed = Xsylum.feed();
+ * // As each chunk arrives
+ * feed.write(buffer);
+ * // At the end of the body
+ * feed.complete().thenAccept(document -&gt; ...);
+ * </pre>
+ * 
+ * <p>
+ * Chunks must be written by one thread at a time, in order, as network callbacks typically are.
+ * 
+ * @author Jonathan Halterman
+ */
+public final class XmlFeed {
+  private final Executor executor;
+  private final CompletableFuture<XmlDocument> result = new CompletableFuture<XmlDocument>();
+  private byte[] bytes = new byte[8192];
+  private int size;
+  private volatile boolean closed;
+
+  XmlFeed(Executor executor) {
+    if (executor == null)
+      throw new NullPointerException("executor");
+    this.executor = executor;
+  }
+
+  /**
+   * Ends the input and parses the document on the feed's executor, returning the
+   * {@link #result()}.
+   * 
+   * @throws IllegalStateException if the feed was already completed or failed
+   */
+  public CompletableFuture<XmlDocument> complete() {
+    close();
+    final byte[] input = bytes;
+    final int length = size;
+    bytes = null;
+
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            result.complete(Xsylum.documentFor(new ByteArrayInputStream(input, 0, length)));
+          } catch (XsylumException e) {
+            result.completeExceptionally(e);
+          } catch (Throwable t) {
+            result.completeExceptionally(new XsylumException(t, "Failed to create document"));
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      result.completeExceptionally(new XsylumException(e, "Failed to schedule parsing"));
+    }
+
+    return result;
+  }
+
+  /**
+   * Ends the input without parsing, completing the {@link #result()} exceptionally with the
+   * {@code cause}, such as when the connection that the document was being read from fails.
+   * 
+   * @throws IllegalStateException if the feed was already completed or failed
+   */
+  public void fail(Throwable cause) {
+    close();
+    bytes = null;
+    result.completeExceptionally(cause);
+  }
+
+  /**
+   * Returns a future that completes with the parsed document once the feed is completed, or
+   * exceptionally with an {@link XsylumException} if the document cannot be parsed.
+   */
+  public CompletableFuture<XmlDocument> result() {
+    return result;
+  }
+
+  /**
+   * Returns the number of bytes written so far.
+   */
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "XmlFeed[size=" + size + ", closed=" + closed + "]";
+  }
+
+  /**
+   * Appends the remaining bytes of the {@code chunk}, advancing its position to its limit. The
+   * {@code chunk} may be reused once this method returns.
+   * 
+   * @throws IllegalStateException if the feed was completed or failed
+   */
+  public XmlFeed write(ByteBuffer chunk) {
+    if (closed)
+      throw new IllegalStateException("Feed is closed");
+
+    int length = chunk.remaining();
+    if (size + length > bytes.length) {
+      if (size + length < 0)
+        throw new IllegalStateException("Feed exceeds the maximum document size");
+      bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+    }
+
+    chunk.get(bytes, size, length);
+    size += length;
+    return this;
+  }
+
+  /**
+   * Appends the {@code chunk}. See {@link #write(ByteBuffer)}.
+   * 
+   * @throws IllegalStateException if the feed was completed or failed
+   */
+  public XmlFeed write(byte[] chunk) {
+    return write(ByteBuffer.wrap(chunk));
+  }
+
+  private void close() {
+    if (closed)
+      throw new IllegalStateException("Feed is closed");
+    closed = true;
+  }
+}
@@ -0,0 +1,98 @@
+package net.jodah.xsylum;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.xpath.XPathExpressionException;
+
+import org.w3c.dom.Node;
+
+/**
+ * A set of named XPath expressions that are evaluated together against an {@link XmlSearchable}.
+ * Expressions that are simple location paths, using only child, descendant and attribute steps
+ * with optional positions, are all answered by a single walk over the tree. Other expressions are
+ * evaluated individually.
+ * 
+ * <p>
+ * Each expression's result is the same as {@link XmlSearchable#values(XmlExpression)} would return
+ * for it.
+ * 
+ * @author Jonathan Halterman
+ */
+public final class XmlQuery {
+  private final XmlSearchable<?> searchable;
+  private final Map<String, XmlExpression> expressions = new LinkedHashMap<String, XmlExpression>();
+
+  XmlQuery(XmlSearchable<?> searchable) {
+    this.searchable = searchable;
+  }
+
+  /**
+   * Adds the {@code expression} to the query, with its values to be returned under the
+   * {@code name}.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   * @throws IllegalArgumentException if an expression has already been added for the {@code name}
+   */
+  public XmlQuery add(String name, String expression) throws XPathExpressionException {
+    return add(name, XPathCache.get(expression));
+  }
+
+  /**
+   * Adds the {@code expression} to the query, with its values to be returned under the
+   * {@code name}.
+   * 
+   * @throws IllegalArgumentException if an expression has already been added for the {@code name}
+   */
+  public XmlQuery add(String name, XmlExpression expression) {
+    if (expressions.containsKey(name))
+      throw new IllegalArgumentException("An expression has already been added for " + name);
+    expressions.put(name, expression);
+    return this;
+  }
+
+  /**
+   * Evaluates the query, returning the values for each expression by name, in the order that the
+   * expressions were added.
+   * 
+   * @throws XPathExpressionException if an expression cannot be evaluated
+   */
+  public Map<String, List<String>> evaluate() throws XPathExpressionException {
+    List<String> simpleNames = new ArrayList<String>();
+    List<SimplePath> simplePaths = new ArrayList<SimplePath>();
+    boolean canWalk = SimplePath.canWalk((Node) searchable.source);
+    for (Map.Entry<String, XmlExpression> entry : expressions.entrySet())
+      if (canWalk && entry.getValue().path != null) {
+        simpleNames.add(entry.getKey());
+        simplePaths.add(entry.getValue().path);
+      }
+
+    List<List<Node>> selected = SimplePath.select(
+        simplePaths.toArray(new SimplePath[simplePaths.size()]), (Node) searchable.source);
+    Map<String, List<String>> simpleValues = new LinkedHashMap<String, List<String>>();
+    for (int i = 0; i < selected.size(); i++)
+      simpleValues.put(simpleNames.get(i), XmlSearchable.valuesOf(selected.get(i)));
+
+    Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+    for (Map.Entry<String, XmlExpression> entry : expressions.entrySet()) {
+      List<String> values = simpleValues.get(entry.getKey());
+      result.put(entry.getKey(), values != null ? values : searchable.values(entry.getValue()));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the number of expressions in the query.
+   */
+  public int size() {
+    return expressions.size();
+  }
+
+  @Override
+  public String toString() {
+    return "XmlQuery" + expressions;
+  }
+}
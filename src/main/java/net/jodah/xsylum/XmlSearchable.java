@@ -1,13 +1,25 @@
 package net.jodah.xsylum;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.CharacterData;
 import org.w3c.dom.Element;
@@ -17,6 +29,11 @@ import org.w3c.dom.NodeList;
 /**
  * An XPath searchable XML object.
  * 
+ * <p>
+ * Expressions that are simple location paths, such as {@code /a/b/c}, {@code //tag},
+ * {@code a/b[2]}, {@code @attr} or {@code text()}, are evaluated by walking the tree directly, with
+ * the same results as the XPath engine. Other expressions are evaluated by the XPath engine.
+ * 
  * @author Jonathan Halterman
  * @param <T> source type
  */
@@ -74,14 +91,38 @@ public abstract class XmlSearchable<T> {
     };
   }
 
+  /**
+   * Returns a compiled XmlExpression for the {@code expression} that can be retained and reused
+   * across threads.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   */
+  public static XmlExpression compile(String expression) throws XPathExpressionException {
+    return XPathCache.get(expression);
+  }
+
   /**
    * Returns the first element matching the {@code expression}, else null if none can be found.
    * 
    * @throws XPathExpressionException if the {@code expression} is invalid
    */
   public XmlElement find(String expression) throws XPathExpressionException {
-    XPathExpression expr = XPathFactory.newInstance().newXPath().compile(expression);
-    Node node = (Node) expr.evaluate(source, XPathConstants.NODE);
+    return find(XPathCache.get(expression));
+  }
+
+  /**
+   * Returns the first element matching the {@code expression}, else null if none can be found.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   */
+  public XmlElement find(XmlExpression expression) throws XPathExpressionException {
+    XsylumListener listener = Xsylum.listener;
+    long start = listener == null ? 0 : System.nanoTime();
+    SimplePath path = pathFor(expression);
+    Node node = path != null ? path.first((Node) source)
+        : (Node) expression.compiled().evaluate(source, XPathConstants.NODE);
+    if (listener != null)
+      listener.expressionEvaluated(expression.expression(), System.nanoTime() - start);
     return node != null && node.getNodeType() == Node.ELEMENT_NODE ? new XmlElement((Element) node)
         : null;
   }
@@ -92,8 +133,16 @@ public abstract class XmlSearchable<T> {
    * @throws XPathExpressionException if the {@code expression} is invalid
    */
   public List<XmlElement> findAll(String expression) throws XPathExpressionException {
-    XPathExpression expr = XPathFactory.newInstance().newXPath().compile(expression);
-    NodeList nodeList = (NodeList) expr.evaluate(source, XPathConstants.NODESET);
+    return findAll(XPathCache.get(expression));
+  }
+
+  /**
+   * Returns all elements that match the {@code expression}, else empty list if none can be found.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   */
+  public List<XmlElement> findAll(XmlExpression expression) throws XPathExpressionException {
+    NodeList nodeList = nodeSet(expression);
     if (nodeList.getLength() == 0)
       return Collections.emptyList();
 
@@ -117,13 +166,79 @@ public abstract class XmlSearchable<T> {
    */
   public abstract List<XmlElement> getAll(String tagName);
 
+  /**
+   * Returns a sequential Stream of the child elements that match the {@code tagName}. Elements are
+   * found as the stream is consumed, so short-circuiting operations such as
+   * {@link Stream#findFirst()} stop looking once they complete.
+   */
+  public abstract Stream<XmlElement> streamAll(String tagName);
+
+  /**
+   * Returns a sequential Stream of the elements that match the {@code expression}. See
+   * {@link #streamFind(XmlExpression)}.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   */
+  public Stream<XmlElement> streamFind(String expression) throws XPathExpressionException {
+    return streamFind(XPathCache.get(expression));
+  }
+
+  /**
+   * Returns a sequential Stream of the elements that match the {@code expression}, in document
+   * order. Simple paths are evaluated as the stream is consumed, walking only as much of the tree
+   * as is needed to produce the elements that are consumed, so short-circuiting operations such as
+   * {@link Stream#findFirst()} or {@link Stream#anyMatch(java.util.function.Predicate)} stop the
+   * walk once they complete. Other expressions are evaluated by the XPath engine up front. Lazily
+   * evaluated expressions are not reported to the {@link XsylumListener}.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   */
+  public Stream<XmlElement> streamFind(XmlExpression expression) throws XPathExpressionException {
+    Iterator<Node> nodes;
+    SimplePath path = pathFor(expression);
+    if (path != null)
+      nodes = path.iterator((Node) source);
+    else
+      nodes = new NodeListIterator(nodeSet(expression));
+
+    return stream(new ElementIterator(nodes, null));
+  }
+
+  /**
+   * Returns a new {@link XmlQuery} for evaluating many expressions against this object together.
+   */
+  public XmlQuery query() {
+    return new XmlQuery(this);
+  }
+
   /**
    * Finds the value for the XPath {@code expression}.
    * 
    * @throws XPathExpressionException if the {@code expression} is invalid
    */
   public String value(String expression) throws XPathExpressionException {
-    return XPathFactory.newInstance().newXPath().compile(expression).evaluate(source);
+    return value(XPathCache.get(expression));
+  }
+
+  /**
+   * Finds the value for the XPath {@code expression}.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   */
+  public String value(XmlExpression expression) throws XPathExpressionException {
+    XsylumListener listener = Xsylum.listener;
+    long start = listener == null ? 0 : System.nanoTime();
+    String value;
+    SimplePath path = pathFor(expression);
+    if (path != null) {
+      Node node = path.first((Node) source);
+      value = node == null ? "" : SimplePath.stringValue(node);
+    } else
+      value = expression.compiled().evaluate(source);
+
+    if (listener != null)
+      listener.expressionEvaluated(expression.expression(), System.nanoTime() - start);
+    return value;
   }
 
   /**
@@ -184,6 +299,15 @@ public abstract class XmlSearchable<T> {
    * @throws XPathExpressionException if the {@code expression} is invalid
    */
   public List<String> values(String expression) throws XPathExpressionException {
+    return valuesInternal(XPathCache.get(expression), null);
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression}.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   */
+  public List<String> values(XmlExpression expression) throws XPathExpressionException {
     return valuesInternal(expression, null);
   }
 
@@ -194,7 +318,7 @@ public abstract class XmlSearchable<T> {
    * @throws XPathExpressionException if the {@code expression} is invalid
    */
   public List<Boolean> valuesAsBoolean(String expression) throws XPathExpressionException {
-    return valuesInternal(expression, Converter.booleanConverter);
+    return valuesInternal(XPathCache.get(expression), Converter.booleanConverter);
   }
 
   /**
@@ -204,7 +328,65 @@ public abstract class XmlSearchable<T> {
    * @throws NumberFormatException if the values for the expression are not valid doubles
    */
   public List<Double> valuesAsDouble(String expression) throws XPathExpressionException {
-    return valuesInternal(expression, Converter.doubleConverter);
+    return valuesInternal(XPathCache.get(expression), Converter.doubleConverter);
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a double array.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   * @throws NumberFormatException if the values for the expression are not valid doubles
+   */
+  public double[] valuesAsDoubleArray(String expression) throws XPathExpressionException {
+    return valuesAsDoubleArray(XPathCache.get(expression));
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a double array.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   * @throws NumberFormatException if the values for the expression are not valid doubles
+   */
+  public double[] valuesAsDoubleArray(XmlExpression expression) throws XPathExpressionException {
+    NodeList nodeList = nodeSet(expression);
+    double[] values = new double[nodeList.getLength()];
+    int count = 0;
+    for (int i = 0; i < values.length; i++) {
+      Node node = nodeList.item(i);
+      if (Numbers.hasValue(node))
+        values[count++] = Numbers.parseDouble(node);
+    }
+
+    return count == values.length ? values : Arrays.copyOf(values, count);
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a sequential DoubleStream. Values are
+   * parsed as the stream is consumed.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   * @throws NumberFormatException if the values for the expression are not valid doubles
+   */
+  public DoubleStream valuesAsDoubleStream(String expression) throws XPathExpressionException {
+    return valuesAsDoubleStream(XPathCache.get(expression));
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a sequential DoubleStream. Values are
+   * parsed as the stream is consumed.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   * @throws NumberFormatException if the values for the expression are not valid doubles
+   */
+  public DoubleStream valuesAsDoubleStream(XmlExpression expression)
+      throws XPathExpressionException {
+    final NodeList nodeList = nodeSet(expression);
+    return valueIndexes(nodeList).mapToDouble(new IntToDoubleFunction() {
+      @Override
+      public double applyAsDouble(int index) {
+        return Numbers.parseDouble(nodeList.item(index));
+      }
+    });
   }
 
   /**
@@ -216,7 +398,7 @@ public abstract class XmlSearchable<T> {
    */
   public <V extends Enum<V>> List<V> valuesAsEnum(String expression, Class<V> targetEnum)
       throws XPathExpressionException {
-    return valuesInternal(expression, enumConverterFor(targetEnum));
+    return valuesInternal(XPathCache.get(expression), enumConverterFor(targetEnum));
   }
 
   /**
@@ -226,7 +408,66 @@ public abstract class XmlSearchable<T> {
    * @throws NumberFormatException if the values for the expression are not valid ints
    */
   public List<Integer> valuesAsInt(String expression) throws XPathExpressionException {
-    return valuesInternal(expression, Converter.intConverter);
+    return valuesInternal(XPathCache.get(expression), Converter.intConverter);
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as an int array, parsing each value directly
+   * from its node's character data.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   * @throws NumberFormatException if the values for the expression are not valid ints
+   */
+  public int[] valuesAsIntArray(String expression) throws XPathExpressionException {
+    return valuesAsIntArray(XPathCache.get(expression));
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as an int array, parsing each value directly
+   * from its node's character data.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   * @throws NumberFormatException if the values for the expression are not valid ints
+   */
+  public int[] valuesAsIntArray(XmlExpression expression) throws XPathExpressionException {
+    NodeList nodeList = nodeSet(expression);
+    int[] values = new int[nodeList.getLength()];
+    int count = 0;
+    for (int i = 0; i < values.length; i++) {
+      Node node = nodeList.item(i);
+      if (Numbers.hasValue(node))
+        values[count++] = Numbers.parseInt(node);
+    }
+
+    return count == values.length ? values : Arrays.copyOf(values, count);
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a sequential IntStream. Values are parsed
+   * as the stream is consumed.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   * @throws NumberFormatException if the values for the expression are not valid ints
+   */
+  public IntStream valuesAsIntStream(String expression) throws XPathExpressionException {
+    return valuesAsIntStream(XPathCache.get(expression));
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a sequential IntStream. Values are parsed
+   * as the stream is consumed.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   * @throws NumberFormatException if the values for the expression are not valid ints
+   */
+  public IntStream valuesAsIntStream(XmlExpression expression) throws XPathExpressionException {
+    final NodeList nodeList = nodeSet(expression);
+    return valueIndexes(nodeList).map(new IntUnaryOperator() {
+      @Override
+      public int applyAsInt(int index) {
+        return Numbers.parseInt(nodeList.item(index));
+      }
+    });
   }
 
   /**
@@ -236,7 +477,66 @@ public abstract class XmlSearchable<T> {
    * @throws NumberFormatException if the values for the expression are not valid longs
    */
   public List<Long> valuesAsLong(String expression) throws XPathExpressionException {
-    return valuesInternal(expression, Converter.longConverter);
+    return valuesInternal(XPathCache.get(expression), Converter.longConverter);
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a long array, parsing each value directly
+   * from its node's character data.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   * @throws NumberFormatException if the values for the expression are not valid longs
+   */
+  public long[] valuesAsLongArray(String expression) throws XPathExpressionException {
+    return valuesAsLongArray(XPathCache.get(expression));
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a long array, parsing each value directly
+   * from its node's character data.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   * @throws NumberFormatException if the values for the expression are not valid longs
+   */
+  public long[] valuesAsLongArray(XmlExpression expression) throws XPathExpressionException {
+    NodeList nodeList = nodeSet(expression);
+    long[] values = new long[nodeList.getLength()];
+    int count = 0;
+    for (int i = 0; i < values.length; i++) {
+      Node node = nodeList.item(i);
+      if (Numbers.hasValue(node))
+        values[count++] = Numbers.parseLong(node);
+    }
+
+    return count == values.length ? values : Arrays.copyOf(values, count);
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a sequential LongStream. Values are parsed
+   * as the stream is consumed.
+   * 
+   * @throws XPathExpressionException if the {@code expression} is invalid
+   * @throws NumberFormatException if the values for the expression are not valid longs
+   */
+  public LongStream valuesAsLongStream(String expression) throws XPathExpressionException {
+    return valuesAsLongStream(XPathCache.get(expression));
+  }
+
+  /**
+   * Finds the values for the XPath {@code expression} as a sequential LongStream. Values are parsed
+   * as the stream is consumed.
+   * 
+   * @throws XPathExpressionException if the {@code expression} cannot be evaluated
+   * @throws NumberFormatException if the values for the expression are not valid longs
+   */
+  public LongStream valuesAsLongStream(XmlExpression expression) throws XPathExpressionException {
+    final NodeList nodeList = nodeSet(expression);
+    return valueIndexes(nodeList).mapToLong(new IntToLongFunction() {
+      @Override
+      public long applyAsLong(int index) {
+        return Numbers.parseLong(nodeList.item(index));
+      }
+    });
   }
 
   /**
@@ -245,27 +545,199 @@ public abstract class XmlSearchable<T> {
    * @throws XPathExpressionException if the {@code expression} is invalid
    */
   @SuppressWarnings("unchecked")
-  <V> List<V> valuesInternal(String expression, Converter<V> converter)
+  <V> List<V> valuesInternal(XmlExpression expression, Converter<V> converter)
       throws XPathExpressionException {
-    XPathExpression expr = XPathFactory.newInstance().newXPath().compile(expression);
-    NodeList nodeList = (NodeList) expr.evaluate(source, XPathConstants.NODESET);
+    NodeList nodeList = nodeSet(expression);
     if (nodeList.getLength() == 0)
       return Collections.emptyList();
 
     List<V> values = new ArrayList<V>(nodeList.getLength());
     for (int i = 0; i < nodeList.getLength(); i++) {
-      Node node = nodeList.item(i);
-      String value = null;
-      if (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.ATTRIBUTE_NODE)
-        value = node.getNodeValue();
-      else if (node.getNodeType() == Node.CDATA_SECTION_NODE)
-        value = ((CharacterData) node).getData();
-
-      // Convert value
+      String value = valueOf(nodeList.item(i));
       if (value != null)
         values.add(converter == null ? (V) value : converter.convert(value));
     }
 
     return values;
   }
+
+  /**
+   * Returns the values of the text, CDATA and attribute nodes in the {@code nodes}.
+   */
+  static List<String> valuesOf(List<Node> nodes) {
+    List<String> values = new ArrayList<String>(nodes.size());
+    for (Node node : nodes) {
+      String value = valueOf(node);
+      if (value != null)
+        values.add(value);
+    }
+
+    return values;
+  }
+
+  /**
+   * Returns the value of the {@code node} if it is a text, CDATA or attribute node, else null.
+   */
+  static String valueOf(Node node) {
+    if (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.ATTRIBUTE_NODE)
+      return node.getNodeValue();
+    if (node.getNodeType() == Node.CDATA_SECTION_NODE)
+      return ((CharacterData) node).getData();
+    return null;
+  }
+
+  /**
+   * Returns the nodes selected by the {@code expression}, evaluating simple paths directly rather
+   * than via the XPath engine.
+   */
+  NodeList nodeSet(XmlExpression expression) throws XPathExpressionException {
+    XsylumListener listener = Xsylum.listener;
+    long start = listener == null ? 0 : System.nanoTime();
+    SimplePath path = pathFor(expression);
+    NodeList nodeList = path != null ? new ListNodeList(path.select((Node) source))
+        : (NodeList) expression.compiled().evaluate(source, XPathConstants.NODESET);
+    if (listener != null)
+      listener.expressionEvaluated(expression.expression(), System.nanoTime() - start);
+    return nodeList;
+  }
+
+  /**
+   * Returns the simple path for the {@code expression}, else null if it has none or if it cannot be
+   * walked from the source.
+   */
+  private SimplePath pathFor(XmlExpression expression) {
+    return expression.path != null && SimplePath.canWalk((Node) source) ? expression.path : null;
+  }
+
+  /**
+   * Returns the indexes of the nodes in the {@code nodeList} that have values.
+   */
+  private static IntStream valueIndexes(final NodeList nodeList) {
+    return IntStream.range(0, nodeList.getLength()).filter(new IntPredicate() {
+      @Override
+      public boolean test(int index) {
+        return Numbers.hasValue(nodeList.item(index));
+      }
+    });
+  }
+
+  /**
+   * Returns a sequential, ordered Stream of the {@code elements}.
+   */
+  static Stream<XmlElement> stream(Iterator<XmlElement> elements) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED
+        | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * An iterator over the elements among some nodes, optionally only those with a name, which are
+   * wrapped as they are reached.
+   */
+  static final class ElementIterator implements Iterator<XmlElement> {
+    private final Iterator<Node> nodes;
+    private final String tagName;
+    private Element next;
+
+    /**
+     * Creates an iterator over the elements among the {@code nodes} that have the {@code tagName},
+     * else all elements if the {@code tagName} is null.
+     */
+    ElementIterator(Iterator<Node> nodes, String tagName) {
+      this.nodes = nodes;
+      this.tagName = tagName;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && nodes.hasNext()) {
+        Node node = nodes.next();
+        if (node.getNodeType() == Node.ELEMENT_NODE
+            && (tagName == null || node.getNodeName().equals(tagName)))
+          next = (Element) node;
+      }
+
+      return next != null;
+    }
+
+    @Override
+    public XmlElement next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      XmlElement result = new XmlElement(next);
+      next = null;
+      return result;
+    }
+  }
+
+  /**
+   * An iterator over a node and its following siblings.
+   */
+  static final class SiblingIterator implements Iterator<Node> {
+    private Node next;
+
+    SiblingIterator(Node first) {
+      next = first;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Node next() {
+      if (next == null)
+        throw new NoSuchElementException();
+      Node result = next;
+      next = next.getNextSibling();
+      return result;
+    }
+  }
+
+  /**
+   * An iterator over a NodeList, which reads each node from the list as it is reached.
+   */
+  static final class NodeListIterator implements Iterator<Node> {
+    private final NodeList nodeList;
+    private int index;
+
+    NodeListIterator(NodeList nodeList) {
+      this.nodeList = nodeList;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nodeList.item(index) != null;
+    }
+
+    @Override
+    public Node next() {
+      Node node = nodeList.item(index);
+      if (node == null)
+        throw new NoSuchElementException();
+      index++;
+      return node;
+    }
+  }
+
+  /**
+   * A NodeList backed by a List.
+   */
+  static final class ListNodeList implements NodeList {
+    private final List<Node> nodes;
+
+    ListNodeList(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    public int getLength() {
+      return nodes.size();
+    }
+
+    @Override
+    public Node item(int index) {
+      return index < 0 || index >= nodes.size() ? null : nodes.get(index);
+    }
+  }
 }
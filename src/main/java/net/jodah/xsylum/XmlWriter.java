@@ -0,0 +1,167 @@
+package net.jodah.xsylum;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Serializes elements to an {@link Appendable} in a single pass over the tree, without building
+ * intermediate strings for subtrees. Text and attribute values are escaped, and characters that
+ * cannot be encoded in the target charset, if any, are written as character references.
+ * 
+ * @author Jonathan Halterman
+ */
+final class XmlWriter {
+  private final Appendable out;
+  private final Writer writer;
+  private final StringBuilder builder;
+  private final CharsetEncoder encoder;
+
+  /**
+   * @param charset the charset that the output will be encoded in, else null if unknown
+   */
+  XmlWriter(Appendable out, Charset charset) {
+    this.out = out;
+    writer = out instanceof Writer ? (Writer) out : null;
+    builder = out instanceof StringBuilder ? (StringBuilder) out : null;
+    encoder = charset == null || StandardCharsets.UTF_8.equals(charset)
+        || StandardCharsets.UTF_16.equals(charset) || !charset.canEncode() ? null
+        : charset.newEncoder();
+  }
+
+  /**
+   * Writes the {@code element}, including its attributes and content.
+   */
+  void writeElement(Node element) throws IOException {
+    Node node = element;
+    while (true) {
+      short type = node.getNodeType();
+      if (type == Node.ELEMENT_NODE) {
+        startTag(node);
+        if (node.hasChildNodes()) {
+          out.append('>');
+          node = node.getFirstChild();
+          continue;
+        }
+
+        out.append("/>");
+      } else if (type == Node.TEXT_NODE)
+        escape(node.getNodeValue(), false);
+      else if (type == Node.CDATA_SECTION_NODE)
+        cdata(((CharacterData) node).getData());
+      else if (type == Node.ENTITY_REFERENCE_NODE)
+        out.append('&').append(node.getNodeName()).append(';');
+
+      while (node != element && node.getNextSibling() == null) {
+        node = node.getParentNode();
+        out.append("</").append(node.getNodeName()).append('>');
+      }
+      if (node == element)
+        return;
+      node = node.getNextSibling();
+    }
+  }
+
+  private void startTag(Node element) throws IOException {
+    out.append('<').append(element.getNodeName());
+    NamedNodeMap attributes = element.getAttributes();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      Node attribute = attributes.item(i);
+      out.append(' ').append(attribute.getNodeName()).append("=\"");
+      escape(attribute.getNodeValue(), true);
+      out.append('"');
+    }
+  }
+
+  private void cdata(String data) throws IOException {
+    // A CDATA section cannot contain its end delimiter, so split the section around it
+    int start = 0;
+    for (int end; (end = data.indexOf("]]>", start)) != -1; start = end + 2) {
+      out.append("<![CDATA[");
+      append(data, start, end + 2);
+      out.append("]]>");
+    }
+
+    out.append("<![CDATA[");
+    append(data, start, data.length());
+    out.append("]]>");
+  }
+
+  /**
+   * Writes the {@code value}, escaping markup characters and characters that cannot be encoded.
+   */
+  private void escape(String value, boolean attribute) throws IOException {
+    int start = 0;
+    for (int i = 0, length = value.length(); i < length; i++) {
+      char c = value.charAt(i);
+      String replacement = null;
+      int codePoint = -1;
+      switch (c) {
+        case '&':
+          replacement = "&amp;";
+          break;
+        case '<':
+          replacement = "&lt;";
+          break;
+        case '>':
+          replacement = "&gt;";
+          break;
+        case '"':
+          if (attribute)
+            replacement = "&quot;";
+          break;
+        case '\t':
+        case '\n':
+        case '\r':
+          // Preserve whitespace in attributes, which would otherwise be normalized when reparsed
+          if (attribute)
+            codePoint = c;
+          break;
+        default:
+          if (c >= 0x80 && encoder != null) {
+            if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+              if (!encoder.canEncode(value.subSequence(i, i + 2)))
+                codePoint = value.codePointAt(i);
+            } else if (!encoder.canEncode(c))
+              codePoint = c;
+          }
+      }
+
+      if (replacement != null || codePoint != -1) {
+        append(value, start, i);
+        if (replacement != null)
+          out.append(replacement);
+        else {
+          out.append("&#x").append(Integer.toHexString(codePoint)).append(';');
+          if (Character.isSupplementaryCodePoint(codePoint))
+            i++;
+        }
+        start = i + 1;
+      }
+    }
+
+    append(value, start, value.length());
+  }
+
+  /**
+   * Appends the {@code value} from {@code start} to {@code end} without creating substrings where
+   * possible.
+   */
+  private void append(String value, int start, int end) throws IOException {
+    if (start == end)
+      return;
+    if (builder != null)
+      builder.append(value, start, end);
+    else if (writer != null)
+      writer.write(value, start, end - start);
+    else
+      out.append(value, start, end);
+  }
+}
@@ -5,12 +5,32 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 
 /**
@@ -19,49 +39,448 @@ import org.xml.sax.InputSource;
  * @author Jonathan Halterman
  */
 public final class Xsylum {
+  static final ParserPool DEFAULT_POOL = ParserOptions.defaults().pool;
+  /** The registered listener, else null */
+  static volatile XsylumListener listener;
+
   private Xsylum() {
   }
 
+  /**
+   * Returns the {@link Binder} for the {@code type}'s {@link Bind} annotated fields. Binders are
+   * compiled once per type and cached.
+   * 
+   * @param <T> bound type
+   * @throws IllegalArgumentException if the {@code type} cannot be bound
+   */
+  public static <T> Binder<T> binder(Class<T> type) {
+    return Binder.forType(type);
+  }
+
+  /**
+   * Returns a compact, read-only XmlDocument for the {@code xml}. See
+   * {@link #compactDocumentFor(InputStream)}.
+   */
+  public static XmlDocument compactDocumentFor(byte[] xml) throws XsylumException {
+    return compactDocumentFor(new ByteArrayInputStream(xml));
+  }
+
+  /**
+   * Returns a compact, read-only XmlDocument for the xml read from the {@code file}. See
+   * {@link #compactDocumentFor(InputStream)}.
+   */
+  public static XmlDocument compactDocumentFor(File file) throws XsylumException {
+    return compactDocumentFor(file.toPath());
+  }
+
+  /**
+   * Returns a compact, read-only XmlDocument for the xml read from the {@code inputStream}. Rather
+   * than a graph of node objects, compact documents store their tree in parallel arrays over a
+   * single shared char buffer. For a 10 MB catalog, a compact document retains about half the heap
+   * of a freshly parsed default DOM, and about a third once the DOM's deferred nodes have been
+   * created by a search, since node views are only retained while in use. Comments and processing
+   * instructions are not retained, and any attempt to modify the document will fail with a
+   * {@link org.w3c.dom.DOMException}.
+   */
+  public static XmlDocument compactDocumentFor(InputStream inputStream) throws XsylumException {
+    try {
+      return new XmlDocument(parseCompact(new InputSource(inputStream)));
+    } catch (Exception e) {
+      throw new XsylumException(e, "Failed to create document from InputStream");
+    }
+  }
+
+  /**
+   * Returns a compact, read-only XmlDocument for the xml read from the file at the {@code path}.
+   * See {@link #compactDocumentFor(InputStream)}.
+   */
+  public static XmlDocument compactDocumentFor(Path path) throws XsylumException {
+    try (InputStream inputStream = MappedInputStream.open(path)) {
+      return new XmlDocument(parseCompact(inputSourceFor(inputStream, path)));
+    } catch (Exception e) {
+      throw new XsylumException(e, "Failed to create document from file %s", path.getFileName());
+    }
+  }
+
+  /**
+   * Returns a compact, read-only XmlDocument for the {@code xml}, which was read from the file at
+   * the {@code path}.
+   */
+  static XmlDocument compactDocumentFor(byte[] xml, Path path) throws XsylumException {
+    try {
+      return new XmlDocument(parseCompact(inputSourceFor(new ByteArrayInputStream(xml), path)));
+    } catch (Exception e) {
+      throw new XsylumException(e, "Failed to create document from file %s", path.getFileName());
+    }
+  }
+
+  /**
+   * Returns a compact, read-only XmlDocument for the {@code xml}. See
+   * {@link #compactDocumentFor(InputStream)}.
+   */
+  public static XmlDocument compactDocumentFor(String xml) throws XsylumException {
+    try {
+      return new XmlDocument(parseCompact(new InputSource(new StringReader(xml))));
+    } catch (Exception e) {
+      throw new XsylumException(e, "Failed to create document from String");
+    }
+  }
+
+  /**
+   * Returns the executor that asynchronous parsing uses by default, which runs each task in a new
+   * virtual thread on runtimes that support them, else in a pooled daemon thread.
+   */
+  public static Executor defaultExecutor() {
+    return DefaultExecutor.INSTANCE;
+  }
+
+  /**
+   * Parses the {@code sources} in parallel on the common fork-join pool, returning the results in
+   * input order. See {@link #documentsFor(Iterable, Executor)}.
+   * 
+   * @param <S> source type
+   * @throws InterruptedException if interrupted while waiting for parsing to complete
+   */
+  public static <S> List<ParseResult<S>> documentsFor(Iterable<? extends S> sources)
+      throws InterruptedException {
+    return documentsFor(sources, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Parses the {@code sources} in parallel on the {@code executor}, returning the results in input
+   * order once all sources have been parsed. Sources may be {@link File}s, {@link Path}s,
+   * {@code byte[]}s, {@link String}s, {@link InputStream}s or {@link ReadableByteChannel}s. A
+   * source that fails to parse produces a failed result rather than failing the batch. Since
+   * sources of any type are accepted, so that a batch may mix types, a source of an unsupported
+   * type is not rejected up front but produces a failed result when it is parsed.
+   * 
+   * @param <S> source type
+   * @throws InterruptedException if interrupted while waiting for parsing to complete
+   */
+  public static <S> List<ParseResult<S>> documentsFor(Iterable<? extends S> sources,
+      Executor executor) throws InterruptedException {
+    final List<ParseResult<S>> results = new ArrayList<ParseResult<S>>();
+    documentsFor(sources, executor, new Consumer<ParseResult<S>>() {
+      @Override
+      public void accept(ParseResult<S> result) {
+        synchronized (results) {
+          while (results.size() <= result.index())
+            results.add(null);
+          results.set(result.index(), result);
+        }
+      }
+    });
+
+    synchronized (results) {
+      return new ArrayList<ParseResult<S>>(results);
+    }
+  }
+
+  /**
+   * Parses the {@code sources} in parallel on the {@code executor}, passing each result to the
+   * {@code consumer} as soon as it completes, and returning once all sources have been parsed. The
+   * {@code consumer} may be called concurrently from the executor's threads. See
+   * {@link #documentsFor(Iterable, Executor)} for the supported sources.
+   * 
+   * <p>
+   * If the {@code consumer} throws, the remaining results are still passed to it, and the first
+   * failure is rethrown once all sources have been parsed, with any others suppressed.
+   * 
+   * @param <S> source type
+   * @throws InterruptedException if interrupted while waiting for parsing to complete
+   */
+  public static <S> void documentsFor(Iterable<? extends S> sources, Executor executor,
+      final Consumer<? super ParseResult<S>> consumer) throws InterruptedException {
+    List<S> sourceList = new ArrayList<S>();
+    for (S source : sources)
+      sourceList.add(source);
+
+    final CountDownLatch latch = new CountDownLatch(sourceList.size());
+    final List<Throwable> consumerFailures = new ArrayList<Throwable>();
+    for (int i = 0; i < sourceList.size(); i++) {
+      final int index = i;
+      final S source = sourceList.get(i);
+      Runnable task = new Runnable() {
+        @Override
+        public void run() {
+          try {
+            consumer.accept(parseResultFor(index, source));
+          } catch (Throwable t) {
+            synchronized (consumerFailures) {
+              consumerFailures.add(t);
+            }
+          } finally {
+            latch.countDown();
+          }
+        }
+      };
+
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        task.run();
+      }
+    }
+
+    latch.await();
+    synchronized (consumerFailures) {
+      if (!consumerFailures.isEmpty())
+        rethrow(consumerFailures);
+    }
+  }
+
   /**
    * Returns an XmlDocument for the {@code xml}.
    */
   public static XmlDocument documentFor(byte[] xml) throws XsylumException {
-    return documentFor(new ByteArrayInputStream(xml));
+    return documentFor(xml, DEFAULT_POOL);
   }
 
   /**
-   * Returns an XmlDocument for the xml read from the {@code file}.
+   * Returns an XmlDocument for the {@code xml}, parsed with a builder from the {@code pool}.
+   */
+  public static XmlDocument documentFor(byte[] xml, ParserPool pool) throws XsylumException {
+    return documentFor(new ByteArrayInputStream(xml), pool);
+  }
+
+  /**
+   * Returns an XmlDocument for the {@code xml}, parsed with the {@code options}.
+   */
+  public static XmlDocument documentFor(byte[] xml, ParserOptions options) throws XsylumException {
+    return documentFor(documentForInternal(new ByteArrayInputStream(xml), options.pool), options);
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the {@code file}. Large files are memory-mapped
+   * rather than read through a stream.
    */
   public static XmlDocument documentFor(File file) throws XsylumException {
-    return new XmlDocument(documentForInternal(file));
+    return documentFor(file, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the {@code file}, parsed with a builder from the
+   * {@code pool}.
+   */
+  public static XmlDocument documentFor(File file, ParserPool pool) throws XsylumException {
+    return documentFor(file.toPath(), pool);
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the {@code file}, parsed with the {@code options}.
+   */
+  public static XmlDocument documentFor(File file, ParserOptions options) throws XsylumException {
+    return documentFor(documentForInternal(file.toPath(), options.pool), options);
   }
 
   /**
    * Returns an XmlDocument for the xml read from the {@code inputStream}.
    */
   public static XmlDocument documentFor(InputStream inputStream) throws XsylumException {
-    return new XmlDocument(documentForInternal(inputStream));
+    return documentFor(inputStream, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the {@code inputStream}, parsed with a builder
+   * from the {@code pool}.
+   */
+  public static XmlDocument documentFor(InputStream inputStream, ParserPool pool)
+      throws XsylumException {
+    return new XmlDocument(documentForInternal(inputStream, pool));
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the {@code inputStream}, parsed with the
+   * {@code options}.
+   */
+  public static XmlDocument documentFor(InputStream inputStream, ParserOptions options)
+      throws XsylumException {
+    return documentFor(documentForInternal(inputStream, options.pool), options);
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the file at the {@code path}. Large files are
+   * memory-mapped rather than read through a stream.
+   */
+  public static XmlDocument documentFor(Path path) throws XsylumException {
+    return documentFor(path, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the file at the {@code path}, parsed with a
+   * builder from the {@code pool}. Large files are memory-mapped rather than read through a stream.
+   */
+  public static XmlDocument documentFor(Path path, ParserPool pool) throws XsylumException {
+    return new XmlDocument(documentForInternal(path, pool));
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the file at the {@code path}, parsed with the
+   * {@code options}. Large files are memory-mapped rather than read through a stream.
+   */
+  public static XmlDocument documentFor(Path path, ParserOptions options) throws XsylumException {
+    return documentFor(documentForInternal(path, options.pool), options);
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the {@code channel}. The channel is read from in
+   * large chunks and is not closed.
+   */
+  public static XmlDocument documentFor(ReadableByteChannel channel) throws XsylumException {
+    return documentFor(channel, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the {@code channel}, parsed with a builder from
+   * the {@code pool}. The channel is read from in large chunks and is not closed.
+   */
+  public static XmlDocument documentFor(ReadableByteChannel channel, ParserPool pool)
+      throws XsylumException {
+    return documentFor(new ChannelInputStream(channel, ChannelInputStream.BUFFER_SIZE), pool);
+  }
+
+  /**
+   * Returns an XmlDocument for the xml read from the {@code channel}, parsed with the
+   * {@code options}. The channel is read from in large chunks and is not closed.
+   */
+  public static XmlDocument documentFor(ReadableByteChannel channel, ParserOptions options)
+      throws XsylumException {
+    return documentFor(new ChannelInputStream(channel, ChannelInputStream.BUFFER_SIZE), options);
   }
 
   /**
    * Returns an XmlDocument for the {@code xml}.
    */
   public static XmlDocument documentFor(String xml) throws XsylumException {
-    return documentFor(new ByteArrayInputStream(xml.getBytes()));
+    return documentFor(xml, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlDocument for the {@code xml}, parsed with a builder from the {@code pool}.
+   */
+  public static XmlDocument documentFor(String xml, ParserPool pool) throws XsylumException {
+    return new XmlDocument(documentForInternal(new InputSource(new StringReader(xml)), pool));
+  }
+
+  /**
+   * Returns an XmlDocument for the {@code xml}, parsed with the {@code options}.
+   */
+  public static XmlDocument documentFor(String xml, ParserOptions options) throws XsylumException {
+    return documentFor(documentForInternal(new InputSource(new StringReader(xml)), options.pool),
+        options);
+  }
+
+  /**
+   * Parses the {@code xml} on the {@link #defaultExecutor()}, returning a future for the document.
+   */
+  public static CompletableFuture<XmlDocument> documentForAsync(byte[] xml) {
+    return documentForAsync(xml, DefaultExecutor.INSTANCE);
+  }
+
+  /**
+   * Parses the {@code xml} on the {@code executor}, returning a future for the document. The future
+   * completes exceptionally with an {@link XsylumException} if parsing fails.
+   */
+  public static CompletableFuture<XmlDocument> documentForAsync(byte[] xml, Executor executor) {
+    return documentForSourceAsync(xml, executor);
+  }
+
+  /**
+   * Reads and parses the xml from the {@code inputStream} on the {@link #defaultExecutor()},
+   * returning a future for the document.
+   */
+  public static CompletableFuture<XmlDocument> documentForAsync(InputStream inputStream) {
+    return documentForAsync(inputStream, DefaultExecutor.INSTANCE);
+  }
+
+  /**
+   * Reads and parses the xml from the {@code inputStream} on the {@code executor}, returning a
+   * future for the document, so that the calling thread never blocks on reading. The future
+   * completes exceptionally with an {@link XsylumException} if reading or parsing fails.
+   */
+  public static CompletableFuture<XmlDocument> documentForAsync(InputStream inputStream,
+      Executor executor) {
+    return documentForSourceAsync(inputStream, executor);
+  }
+
+  /**
+   * Reads and parses the file at the {@code path} on the {@link #defaultExecutor()}, returning a
+   * future for the document.
+   */
+  public static CompletableFuture<XmlDocument> documentForAsync(Path path) {
+    return documentForAsync(path, DefaultExecutor.INSTANCE);
+  }
+
+  /**
+   * Reads and parses the file at the {@code path} on the {@code executor}, returning a future for
+   * the document. The future completes exceptionally with an {@link XsylumException} if reading or
+   * parsing fails.
+   */
+  public static CompletableFuture<XmlDocument> documentForAsync(Path path, Executor executor) {
+    return documentForSourceAsync(path, executor);
+  }
+
+  /**
+   * Parses the {@code xml} on the {@link #defaultExecutor()}, returning a future for the document.
+   */
+  public static CompletableFuture<XmlDocument> documentForAsync(String xml) {
+    return documentForAsync(xml, DefaultExecutor.INSTANCE);
+  }
+
+  /**
+   * Parses the {@code xml} on the {@code executor}, returning a future for the document. The future
+   * completes exceptionally with an {@link XsylumException} if parsing fails.
+   */
+  public static CompletableFuture<XmlDocument> documentForAsync(String xml, Executor executor) {
+    return documentForSourceAsync(xml, executor);
   }
 
   /**
    * Returns an XmlDocument for the {@code xml}.
    */
   public static XmlElement elementFor(byte[] xml) throws XsylumException {
-    return new XmlElement(documentForInternal(new ByteArrayInputStream(xml)).getDocumentElement());
+    return elementFor(xml, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the {@code xml}, parsed with a
+   * builder from the {@code pool}.
+   */
+  public static XmlElement elementFor(byte[] xml, ParserPool pool) throws XsylumException {
+    return new XmlElement(documentForInternal(new ByteArrayInputStream(xml), pool)
+        .getDocumentElement());
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the {@code xml}, parsed with the
+   * {@code options}.
+   */
+  public static XmlElement elementFor(byte[] xml, ParserOptions options) throws XsylumException {
+    return documentFor(xml, options).root();
   }
 
   /**
    * Returns an XmlElement representing the document element for the xml read from the {@code file}.
    */
   public static XmlElement elementFor(File file) throws XsylumException, IOException {
-    return new XmlElement(documentForInternal(file).getDocumentElement());
+    return elementFor(file, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the {@code file},
+   * parsed with a builder from the {@code pool}.
+   */
+  public static XmlElement elementFor(File file, ParserPool pool) throws XsylumException,
+      IOException {
+    return elementFor(file.toPath(), pool);
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the
+   * {@code file}, parsed with the {@code options}.
+   */
+  public static XmlElement elementFor(File file, ParserOptions options) throws XsylumException {
+    return documentFor(file, options).root();
   }
 
   /**
@@ -69,36 +488,401 @@ public final class Xsylum {
    * {@code inputStream}.
    */
   public static XmlElement elementFor(InputStream inputStream) throws XsylumException {
-    return new XmlElement(documentForInternal(inputStream).getDocumentElement());
+    return elementFor(inputStream, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the
+   * {@code inputStream}, parsed with a builder from the {@code pool}.
+   */
+  public static XmlElement elementFor(InputStream inputStream, ParserPool pool)
+      throws XsylumException {
+    return new XmlElement(documentForInternal(inputStream, pool).getDocumentElement());
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the
+   * {@code inputStream}, parsed with the {@code options}.
+   */
+  public static XmlElement elementFor(InputStream inputStream, ParserOptions options)
+      throws XsylumException {
+    return documentFor(inputStream, options).root();
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the file at the
+   * {@code path}.
+   */
+  public static XmlElement elementFor(Path path) throws XsylumException {
+    return elementFor(path, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the file at the
+   * {@code path}, parsed with a builder from the {@code pool}.
+   */
+  public static XmlElement elementFor(Path path, ParserPool pool) throws XsylumException {
+    return new XmlElement(documentForInternal(path, pool).getDocumentElement());
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the file at the
+   * {@code path}, parsed with the {@code options}.
+   */
+  public static XmlElement elementFor(Path path, ParserOptions options) throws XsylumException {
+    return documentFor(path, options).root();
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the
+   * {@code channel}. The channel is not closed.
+   */
+  public static XmlElement elementFor(ReadableByteChannel channel) throws XsylumException {
+    return elementFor(channel, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the
+   * {@code channel}, parsed with a builder from the {@code pool}. The channel is not closed.
+   */
+  public static XmlElement elementFor(ReadableByteChannel channel, ParserPool pool)
+      throws XsylumException {
+    return elementFor(new ChannelInputStream(channel, ChannelInputStream.BUFFER_SIZE), pool);
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the xml read from the
+   * {@code channel}, parsed with the {@code options}. The channel is not closed.
+   */
+  public static XmlElement elementFor(ReadableByteChannel channel, ParserOptions options)
+      throws XsylumException {
+    return documentFor(channel, options).root();
   }
 
   /**
    * Returns an XmlElement representing the document element for the {@code xml}.
    */
   public static XmlElement elementFor(String xml) throws XsylumException {
-    return new XmlElement(documentForInternal(
-        new InputSource(new StringReader(xml)).getByteStream()).getDocumentElement());
+    return elementFor(xml, DEFAULT_POOL);
+  }
+
+  /**
+   * Returns an XmlElement representing the document element for the {@code xml}, parsed with a
+   * builder from the {@code pool}.
+   */
+  public static XmlElement elementFor(String xml, ParserPool pool) throws XsylumException {
+    return new XmlElement(documentForInternal(new InputSource(new StringReader(xml)), pool)
+        .getDocumentElement());
   }
 
-  private static DocumentBuilder createBuilderFactory() throws ParserConfigurationException {
-    DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-    documentBuilderFactory.setValidating(false);
-    return documentBuilderFactory.newDocumentBuilder();
+  /**
+   * Returns an XmlElement representing the document element for the {@code xml}, parsed with the
+   * {@code options}.
+   */
+  public static XmlElement elementFor(String xml, ParserOptions options) throws XsylumException {
+    return documentFor(xml, options).root();
   }
 
-  private static Document documentForInternal(File file) throws XsylumException {
+  /**
+   * Returns the values of the {@code paths} read from the {@code inputStream}, by path, without
+   * building a document. Reading stops as soon as each path has been resolved or can no longer
+   * match, so a lookup near the start of a large document reads only that far. Each value is the
+   * same as {@link XmlDocument#value(String)} would return for the path. Paths that select nothing
+   * are absent from the result. The {@code inputStream} is not closed.
+   * 
+   * <p>
+   * Paths are evaluated from the document and must be simple paths: element names or {@code *}
+   * with optional {@code [n]} positions, separated by {@code /} or {@code //}, where the last step
+   * may be {@code text()}, {@code @name} or {@code @*}, such as {@code /catalog/book[2]/title} or
+   * {@code //book/@id}.
+   * 
+   * @throws IllegalArgumentException if a path is not supported
+   * @throws XsylumException if the {@code inputStream} cannot be read from
+   */
+  public static Map<String, String> extract(InputStream inputStream, String... paths)
+      throws XsylumException {
+    return PathExtractor.extract(inputStream, paths);
+  }
+
+  /**
+   * Returns a new XmlFeed that parses on the {@link #defaultExecutor()}. See
+   * {@link #feed(Executor)}.
+   */
+  public static XmlFeed feed() {
+    return feed(DefaultExecutor.INSTANCE);
+  }
+
+  /**
+   * Returns a new XmlFeed that accepts a document in chunks as they arrive, without blocking or
+   * holding a thread while waiting for more input, and parses it on the {@code executor} once it
+   * is complete.
+   */
+  public static XmlFeed feed(Executor executor) {
+    return new XmlFeed(executor);
+  }
+
+  /**
+   * Returns the registered listener, else null if none is registered.
+   */
+  public static XsylumListener listener() {
+    return listener;
+  }
+
+  /**
+   * Registers the {@code listener} to receive timings and counts for parsing and XPath operations
+   * on all threads, replacing any previously registered listener. Passing null unregisters the
+   * listener, after which operations are no longer timed. While a listener is registered, parsed
+   * documents are walked to count their nodes, which fully expands documents whose node creation
+   * is deferred.
+   */
+  public static void setListener(XsylumListener listener) {
+    Xsylum.listener = listener;
+  }
+
+  /**
+   * Returns a Stream of XmlElements for the records matching the {@code recordPath}, read from the
+   * {@code inputStream}. Records are read on demand, each into its own small document, so memory
+   * use depends on record size rather than document size. The returned stream should be closed
+   * when it is no longer needed, which does not close the {@code inputStream}.
+   * 
+   * <p>
+   * The {@code recordPath} is either an absolute path of element names, such as
+   * {@code /catalog/book}, or a descendant element name such as {@code //book}. The {@code *}
+   * wildcard matches any element name. Unlike XPath, a descendant name does not select records
+   * nested within another record separately, since they are read as part of the outer record.
+   * 
+   * @throws IllegalArgumentException if the {@code recordPath} is not supported
+   * @throws XsylumException if the {@code inputStream} cannot be read from. Failures while reading
+   *           records are thrown from stream operations as {@link UncheckedXsylumException}s.
+   */
+  public static Stream<XmlElement> stream(InputStream inputStream, String recordPath)
+      throws XsylumException {
+    final RecordIterator iterator = new RecordIterator(inputStream, recordPath, DEFAULT_POOL);
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+        false).onClose(new Runnable() {
+      @Override
+      public void run() {
+        iterator.close();
+      }
+    });
+  }
+
+  /**
+   * Parses the {@code source} according to its type.
+   */
+  static XmlDocument documentForSource(Object source) throws XsylumException {
+    if (source instanceof Path)
+      return documentFor((Path) source);
+    if (source instanceof File)
+      return documentFor((File) source);
+    if (source instanceof byte[])
+      return documentFor((byte[]) source);
+    if (source instanceof String)
+      return documentFor((String) source);
+    if (source instanceof InputStream)
+      return documentFor((InputStream) source);
+    if (source instanceof ReadableByteChannel)
+      return documentFor((ReadableByteChannel) source);
+    throw new XsylumException("Unsupported source type %s",
+        source == null ? null : source.getClass().getName());
+  }
+
+  private static CompletableFuture<XmlDocument> documentForSourceAsync(final Object source,
+      Executor executor) {
+    if (executor == null)
+      throw new NullPointerException("executor");
+    return CompletableFuture.supplyAsync(new Supplier<XmlDocument>() {
+      @Override
+      public XmlDocument get() {
+        try {
+          return documentForSource(source);
+        } catch (XsylumException e) {
+          throw new CompletionException(e);
+        }
+      }
+    }, executor);
+  }
+
+  private static <S> ParseResult<S> parseResultFor(int index, S source) {
     try {
-      return createBuilderFactory().parse(file);
+      return new ParseResult<S>(index, source, documentForSource(source), null);
+    } catch (XsylumException e) {
+      return new ParseResult<S>(index, source, null, e);
+    } catch (Throwable t) {
+      return new ParseResult<S>(index, source, null, new XsylumException(t,
+          "Failed to create document"));
+    }
+  }
+
+  /**
+   * Throws the first of the {@code failures}, with the rest added as suppressed.
+   */
+  private static void rethrow(List<Throwable> failures) {
+    Throwable failure = failures.get(0);
+    for (int i = 1; i < failures.size(); i++)
+      failure.addSuppressed(failures.get(i));
+    if (failure instanceof Error)
+      throw (Error) failure;
+    if (failure instanceof RuntimeException)
+      throw (RuntimeException) failure;
+    throw new UncheckedXsylumException(new XsylumException(failure, "Failed to consume result"));
+  }
+
+  /**
+   * Returns an XmlDocument for the {@code document}, frozen if the {@code options} require it.
+   */
+  private static XmlDocument documentFor(Document document, ParserOptions options) {
+    XmlDocument result = new XmlDocument(document);
+    return options.frozen ? result.freeze() : result;
+  }
+
+  private static Document documentForInternal(Path path, ParserPool pool) throws XsylumException {
+    try (InputStream inputStream = MappedInputStream.open(path)) {
+      return parse(inputSourceFor(inputStream, path), pool);
     } catch (Exception e) {
-      throw new XsylumException(e, "Failed to create document from file %s", file.getName());
+      throw new XsylumException(e, "Failed to create document from file %s", path.getFileName());
     }
   }
 
-  private static Document documentForInternal(InputStream inputStream) throws XsylumException {
+  private static Document documentForInternal(InputStream inputStream, ParserPool pool)
+      throws XsylumException {
+    return documentForInternal(new InputSource(inputStream), pool);
+  }
+
+  private static Document documentForInternal(InputSource inputSource, ParserPool pool)
+      throws XsylumException {
     try {
-      return createBuilderFactory().parse(inputStream);
+      return parse(inputSource, pool);
     } catch (Exception e) {
       throw new XsylumException(e, "Failed to create document from InputStream");
     }
   }
+
+  /**
+   * Returns an InputSource for the {@code inputStream} whose system id is the {@code path}, so that
+   * relative references in the document resolve against it.
+   */
+  private static InputSource inputSourceFor(InputStream inputStream, Path path) {
+    InputSource inputSource = new InputSource(inputStream);
+    inputSource.setSystemId(path.toUri().toASCIIString());
+    return inputSource;
+  }
+
+  private static Document parse(InputSource inputSource, ParserPool pool) throws Exception {
+    XsylumListener listener = Xsylum.listener;
+    ParserOptions options = pool.options;
+    long maxSize = options == null || options.maxDocumentSize == 0 ? Long.MAX_VALUE
+        : options.maxDocumentSize;
+    Object counter = listener != null || maxSize != Long.MAX_VALUE ? count(inputSource, maxSize)
+        : null;
+    long start = listener == null ? 0 : System.nanoTime();
+    DocumentBuilder builder = pool.acquire();
+    try {
+      Document document = builder.parse(inputSource);
+      if (options != null && options.dropWhitespace)
+        ParserOptions.dropWhitespace(document);
+      if (pool.stringTable != null)
+        pool.stringTable.canonicalize(document);
+      // Entity references can only occur in documents with a document type declaration
+      if (document.getDoctype() != null && !pool.factory().isExpandEntityReferences())
+        document.setUserData(SimplePath.ENTITY_REFERENCES, Boolean.TRUE, null);
+      if (listener != null)
+        listener.documentParsed(System.nanoTime() - start, countOf(counter), nodeCount(document));
+      return document;
+    } finally {
+      pool.release(builder);
+    }
+  }
+
+  private static CompactDocument parseCompact(InputSource inputSource) throws Exception {
+    XsylumListener listener = Xsylum.listener;
+    if (listener == null)
+      return CompactDocumentBuilder.parse(inputSource);
+
+    Object counter = count(inputSource);
+    long start = System.nanoTime();
+    CompactDocument document = CompactDocumentBuilder.parse(inputSource);
+    listener.documentParsed(System.nanoTime() - start, countOf(counter), document.nodeCount);
+    return document;
+  }
+
+  /**
+   * Replaces the {@code inputSource}'s stream or reader with one that counts what is read from it,
+   * returning the counter.
+   */
+  private static Object count(InputSource inputSource) {
+    return count(inputSource, Long.MAX_VALUE);
+  }
+
+  /**
+   * Replaces the {@code inputSource}'s stream or reader with one that counts what is read from it,
+   * and fails once more than {@code limit} bytes or chars are read, returning the counter.
+   */
+  private static Object count(InputSource inputSource, long limit) {
+    if (inputSource.getCharacterStream() != null) {
+      CountingReader reader = new CountingReader(inputSource.getCharacterStream(), limit);
+      inputSource.setCharacterStream(reader);
+      return reader;
+    }
+
+    CountingInputStream inputStream = new CountingInputStream(inputSource.getByteStream(), limit);
+    inputSource.setByteStream(inputStream);
+    return inputStream;
+  }
+
+  private static long countOf(Object counter) {
+    return counter instanceof CountingReader ? ((CountingReader) counter).count
+        : ((CountingInputStream) counter).count;
+  }
+
+  /**
+   * Returns the number of nodes in the {@code document}, including the document node and excluding
+   * attributes. Walking the document creates any nodes whose creation was deferred.
+   */
+  private static int nodeCount(Document document) {
+    int count = 1;
+    Node node = document.getFirstChild();
+    while (node != null) {
+      count++;
+      Node next = node.getFirstChild();
+      while (next == null && node != null) {
+        next = node.getNextSibling();
+        if (next == null) {
+          node = node.getParentNode();
+          if (node == document)
+            node = null;
+        }
+      }
+      node = next;
+    }
+
+    return count;
+  }
+
+  /**
+   * Lazily creates the default executor for asynchronous parsing.
+   */
+  private static final class DefaultExecutor {
+    static final Executor INSTANCE = create();
+
+    private static Executor create() {
+      try {
+        // Available on Java 21+
+        Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (Executor) method.invoke(null);
+      } catch (Exception e) {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "xsylum-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+      }
+    }
+  }
 }
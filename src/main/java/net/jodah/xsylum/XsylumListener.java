@@ -0,0 +1,53 @@
+package net.jodah.xsylum;
+
+/**
+ * Receives timings and counts for parsing and XPath operations, for exporting to a metrics system.
+ * A listener is registered globally via {@link Xsylum#setListener(XsylumListener)}. When no
+ * listener is registered, operations are not timed at all.
+ * 
+ * <p>
+ * Listeners are called synchronously on the thread performing the operation, possibly from many
+ * threads at once, so implementations should be thread-safe and fast. {@link XsylumMetrics} is a
+ * lock-free implementation that records histograms. Each method does nothing by default.
+ * 
+ * @author Jonathan Halterman
+ */
+public interface XsylumListener {
+  /**
+   * Called when a lookup is made against a cache, such as the {@code "xpath"} cache of compiled
+   * expressions.
+   * 
+   * @param cache the name of the cache
+   * @param hit whether the lookup was served from the cache
+   */
+  default void cacheAccessed(String cache, boolean hit) {
+  }
+
+  /**
+   * Called when a document is parsed.
+   * 
+   * <p>
+   * Counting nodes visits every node of the document, so when a listener is registered, documents
+   * parsed with deferred node expansion, the parser's default, have all of their nodes created
+   * before they are returned rather than as they are first read.
+   * 
+   * @param nanos the time taken to parse the document
+   * @param inputSize the number of bytes read, or characters for character sources
+   * @param nodeCount the number of nodes in the document, including the document node and
+   *          excluding attributes
+   */
+  default void documentParsed(long nanos, long inputSize, int nodeCount) {
+  }
+
+  /**
+   * Called when an XPath {@code expression} is compiled.
+   */
+  default void expressionCompiled(String expression, long nanos) {
+  }
+
+  /**
+   * Called when an XPath {@code expression} is evaluated against a document or element.
+   */
+  default void expressionEvaluated(String expression, long nanos) {
+  }
+}
@@ -0,0 +1,299 @@
+package net.jodah.xsylum;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A lock-free {@link XsylumListener} that records parse, compile and evaluation times as
+ * histograms, along with input sizes, node counts and cache hit rates. Evaluation times are also
+ * recorded per expression, for up to {@link #MAX_EXPRESSIONS} distinct expressions, so that slow
+ * expressions can be found.
+ * 
+ * <pre>
+ * XsylumMetrics metrics = new XsylumMetrics();
+ * Xsylum.setListener(metrics);
+ * ...
+ * long p99 = metrics.parseTimes().percentile(0.99);
+ * </pre>
+ * 
+ * @author Jonathan Halterman
+ */
+public final class XsylumMetrics implements XsylumListener {
+  /** The maximum number of distinct expressions whose evaluation times are tracked individually */
+  public static final int MAX_EXPRESSIONS = 1024;
+
+  private final Histogram parseTimes = new Histogram();
+  private final Histogram compileTimes = new Histogram();
+  private final Histogram evaluationTimes = new Histogram();
+  private final LongAdder inputSize = new LongAdder();
+  private final LongAdder nodeCount = new LongAdder();
+  private final ConcurrentMap<String, Histogram> expressionTimes =
+      new ConcurrentHashMap<String, Histogram>();
+  private final ConcurrentMap<String, CacheStats> cacheStats =
+      new ConcurrentHashMap<String, CacheStats>();
+
+  /**
+   * A histogram of non-negative values, such as durations in nanoseconds, that can be recorded
+   * concurrently without locking. Values are counted in logarithmic buckets, with 8 buckets per
+   * power of two, so that percentiles are accurate to within 12.5%.
+   */
+  public static final class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final LongBinaryOperator MAX = new LongBinaryOperator() {
+      @Override
+      public long applyAsLong(long left, long right) {
+        return Math.max(left, right);
+      }
+    };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(MAX, 0);
+
+    Histogram() {
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public long count() {
+      return count.sum();
+    }
+
+    /**
+     * Returns the largest recorded value, else 0 if none have been recorded.
+     */
+    public long max() {
+      return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values, else 0 if none have been recorded.
+     */
+    public double mean() {
+      long count = this.count.sum();
+      return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Returns an upper bound for the value at the {@code percentile}, between 0 and 1, of the
+     * recorded values, else 0 if none have been recorded.
+     * 
+     * @throws IllegalArgumentException if {@code percentile} is not between 0 and 1
+     */
+    public long percentile(double percentile) {
+      if (percentile < 0 || percentile > 1)
+        throw new IllegalArgumentException("percentile must be between 0 and 1");
+
+      long total = 0;
+      long[] snapshot = new long[BUCKETS];
+      for (int i = 0; i < BUCKETS; i++)
+        total += snapshot[i] = counts.get(i);
+      if (total == 0)
+        return 0;
+
+      long rank = Math.max(1, (long) Math.ceil(percentile * total));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += snapshot[i];
+        if (seen >= rank)
+          return Math.min(upperBound(i), max());
+      }
+
+      return max();
+    }
+
+    /**
+     * Records the {@code value}, treating negative values as 0.
+     */
+    public void record(long value) {
+      if (value < 0)
+        value = 0;
+      counts.incrementAndGet(bucketFor(value));
+      count.increment();
+      sum.add(value);
+      max.accumulate(value);
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     */
+    public long sum() {
+      return sum.sum();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Histogram[count=%s, mean=%.1f, p50=%s, p99=%s, max=%s]", count(),
+          mean(), percentile(0.5), percentile(0.99), max());
+    }
+
+    void reset() {
+      for (int i = 0; i < BUCKETS; i++)
+        counts.set(i, 0);
+      count.reset();
+      sum.reset();
+      max.reset();
+    }
+
+    static int bucketFor(long value) {
+      if (value < SUB_BUCKETS)
+        return (int) value;
+      int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+      return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long upperBound(int bucket) {
+      if (bucket < SUB_BUCKETS)
+        return bucket;
+      int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+      long lower = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+      long upper = lower + (1L << shift) - 1;
+      return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+  }
+
+  private static final class CacheStats {
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+  }
+
+  @Override
+  public void cacheAccessed(String cache, boolean hit) {
+    CacheStats stats = cacheStats.get(cache);
+    if (stats == null) {
+      CacheStats newStats = new CacheStats();
+      stats = cacheStats.putIfAbsent(cache, newStats);
+      if (stats == null)
+        stats = newStats;
+    }
+
+    (hit ? stats.hits : stats.misses).increment();
+  }
+
+  /**
+   * Returns the number of lookups served from the {@code cache}.
+   */
+  public long cacheHits(String cache) {
+    CacheStats stats = cacheStats.get(cache);
+    return stats == null ? 0 : stats.hits.sum();
+  }
+
+  /**
+   * Returns the fraction of lookups against the {@code cache} that were hits, else 0 if there have
+   * been no lookups.
+   */
+  public double cacheHitRate(String cache) {
+    long hits = cacheHits(cache);
+    long total = hits + cacheMisses(cache);
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * Returns the number of lookups against the {@code cache} that missed.
+   */
+  public long cacheMisses(String cache) {
+    CacheStats stats = cacheStats.get(cache);
+    return stats == null ? 0 : stats.misses.sum();
+  }
+
+  /**
+   * Returns the expression compile times in nanoseconds.
+   */
+  public Histogram compileTimes() {
+    return compileTimes;
+  }
+
+  @Override
+  public void documentParsed(long nanos, long inputSize, int nodeCount) {
+    parseTimes.record(nanos);
+    this.inputSize.add(inputSize);
+    this.nodeCount.add(nodeCount);
+  }
+
+  /**
+   * Returns the evaluation times in nanoseconds for all expressions.
+   */
+  public Histogram evaluationTimes() {
+    return evaluationTimes;
+  }
+
+  /**
+   * Returns the evaluation times in nanoseconds for the {@code expression}, else null if the
+   * {@code expression} is not tracked.
+   */
+  public Histogram evaluationTimes(String expression) {
+    return expressionTimes.get(expression);
+  }
+
+  /**
+   * Returns an unmodifiable view of the evaluation times in nanoseconds for each tracked
+   * expression.
+   */
+  public Map<String, Histogram> expressionEvaluationTimes() {
+    return Collections.unmodifiableMap(expressionTimes);
+  }
+
+  @Override
+  public void expressionCompiled(String expression, long nanos) {
+    compileTimes.record(nanos);
+  }
+
+  @Override
+  public void expressionEvaluated(String expression, long nanos) {
+    evaluationTimes.record(nanos);
+    Histogram histogram = expressionTimes.get(expression);
+    if (histogram == null && expressionTimes.size() < MAX_EXPRESSIONS) {
+      Histogram newHistogram = new Histogram();
+      histogram = expressionTimes.putIfAbsent(expression, newHistogram);
+      if (histogram == null)
+        histogram = newHistogram;
+    }
+
+    if (histogram != null)
+      histogram.record(nanos);
+  }
+
+  /**
+   * Returns the total size of parsed input, in bytes or characters for character sources.
+   */
+  public long inputSize() {
+    return inputSize.sum();
+  }
+
+  /**
+   * Returns the total number of nodes in parsed documents.
+   */
+  public long nodeCount() {
+    return nodeCount.sum();
+  }
+
+  /**
+   * Returns the document parse times in nanoseconds.
+   */
+  public Histogram parseTimes() {
+    return parseTimes;
+  }
+
+  /**
+   * Resets all recorded metrics. Values recorded concurrently with a reset may be partially lost.
+   */
+  public void reset() {
+    parseTimes.reset();
+    compileTimes.reset();
+    evaluationTimes.reset();
+    inputSize.reset();
+    nodeCount.reset();
+    expressionTimes.clear();
+    cacheStats.clear();
+  }
+}
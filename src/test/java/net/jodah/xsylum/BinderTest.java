@@ -0,0 +1,120 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.Test;
+
+@Test
+public class BinderTest {
+  enum Genre {
+    Computer, Fantasy
+  }
+
+  static class Catalog {
+    @Bind("book")
+    List<Book> books;
+  }
+
+  static class Book {
+    @Bind("@id")
+    String id;
+    @Bind("author")
+    List<String> authors;
+    @Bind
+    String title;
+    @Bind
+    Genre genre;
+    @Bind
+    double price;
+    @Bind("publish_date")
+    String publishDate;
+    @Bind
+    XmlElement link;
+    @Bind
+    String missing = "default";
+  }
+
+  static class Value {
+    @Bind(".")
+    int value;
+    @Bind("@enabled")
+    Boolean enabled;
+    @Bind("@count")
+    long count;
+  }
+
+  static class Untyped {
+    String name;
+    String id;
+  }
+
+  public void shouldBindAnnotatedClass() throws Exception {
+    XmlDocument document = Xsylum.documentFor(BinderTest.class.getResourceAsStream(
+        "document.xml"));
+    Catalog catalog = Xsylum.binder(Catalog.class).bind(document.root());
+    assertEquals(catalog.books.size(), 5);
+
+    Book book = catalog.books.get(1);
+    assertEquals(book.id, "bk102");
+    assertEquals(book.authors, Arrays.asList("Ralls, Kim", "Bar, Foo"));
+    assertEquals(book.title, "Midnight Rain");
+    assertEquals(book.genre, Genre.Fantasy);
+    assertEquals(book.price, 5.95);
+    assertEquals(book.publishDate, "2000-12-16");
+    assertEquals(book.link.value(),
+        "http://www.amazon.com/PowerShell-Deep-Dives-Jeffery-Hicks/dp/1617291315");
+    assertEquals(book.missing, "default");
+    assertEquals(catalog.books.get(0).genre, Genre.Computer);
+    assertSame(Xsylum.binder(Catalog.class), Xsylum.binder(Catalog.class));
+  }
+
+  public void shouldBindValuesAndAttributes() throws Exception {
+    Value value = Xsylum.binder(Value.class).bind(
+        Xsylum.elementFor("<v enabled='yes' count='9000000000'>42</v>"));
+    assertEquals(value.value, 42);
+    assertEquals(value.enabled, Boolean.TRUE);
+    assertEquals(value.count, 9000000000L);
+
+    value = Xsylum.binder(Value.class).bind(Xsylum.elementFor("<v>7</v>"));
+    assertEquals(value.value, 7);
+    assertNull(value.enabled);
+  }
+
+  public void shouldBindWithBuilder() throws Exception {
+    Binder<Untyped> binder = Binder.builder(Untyped.class)
+        .bind("name", "title")
+        .bind("id", "@id")
+        .build();
+    Untyped result = binder.bind(Xsylum.documentFor(BinderTest.class.getResourceAsStream(
+        "document.xml")).get("book"));
+    assertEquals(result.name, "XML Developer's Guide");
+    assertEquals(result.id, "bk101");
+  }
+
+  public void shouldStreamBoundRecords() throws Exception {
+    try (Stream<Book> books = Xsylum.binder(Book.class).stream(
+        BinderTest.class.getResourceAsStream("document.xml"), "/catalog/book")) {
+      List<Book> result = books.collect(Collectors.<Book>toList());
+      assertEquals(result.size(), 5);
+      assertEquals(result.get(4).title, "The Sundered Grail");
+      assertEquals(result.get(1).authors.size(), 2);
+    }
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldFailToBindInvalidValue() throws Exception {
+    Xsylum.binder(Value.class).bind(Xsylum.elementFor("<v>x</v>"));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shouldRejectUnsupportedPath() {
+    Binder.builder(Untyped.class).bind("name", "a/b").build();
+  }
+}
@@ -0,0 +1,88 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Node;
+
+@Test
+public class CompactDocumentTest extends XmlDocumentTest {
+  XmlDocument domDocument;
+
+  @Override
+  @BeforeClass
+  protected void beforeClass() throws Exception {
+    document = Xsylum.compactDocumentFor(
+        CompactDocumentTest.class.getResourceAsStream("document.xml"));
+    domDocument = Xsylum.documentFor(CompactDocumentTest.class.getResourceAsStream("document.xml"));
+  }
+
+  @Override
+  XmlDocument documentFor(String resource) throws Exception {
+    return Xsylum.compactDocumentFor(CompactDocumentTest.class.getResourceAsStream(resource));
+  }
+
+  public void shouldSerializeLikeDom() {
+    assertEquals(document.toString(), domDocument.toString());
+  }
+
+  public void shouldReturnCanonicalNodes() {
+    Node root = document.document().getDocumentElement();
+    assertSame(root.getFirstChild().getParentNode(), root);
+    assertSame(root.getParentNode(), document.document());
+    assertSame(root.getChildNodes().item(1), root.getFirstChild().getNextSibling());
+  }
+
+  public void shouldReleaseViewsOnceUnused() throws Exception {
+    XmlDocument document = Xsylum.compactDocumentFor("<a><b id='1'>x</b></a>");
+    Node b = document.document().getDocumentElement().getFirstChild();
+    assertSame(b.getAttributes().item(0).getParentNode(), null);
+    assertSame(((Attr) b.getAttributes().item(0)).getOwnerElement(), b);
+    assertSame(b.getFirstChild().getParentNode(), b);
+
+    WeakReference<Node> reference = new WeakReference<Node>(b);
+    b = null;
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull(reference.get());
+    assertEquals(document.value("/a/b/@id"), "1");
+  }
+
+  public void shouldFindFromElementContext() throws Exception {
+    XmlElement book = document.find("/catalog/book[2]");
+    assertEquals(book.values("./author/text()"), Arrays.asList("Ralls, Kim", "Bar, Foo"));
+    assertEquals(book.value("@id"), "bk102");
+    assertEquals(book.find("..").name(), "catalog");
+    assertEquals(document.values("//book[price > 6]/@id"), Arrays.asList("bk101"));
+  }
+
+  public void shouldMatchDomStructure() {
+    assertEquals(document.getAll("*").size(), domDocument.getAll("*").size());
+    assertEquals(document.root().children().get(1).element().getChildNodes().getLength(),
+        domDocument.root().children().get(1).element().getChildNodes().getLength());
+    assertEquals(document.root().get("book").element().getAttribute("missing"), "");
+    assertNull(document.get("missing"));
+  }
+
+  public void shouldMergeTextAndKeepCData() throws Exception {
+    XmlElement element = Xsylum.compactDocumentFor("<a>x &amp; y<![CDATA[<z>]]>!</a>").root();
+    assertEquals(element.element().getChildNodes().getLength(), 3);
+    assertEquals(element.value(), "x & y<z>!");
+    assertEquals(element.element().getTextContent(), "x & y<z>!");
+  }
+
+  @Test(expectedExceptions = DOMException.class)
+  public void shouldBeReadOnly() {
+    document.root().element().setAttribute("a", "b");
+  }
+}
@@ -0,0 +1,19 @@
+package net.jodah.xsylum;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test
+public class CompactElementTest extends XmlElementTest {
+  @Override
+  @BeforeClass
+  protected void beforeClass() throws Exception {
+    element = Xsylum.compactDocumentFor(
+        CompactElementTest.class.getResourceAsStream("document.xml")).root();
+  }
+
+  @Override
+  XmlElement elementFor(String xml) throws Exception {
+    return Xsylum.compactDocumentFor(xml).root();
+  }
+}
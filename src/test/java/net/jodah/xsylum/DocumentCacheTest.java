@@ -0,0 +1,171 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.jodah.xsylum.DocumentCache.Validation;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class DocumentCacheTest {
+  Path dir;
+
+  @BeforeMethod
+  protected void beforeMethod() throws Exception {
+    dir = Files.createTempDirectory("xsylum");
+  }
+
+  @AfterMethod
+  protected void afterMethod() throws Exception {
+    for (Path path : Files.newDirectoryStream(dir))
+      Files.delete(path);
+    Files.delete(dir);
+  }
+
+  public void shouldReturnCachedDocumentUntilFileChanges() throws Exception {
+    Path path = write("a.xml", "<a>1</a>");
+    DocumentCache cache = DocumentCache.builder().build();
+    XmlDocument document = cache.get(path);
+    assertSame(cache.get(path), document);
+    assertSame(cache.get(path.toFile()), document);
+    assertEquals(cache.hitCount(), 2);
+    assertEquals(cache.missCount(), 1);
+
+    write("a.xml", "<a>22</a>");
+    XmlDocument changed = cache.get(path);
+    assertNotSame(changed, document);
+    assertEquals(changed.root().value(), "22");
+    assertEquals(cache.loadCount(), 2);
+    assertEquals(cache.size(), 1);
+    assertEquals(cache.weight(), Files.size(path));
+  }
+
+  public void shouldValidateByContentHash() throws Exception {
+    Path path = write("a.xml", "<a>1</a>");
+    FileTime modifiedTime = Files.getLastModifiedTime(path);
+    DocumentCache cache = DocumentCache.builder().validation(Validation.CONTENT_HASH).compact()
+        .build();
+    XmlDocument document = cache.get(path);
+
+    // Same size and modified time, different content
+    write("a.xml", "<a>2</a>");
+    Files.setLastModifiedTime(path, modifiedTime);
+    XmlDocument changed = cache.get(path);
+    assertNotSame(changed, document);
+    assertEquals(changed.root().value(), "2");
+
+    // Different modified time, same content
+    Files.setLastModifiedTime(path, FileTime.fromMillis(modifiedTime.toMillis() + 60000));
+    assertSame(cache.get(path), changed);
+  }
+
+  public void shouldEvictLeastRecentlyUsedBySize() throws Exception {
+    Path a = write("a.xml", "<a/>");
+    Path b = write("b.xml", "<b/>");
+    Path c = write("c.xml", "<c/>");
+    DocumentCache cache = DocumentCache.builder().maximumSize(2).build();
+    XmlDocument documentA = cache.get(a);
+    cache.get(b);
+    assertSame(cache.get(a), documentA);
+    cache.get(c);
+
+    assertEquals(cache.size(), 2);
+    assertEquals(cache.evictionCount(), 1);
+    assertSame(cache.get(a), documentA);
+    cache.get(b);
+    assertEquals(cache.loadCount(), 4);
+  }
+
+  public void shouldEvictByWeight() throws Exception {
+    Path a = write("a.xml", "<a>aaaaaaaaaa</a>");
+    Path b = write("b.xml", "<b>bbbbbbbbbb</b>");
+    DocumentCache cache = DocumentCache.builder().maximumWeight(Files.size(a) + 5).build();
+    cache.get(a);
+    cache.get(b);
+    assertEquals(cache.size(), 1);
+    assertEquals(cache.weight(), Files.size(b));
+    assertEquals(cache.evictionCount(), 1);
+  }
+
+  public void shouldInvalidate() throws Exception {
+    Path a = write("a.xml", "<a/>");
+    DocumentCache cache = DocumentCache.builder().build();
+    XmlDocument document = cache.get(a);
+    cache.invalidate(a);
+    assertEquals(cache.size(), 0);
+    assertEquals(cache.weight(), 0);
+    assertNotSame(cache.get(a), document);
+    cache.invalidateAll();
+    assertEquals(cache.size(), 0);
+  }
+
+  public void shouldLoadOnceForConcurrentLookups() throws Exception {
+    StringBuilder xml = new StringBuilder("<catalog>");
+    for (int i = 0; i < 20000; i++)
+      xml.append("<book id='").append(i).append("'/>");
+    final Path path = write("catalog.xml", xml.append("</catalog>").toString());
+    final DocumentCache cache = DocumentCache.builder().compact().build();
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    try {
+      List<Future<XmlDocument>> futures = new ArrayList<Future<XmlDocument>>();
+      for (int i = 0; i < 8; i++)
+        futures.add(executor.submit(new Callable<XmlDocument>() {
+          @Override
+          public XmlDocument call() throws Exception {
+            start.await();
+            return cache.get(path);
+          }
+        }));
+
+      start.countDown();
+      XmlDocument document = futures.get(0).get();
+      for (Future<XmlDocument> future : futures)
+        assertSame(future.get(), document);
+      assertEquals(cache.loadCount(), 1);
+      assertEquals(cache.hitCount() + cache.missCount(), 8);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldFailForMissingFile() throws Exception {
+    DocumentCache.builder().build().get(dir.resolve("missing.xml"));
+  }
+
+  public void shouldNotCacheFailures() throws Exception {
+    Path path = write("a.xml", "<a>");
+    DocumentCache cache = DocumentCache.builder().build();
+    try {
+      cache.get(path);
+    } catch (XsylumException expected) {
+    }
+
+    write("a.xml", "<a/>");
+    assertTrue(cache.get(path) != null);
+    assertEquals(cache.size(), 1);
+  }
+
+  private Path write(String name, String xml) throws Exception {
+    return Files.write(dir.resolve(name), xml.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,57 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+@Test
+public class NumbersTest {
+  static final List<String> INPUTS = Arrays.asList("0", "-0", "+0", "7", "-7", "+42", "0042",
+      "2147483647", "-2147483648", "2147483648", "-2147483649", "9223372036854775807",
+      "-9223372036854775808", "9223372036854775808", "99999999999999999999", "", "-", "+", "1a",
+      " 1", "1 ", "1.0", "--1", "\u0661\u0662");
+
+  public void shouldParseIntLikeInteger() {
+    for (String input : INPUTS) {
+      Integer expected;
+      try {
+        expected = Integer.parseInt(input);
+      } catch (NumberFormatException e) {
+        expected = null;
+      }
+
+      try {
+        int actual = (int) Numbers.parseLong(input, 0, input.length(), Integer.MIN_VALUE,
+            Integer.MAX_VALUE);
+        assertEquals(Integer.valueOf(actual), expected, input);
+      } catch (NumberFormatException e) {
+        if (expected != null)
+          fail("Failed to parse " + input);
+      }
+    }
+  }
+
+  public void shouldParseLongLikeLong() {
+    for (String input : INPUTS) {
+      Long expected;
+      try {
+        expected = Long.parseLong(input);
+      } catch (NumberFormatException e) {
+        expected = null;
+      }
+
+      try {
+        long actual = Numbers.parseLong("x" + input + "x", 1, input.length() + 1, Long.MIN_VALUE,
+            Long.MAX_VALUE);
+        assertEquals(Long.valueOf(actual), expected, input);
+      } catch (NumberFormatException e) {
+        if (expected != null)
+          fail("Failed to parse " + input);
+      }
+    }
+  }
+}
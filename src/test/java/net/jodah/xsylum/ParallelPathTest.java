@@ -0,0 +1,126 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Verifies that expressions are evaluated in parallel with the same results as the XPath engine.
+ */
+@Test
+public class ParallelPathTest {
+  static final String[] EXPRESSIONS = { "//t[amount > 40]", "//t", "//*", "//a//b", "//a/b[1]",
+      "//group[@id = 'g2']/t/amount", "//t[@kind]", "//@kind", "//t[amount > 10]/@kind",
+      "//t[not(@kind)]/amount/text()", "//t[contains(note, 'x')]/note//text()", "//group[t]/@id",
+      "//b[.//c]", "//a//b/c[2]", "//a/b[0]", "//t[amount = 5 or amount = 55]", "//c" };
+  static final String[] SEQUENTIAL = { "/root//t", "//t[1]", "//t[last()]", "//t[amount]/..",
+      "//t[position() > 2]", "//t[../@id = 'g1']", "//t[following-sibling::t]", "//t[//a]",
+      "//t | //a", "//text()", "//t[amount + 1]", "count(//t)", "//t[id('x')]", "//t/../a",
+      "//t[amount and /root]" };
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+
+  @AfterClass
+  protected void afterClass() {
+    pool.shutdown();
+  }
+
+  static String xml() {
+    StringBuilder sb = new StringBuilder("<root>");
+    for (int g = 0; g < 6; g++) {
+      sb.append("<group id='g").append(g).append("'>");
+      for (int i = 0; i < 10 * g; i++) {
+        sb.append("<t").append(i % 3 == 0 ? " kind='k" + i + "'" : "").append("><amount>")
+            .append(g * 10 + i).append("</amount>");
+        if (i % 4 == 0)
+          sb.append("<note>x<![CDATA[y]]><c/>z</note>");
+        sb.append("</t>");
+      }
+      sb.append("<a><b><c/><c/></b><a><b/><b><c/></b></a></a></group>");
+    }
+    return sb.append("<a><b/></a></root>").toString();
+  }
+
+  public void shouldSelectLikeXPath() throws Exception {
+    XmlDocument document = Xsylum.compactDocumentFor(xml());
+    CompactDocument compact = (CompactDocument) document.document();
+    for (int minTaskNodes : new int[] { 0, 20, 100, 100000 })
+      for (String expression : EXPRESSIONS) {
+        XmlExpression compiled = XPathCache.get(expression);
+        List<Node> nodes = ParallelPath.select(compact, compiled, pool, 0, minTaskNodes);
+        if (minTaskNodes < 100000) {
+          assertNotNull(nodes, expression);
+          assertEquals(nodes, nodes(document.nodeSet(compiled)), expression);
+        } else
+          assertNull(nodes, expression);
+      }
+  }
+
+  public void shouldNotSplitOtherExpressions() {
+    for (String expression : EXPRESSIONS)
+      assertNotNull(ParallelPath.descendantSteps(expression), expression);
+    for (String expression : SEQUENTIAL)
+      assertNull(ParallelPath.descendantSteps(expression), expression);
+  }
+
+  public void shouldSplitLargestSubtreesFirst() throws Exception {
+    CompactDocument document = (CompactDocument) Xsylum.compactDocumentFor(
+        "<root><a><b/><b/><b/></a><c/><d><e/></d></root>").document();
+    ParallelPath.Plan plan = plan(document, "//x");
+    // The root is replaced by its children, then a, the largest, by its b children
+    int[] tasks = ParallelPath.split(plan, 5, 0);
+    assertEquals(tasks.length, 7);
+    assertEquals(document.names[document.nameIds[-tasks[5] - 1]], "root");
+    assertEquals(document.names[document.nameIds[-tasks[6] - 1]], "a");
+    assertNull(ParallelPath.split(plan, 5, 100));
+  }
+
+  public void shouldNotSplitElementsMatchedByDeepSteps() throws Exception {
+    XmlDocument document = Xsylum.compactDocumentFor(xml());
+    CompactDocument compact = (CompactDocument) document.document();
+    // Groups, which the first step may match, are kept whole
+    int groups = 0;
+    for (int task : ParallelPath.split(plan(compact, "//group//c"), 100, 0))
+      if (task >= 0 && compact.names[compact.nameIds[task]].equals("group"))
+        groups++;
+      else if (task < 0)
+        assertNotEquals(compact.names[compact.nameIds[-task - 1]], "group");
+    assertEquals(groups, 6);
+
+    for (String expression : new String[] { "//root//b", "//*//c", "//root/group", "//*[.//c]" })
+      assertNull(ParallelPath.select(compact, XPathCache.get(expression), pool, 0, 0), expression);
+    assertNotNull(ParallelPath.select(compact, XPathCache.get("//*[@id]"), pool, 0, 0));
+  }
+
+  public void shouldSliceSubtrees() throws Exception {
+    XmlDocument document = Xsylum.compactDocumentFor(xml());
+    CompactDocument compact = (CompactDocument) document.document();
+    XmlElement group = document.find("//group[@id = 'g3']");
+    XmlDocument slice = new XmlDocument(compact.slice(((CompactNode) group.element()).index));
+    assertEquals(slice.toString(), group.toString());
+    assertEquals(slice.values("//t/@kind"), document.values("//group[@id = 'g3']//t/@kind"));
+  }
+
+  private static ParallelPath.Plan plan(CompactDocument document, String expression)
+      throws Exception {
+    return new ParallelPath.Plan(document, XPathCache.get(expression),
+        ParallelPath.descendantSteps(expression));
+  }
+
+  private static List<Node> nodes(NodeList nodeList) {
+    List<Node> nodes = new ArrayList<Node>();
+    for (int i = 0; i < nodeList.getLength(); i++)
+      nodes.add(nodeList.item(i));
+    return nodes;
+  }
+}
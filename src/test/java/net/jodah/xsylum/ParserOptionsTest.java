@@ -0,0 +1,147 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.testng.annotations.Test;
+import org.w3c.dom.Node;
+
+@Test
+public class ParserOptionsTest {
+  static final String XML = "<a>\n  <b> x </b>\n  <!-- c -->\n  <c>  </c>\n"
+      + "  <d>x<![CDATA[y]]>z</d>\n</a>";
+
+  public void shouldRetainEverythingByDefault() throws Exception {
+    XmlDocument document = Xsylum.documentFor(XML, ParserOptions.defaults());
+    assertEquals(document.toString(), Xsylum.documentFor(XML).toString());
+    assertEquals(document.root().element().getChildNodes().getLength(), 9);
+    assertSame(Xsylum.DEFAULT_POOL, ParserOptions.defaults().pool());
+  }
+
+  public void shouldDropWhitespace() throws Exception {
+    XmlElement root = Xsylum.elementFor(XML, ParserOptions.builder().dropWhitespace().build());
+    assertEquals(root.element().getChildNodes().getLength(), 4);
+    assertEquals(root.get("b").value(), " x ");
+    assertEquals(root.get("c").value(), "  ");
+  }
+
+  public void shouldDropComments() throws Exception {
+    XmlElement root = Xsylum.elementFor(XML, ParserOptions.builder()
+        .dropWhitespace()
+        .dropComments()
+        .build());
+    assertEquals(root.element().getChildNodes().getLength(), 3);
+  }
+
+  public void shouldCoalesceCData() throws Exception {
+    XmlElement d = Xsylum.elementFor(XML, ParserOptions.builder().coalescing().build()).get("d");
+    Node text = d.element().getFirstChild();
+    assertEquals(text.getNodeType(), Node.TEXT_NODE);
+    assertNull(text.getNextSibling());
+    assertEquals(text.getNodeValue(), "xyz");
+  }
+
+  public void shouldBeNamespaceAware() throws Exception {
+    String xml = "<p:a xmlns:p='urn:p'/>";
+    assertNull(Xsylum.elementFor(xml).element().getNamespaceURI());
+    assertEquals(Xsylum.elementFor(xml, ParserOptions.builder().namespaceAware(true).build())
+        .element()
+        .getNamespaceURI(), "urn:p");
+  }
+
+  public void shouldNotDeferNodes() throws Exception {
+    XmlDocument document = Xsylum.documentFor(XML, ParserOptions.builder()
+        .deferredDom(false)
+        .build());
+    assertFalse(document.document().getClass().getSimpleName().startsWith("Deferred"));
+    assertEquals(document.toString(), Xsylum.documentFor(XML).toString());
+  }
+
+  public void shouldProduceFrozenDocuments() throws Exception {
+    ParserOptions options = ParserOptions.readMostly().toBuilder().frozen().build();
+    XmlDocument document = Xsylum.documentFor(XML.getBytes(StandardCharsets.UTF_8), options);
+    assertTrue(document.isFrozen());
+    assertEquals(document.root().children().size(), 3);
+    assertEquals(document.value("/a/d/text()"), "xyz");
+    assertTrue(Xsylum.elementFor(XML, options).element() instanceof CompactElement);
+  }
+
+  public void shouldDeduplicateValues() throws Exception {
+    ParserOptions options = ParserOptions.builder().deduplicate(new StringTable(64, 16)).build();
+    String xml = "<a type='book'/>";
+    assertSame(Xsylum.elementFor(xml, options).attribute("type"), Xsylum.elementFor(xml, options)
+        .attribute("type"));
+  }
+
+  public void shouldApplyReadMostlyPreset() throws Exception {
+    XmlElement root = Xsylum.elementFor(XML, ParserOptions.readMostly());
+    assertEquals(root.element().getChildNodes().getLength(), 3);
+    assertEquals(root.get("d").element().getChildNodes().getLength(), 1);
+    assertSame(ParserOptions.readMostly().pool().stringTable(), StringTable.shared());
+  }
+
+  public void shouldCopyOptionsToBuilder() {
+    ParserOptions options = ParserOptions.builder()
+        .dropWhitespace()
+        .maxDocumentSize(100)
+        .namespaceAware(true)
+        .build();
+    assertEquals(options.toBuilder().build().toString(), options.toString());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shouldRejectFrozenNamespaceAwareDocuments() {
+    ParserOptions.builder().namespaceAware(true).frozen().build();
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldLimitDocumentSize() throws Exception {
+    Xsylum.documentFor(XML.getBytes(StandardCharsets.UTF_8), ParserOptions.builder()
+        .maxDocumentSize(10)
+        .build());
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldLimitStringDocumentSize() throws Exception {
+    Xsylum.documentFor(XML, ParserOptions.builder().maxDocumentSize(10).build());
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldLimitElementDepth() throws Exception {
+    Xsylum.documentFor("<a><b><c/></b></a>", ParserOptions.builder().maxElementDepth(2).build());
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldLimitEntityExpansions() throws Exception {
+    Xsylum.documentFor("<!DOCTYPE a [<!ENTITY e 'x'>]><a>&e;&e;&e;&e;</a>", ParserOptions.builder()
+        .maxEntityExpansions(2)
+        .build());
+  }
+
+  public void shouldKeepEntityReferences() throws Exception {
+    String xml = "<!DOCTYPE r [<!ENTITY e 'EE'>]><r><a>x&e;y</a></r>";
+    XmlDocument document = Xsylum.documentFor(xml, ParserOptions.builder()
+        .expandEntityReferences(false)
+        .build());
+    XmlElement a = document.find("/r/a");
+    assertEquals(a.element().getChildNodes().item(1).getNodeType(), Node.ENTITY_REFERENCE_NODE);
+    assertEquals(a.toXml(), "<a>x&e;y</a>");
+
+    // Simple paths are evaluated by the XPath engine, which reads through entity references
+    assertEquals(document.values("/r/a/text()"), document.values("(/r/a/text())"));
+    assertEquals(document.value("/r/a/text()"), document.value("(/r/a/text())"));
+    assertEquals(document.query().add("text", "/r/a/text()").evaluate().get("text"),
+        document.values("(/r/a/text())"));
+    assertEquals(Xsylum.documentFor(xml).find("/r/a").toXml(), "<a>xEEy</a>");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shouldRejectInvalidLimit() {
+    ParserOptions.builder().maxDocumentSize(0);
+  }
+}
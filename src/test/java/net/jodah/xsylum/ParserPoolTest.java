@@ -0,0 +1,46 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.testng.annotations.Test;
+
+@Test
+public class ParserPoolTest {
+  public void shouldReuseBuilders() throws Exception {
+    ParserPool pool = new ParserPool(DocumentBuilderFactory.newInstance());
+    assertEquals(pool.idleCount(), 0);
+
+    Xsylum.documentFor("<a><b>1</b></a>", pool);
+    assertEquals(pool.idleCount(), 1);
+    XmlDocument document = Xsylum.documentFor("<a><b>2</b></a>", pool);
+    assertEquals(pool.idleCount(), 1);
+    assertEquals(document.root().get("b").value(), "2");
+  }
+
+  public void shouldReturnBuilderAfterFailedParse() throws Exception {
+    ParserPool pool = new ParserPool(DocumentBuilderFactory.newInstance());
+    try {
+      Xsylum.documentFor("<a>", pool);
+    } catch (XsylumException expected) {
+    }
+
+    assertEquals(pool.idleCount(), 1);
+    assertEquals(Xsylum.elementFor("<a>b</a>", pool).value(), "b");
+  }
+
+  public void shouldNotRetainMoreThanMaxIdle() throws Exception {
+    ParserPool pool = new ParserPool(DocumentBuilderFactory.newInstance(), 0);
+    Xsylum.documentFor("<a/>", pool);
+    assertEquals(pool.idleCount(), 0);
+  }
+
+  public void shouldUseConfiguredFactory() throws Exception {
+    DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    XmlElement element = Xsylum.elementFor("<x:a xmlns:x=\"urn:x\"/>", new ParserPool(factory));
+    assertEquals(element.element().getLocalName(), "a");
+    assertEquals(element.element().getNamespaceURI(), "urn:x");
+  }
+}
@@ -0,0 +1,99 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.testng.annotations.Test;
+
+@Test
+public class PathExtractorTest {
+  public void shouldMatchDocumentValues() throws Exception {
+    XmlDocument document = Xsylum.documentFor(XmlQueryTest.XML);
+    Map<String, String> expected = new LinkedHashMap<String, String>();
+    for (String path : XmlQueryTest.EXPRESSIONS)
+      if ((Boolean) XPathFactory.newInstance().newXPath().evaluate("boolean(" + path + ")",
+          document.source, XPathConstants.BOOLEAN))
+        expected.put(path, document.value(path));
+
+    String[] paths = XmlQueryTest.EXPRESSIONS.toArray(new String[0]);
+    Map<String, String> result = Xsylum.extract(streamFor(XmlQueryTest.XML), paths);
+    assertEquals(result, expected);
+    assertEquals(new ArrayList<String>(result.keySet()),
+        new ArrayList<String>(expected.keySet()));
+
+    for (String path : paths) {
+      Map<String, String> single = Xsylum.extract(streamFor(XmlQueryTest.XML), path);
+      assertEquals(single.get(path), expected.get(path), path);
+    }
+  }
+
+  public void shouldMatchSampleDocumentValues() throws Exception {
+    XmlDocument document = Xsylum.documentFor(PathExtractorTest.class.getResourceAsStream(
+        "document.xml"));
+    String[] paths = { "/catalog/book[2]/author[2]/text()", "//book/@id", "//link/text()",
+        "/catalog/book[3]", "//price/text()" };
+    try (InputStream in = PathExtractorTest.class.getResourceAsStream("document.xml")) {
+      Map<String, String> result = Xsylum.extract(in, paths);
+      for (String path : paths)
+        assertEquals(result.get(path), document.value(path), path);
+    }
+  }
+
+  public void shouldStopReadingOnceResolved() throws Exception {
+    String header = "<catalog id='c'><book id='1'><title>First</title></book>";
+    InputStream in = new SequenceInputStream(streamFor(header), new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("Read past the resolved paths");
+      }
+    });
+
+    Map<String, String> result = Xsylum.extract(in, "/catalog/@id", "/catalog/book[1]/title",
+        "//book/@id");
+    assertEquals(result.get("/catalog/@id"), "c");
+    assertEquals(result.get("/catalog/book[1]/title"), "First");
+    assertEquals(result.get("//book/@id"), "1");
+  }
+
+  public void shouldStopReadingOnceUnmatchable() throws Exception {
+    String header = "<catalog><info><name>n</name></info><book/></catalog>";
+    InputStream in = new SequenceInputStream(streamFor(header), streamFor("<trailing"));
+
+    Map<String, String> result = Xsylum.extract(in, "/catalog/info/name/text()",
+        "/catalog/info/missing", "/other/name");
+    assertEquals(result.get("/catalog/info/name/text()"), "n");
+    assertFalse(result.containsKey("/catalog/info/missing"));
+    assertFalse(result.containsKey("/other/name"));
+  }
+
+  public void shouldReturnEmptyResultForNoMatches() throws Exception {
+    assertTrue(Xsylum.extract(streamFor("<a><b/></a>"), "//c", "/a/@id", "b/text()").isEmpty());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shouldRejectUnsupportedPaths() throws Exception {
+    Xsylum.extract(streamFor("<a/>"), "//a[@id='1']");
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldFailForMalformedInput() throws Exception {
+    Xsylum.extract(streamFor("<a><b></a>"), "//c");
+  }
+
+  private static InputStream streamFor(String xml) {
+    return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,84 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.testng.annotations.Test;
+
+@Test
+public class RecordIteratorTest {
+  public void shouldStreamRecords() throws Exception {
+    try (Stream<XmlElement> books = Xsylum.stream(
+        RecordIteratorTest.class.getResourceAsStream("document.xml"), "/catalog/book")) {
+      List<XmlElement> result = books.collect(Collectors.<XmlElement>toList());
+      assertEquals(result.size(), 5);
+      assertEquals(result.get(0).attribute("id"), "bk101");
+      assertEquals(result.get(0).get("author").value(), "Gambardella, Matthew");
+      assertEquals(result.get(0).get("price").valueAsDouble(), 44.95);
+      assertEquals(result.get(1).getAll("author").size(), 2);
+      assertEquals(result.get(1).get("link").value(),
+          "http://www.amazon.com/PowerShell-Deep-Dives-Jeffery-Hicks/dp/1617291315");
+      assertEquals(result.get(4).value("./title/text()"), "The Sundered Grail");
+    }
+  }
+
+  public void shouldStreamDescendantRecords() throws Exception {
+    try (Stream<XmlElement> authors = Xsylum.stream(
+        RecordIteratorTest.class.getResourceAsStream("document.xml"), "//author")) {
+      assertEquals(authors.map(XmlElement::value).collect(Collectors.<String>toList()),
+          Arrays.asList("Gambardella, Matthew", "Ralls, Kim", "Bar, Foo", "Corets, Eva",
+              "Corets, Eva", "Corets, Eva"));
+    }
+  }
+
+  public void shouldOnlyMatchRecordsAtPath() throws Exception {
+    String xml = "<a><b>1</b><c><b>2</b></c><b>3<b>4</b></b></a>";
+    try (Stream<XmlElement> records = Xsylum.stream(
+        new ByteArrayInputStream(xml.getBytes()), "/a/b")) {
+      assertEquals(records.map(XmlElement::toXml).collect(Collectors.<String>toList()),
+          Arrays.asList("<b>1</b>", "<b>3<b>4</b></b>"));
+    }
+  }
+
+  public void shouldNotStreamNestedDescendantRecordsSeparately() throws Exception {
+    String xml = "<a><b>1<b>2</b></b><c><b>3</b></c></a>";
+    try (Stream<XmlElement> records = Xsylum.stream(
+        new ByteArrayInputStream(xml.getBytes()), "//b")) {
+      assertEquals(records.map(XmlElement::toXml).collect(Collectors.<String>toList()),
+          Arrays.asList("<b>1<b>2</b></b>", "<b>3</b>"));
+    }
+  }
+
+  public void shouldMergeTextAndKeepCData() throws Exception {
+    String xml = "<a><b>x &amp; y<![CDATA[<z>]]></b></a>";
+    try (Stream<XmlElement> records = Xsylum.stream(
+        new ByteArrayInputStream(xml.getBytes()), "/a/*")) {
+      XmlElement b = records.findFirst().get();
+      assertEquals(b.element().getChildNodes().getLength(), 2);
+      assertEquals(b.value(), "x & y<z>");
+    }
+  }
+
+  public void shouldReturnNoRecordsForUnmatchedPath() throws Exception {
+    Iterator<XmlElement> records = Xsylum.stream(
+        RecordIteratorTest.class.getResourceAsStream("document.xml"), "/book").iterator();
+    assertFalse(records.hasNext());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shouldRejectUnsupportedPath() throws Exception {
+    Xsylum.stream(new ByteArrayInputStream("<a/>".getBytes()), "/a[1]");
+  }
+
+  @Test(expectedExceptions = UncheckedXsylumException.class)
+  public void shouldThrowUncheckedForMalformedRecords() throws Exception {
+    Xsylum.stream(new ByteArrayInputStream("<a><b></a>".getBytes()), "/a/b").count();
+  }
+}
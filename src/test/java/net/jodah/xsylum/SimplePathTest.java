@@ -0,0 +1,96 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.testng.annotations.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Verifies that simple paths are evaluated with the same results as the XPath engine.
+ */
+@Test
+public class SimplePathTest {
+  static final List<String> EXPRESSIONS = new ArrayList<String>(XmlQueryTest.EXPRESSIONS);
+  static {
+    EXPRESSIONS.addAll(Arrays.asList("/root/a", "//a", "//b", "//b[2]", "/root/*", "*", "a[1]",
+        "a/c", "//c", "/root/a[1]/text()", "/root/d/text()", "/root/d", "/root/e", "//a/*",
+        "/root/a[0]", "//a/b[0]", "//b[0]", "*[0]"));
+  }
+
+  public void shouldEvaluateDocumentsLikeXPath() throws Exception {
+    assertMatchesXPath(Xsylum.documentFor(XmlQueryTest.XML));
+    assertMatchesXPath(Xsylum.compactDocumentFor(XmlQueryTest.XML));
+    assertMatchesXPath(Xsylum.documentFor(XmlQueryTest.class.getResourceAsStream(
+        "document.xml")), "/catalog/book/author/text()", "//book/@id", "//author",
+        "/catalog/book[2]/author[2]", "//book[3]/title/text()", "./catalog/book/link/text()");
+  }
+
+  public void shouldEvaluateElementsLikeXPath() throws Exception {
+    XmlDocument document = Xsylum.documentFor(XmlQueryTest.XML);
+    for (XmlElement child : document.root().children())
+      assertMatchesXPath(child);
+    assertMatchesXPath(Xsylum.compactDocumentFor(XmlQueryTest.XML).root().get("a"));
+  }
+
+  public void shouldMatchPrefixedNamesLikeXPath() throws Exception {
+    String xml = "<root><a/><p:a xmlns:p='u'/><x><a/><p:a/><q:b/></x><![CDATA[c]]></root>";
+    String[] expressions = { "//a", ".//a", "/root//a", "//x//a", "root//a", "//a[1]", "//b",
+        "/root/x//b", ".//b", "//*", "/root/a", "root/x/a", "/root/x/b", "root/text()",
+        "//root/text()", "//@*" };
+    assertMatchesXPath(Xsylum.documentFor(xml), expressions);
+    assertMatchesXPath(Xsylum.compactDocumentFor(xml), expressions);
+    assertMatchesXPath(Xsylum.documentFor(xml).root().get("x"), expressions);
+  }
+
+  private static void assertMatchesXPath(XmlSearchable<?> searchable) throws Exception {
+    assertMatchesXPath(searchable, EXPRESSIONS.toArray(new String[EXPRESSIONS.size()]));
+  }
+
+  private static void assertMatchesXPath(XmlSearchable<?> searchable, String... expressions)
+      throws Exception {
+    XPath xpath = XPathFactory.newInstance().newXPath();
+    for (String expression : expressions) {
+      XmlExpression compiled = XmlSearchable.compile(expression);
+      assertNotNull(compiled.path, expression);
+
+      assertEquals(searchable.value(compiled), xpath.evaluate(expression, searchable.source),
+          expression);
+      assertEquals(searchable.values(compiled), XmlQueryTest.xpathValues(searchable, expression),
+          expression);
+
+      NodeList nodeList = (NodeList) xpath.evaluate(expression, searchable.source,
+          XPathConstants.NODESET);
+      List<Node> expected = new ArrayList<Node>();
+      for (int i = 0; i < nodeList.getLength(); i++)
+        if (nodeList.item(i).getNodeType() == Node.ELEMENT_NODE)
+          expected.add(nodeList.item(i));
+      List<XmlElement> found = searchable.findAll(compiled);
+      assertEquals(found.size(), expected.size(), expression);
+      for (int i = 0; i < found.size(); i++)
+        assertSame(found.get(i).element(), expected.get(i), expression);
+      List<XmlElement> streamed = searchable.streamFind(compiled).collect(
+          Collectors.<XmlElement>toList());
+      assertEquals(streamed.size(), expected.size(), expression);
+      for (int i = 0; i < streamed.size(); i++)
+        assertSame(streamed.get(i).element(), expected.get(i), expression);
+
+      Node first = (Node) xpath.evaluate(expression, searchable.source, XPathConstants.NODE);
+      XmlElement element = searchable.find(compiled);
+      assertSame(element == null ? null : element.element(),
+          first instanceof Element ? first : null, expression);
+    }
+  }
+}
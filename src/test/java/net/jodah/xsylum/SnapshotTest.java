@@ -0,0 +1,134 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class SnapshotTest {
+  Path dir;
+  Path source;
+  Path snapshot;
+
+  @BeforeMethod
+  protected void beforeMethod() throws Exception {
+    dir = Files.createTempDirectory("xsylum");
+    source = dir.resolve("document.xml");
+    snapshot = dir.resolve("document.snapshot");
+    try (InputStream in = SnapshotTest.class.getResourceAsStream("document.xml")) {
+      Files.copy(in, source, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  @AfterMethod
+  protected void afterMethod() throws Exception {
+    for (Path path : Files.newDirectoryStream(dir))
+      Files.delete(path);
+    Files.delete(dir);
+  }
+
+  public void shouldRoundTripCompactDocument() throws Exception {
+    XmlDocument document = Xsylum.compactDocumentFor(source);
+    Snapshot.write(document, snapshot);
+    XmlDocument loaded = Snapshot.load(snapshot);
+
+    assertEquals(xmlFor(loaded), xmlFor(document));
+    assertEquals(loaded.values("//author/text()"), document.values("//author/text()"));
+    assertEquals(loaded.values("//book/@id"), document.values("//book/@id"));
+    assertEquals(loaded.findAll("//book").size(), document.findAll("//book").size());
+    assertEquals(loaded.root().get("book").get("title").value(),
+        document.root().get("book").get("title").value());
+  }
+
+  public void shouldRoundTripDomDocument() throws Exception {
+    String xml = "<a x='1' xmlns:p='urn:p'>one<![CDATA[<two>]]><!--c--><p:b>&amp;</p:b><c/></a>";
+    XmlDocument document = Xsylum.documentFor(xml);
+    Snapshot.write(document, snapshot);
+    XmlDocument loaded = Snapshot.load(snapshot);
+
+    assertEquals(xmlFor(loaded), xmlFor(Xsylum.compactDocumentFor(xml)));
+    assertEquals(loaded.value("/a/text()"), "one<two>");
+    assertEquals(loaded.value("/a/b"), "&");
+    assertEquals(loaded.value("/a/@x"), "1");
+  }
+
+  public void shouldReplaceStaleSnapshot() throws Exception {
+    assertFalse(Snapshot.isCurrent(source, snapshot));
+    XmlDocument document = Snapshot.load(source, snapshot);
+    assertTrue(Files.exists(snapshot));
+    assertTrue(Snapshot.isCurrent(source, snapshot));
+    FileTime written = Files.getLastModifiedTime(snapshot);
+
+    // A current snapshot is loaded rather than rewritten
+    XmlDocument loaded = Snapshot.load(source, snapshot);
+    assertEquals(xmlFor(loaded), xmlFor(document));
+    assertEquals(Files.getLastModifiedTime(snapshot), written);
+
+    Files.write(source, "<catalog><book id='new'/></catalog>".getBytes(StandardCharsets.UTF_8));
+    assertFalse(Snapshot.isCurrent(source, snapshot));
+    assertEquals(Snapshot.load(source, snapshot).value("//book/@id"), "new");
+    assertTrue(Snapshot.isCurrent(source, snapshot));
+    assertEquals(Snapshot.load(snapshot).value("//book/@id"), "new");
+  }
+
+  public void shouldNotBeCurrentWithoutSource() throws Exception {
+    Snapshot.write(Xsylum.documentFor(source), snapshot);
+    assertFalse(Snapshot.isCurrent(source, snapshot));
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldFailForInvalidSnapshot() throws Exception {
+    Snapshot.load(source);
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldFailForTruncatedSnapshot() throws Exception {
+    Snapshot.write(Xsylum.documentFor(source), snapshot);
+    byte[] bytes = Files.readAllBytes(snapshot);
+    Files.write(snapshot, Arrays.copyOf(bytes, bytes.length / 2));
+    Snapshot.load(snapshot);
+  }
+
+  public void shouldFailForCorruptSnapshot() throws Exception {
+    Snapshot.write(Xsylum.documentFor(source), snapshot);
+    byte[] bytes = Files.readAllBytes(snapshot);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    int uriLength = buffer.getInt(56);
+    int parents = 60 + Math.max(uriLength, 0) * 2;
+    int nameIds = parents + buffer.getInt(40) * 4 * 3;
+
+    // An out of range parent and name id
+    for (int offset : new int[] { parents + 4, nameIds + 4 }) {
+      ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+      corrupt.putInt(offset, 1 << 20);
+      Files.write(snapshot, corrupt.array());
+      try {
+        Snapshot.load(snapshot);
+        fail("Expected XsylumException");
+      } catch (XsylumException expected) {
+      }
+    }
+  }
+
+  private static String xmlFor(XmlDocument document) throws Exception {
+    StringWriter writer = new StringWriter();
+    document.writeTo(writer);
+    return writer.toString();
+  }
+}
@@ -0,0 +1,57 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.testng.annotations.Test;
+
+@Test
+public class StringTableTest {
+  public void shouldReturnCanonicalInstance() {
+    StringTable table = new StringTable(16, 8);
+    String value = new String("value");
+    assertSame(table.canonical(value), value);
+    assertSame(table.canonical(new String("value")), value);
+    assertNull(table.canonical(null));
+  }
+
+  public void shouldNotDeduplicateLongStrings() {
+    StringTable table = new StringTable(16, 4);
+    String value = new String("value");
+    table.canonical(value);
+    assertNotSame(table.canonical(new String("value")), value);
+  }
+
+  public void shouldRoundCapacityToPowerOfTwo() {
+    assertEquals(new StringTable(1000, 8).capacity(), 1024);
+    assertEquals(new StringTable(1, 8).capacity(), 1);
+    assertEquals(StringTable.shared().capacity(), StringTable.DEFAULT_CAPACITY);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shouldThrowOnInvalidCapacity() {
+    new StringTable(0, 8);
+  }
+
+  public void shouldDeduplicateParsedValues() throws Throwable {
+    ParserPool pool = new ParserPool(DocumentBuilderFactory.newInstance(), 1, new StringTable(
+        1024, 16));
+    String xml = "<a status='active'><b status='active'>text</b><![CDATA[text]]></a>";
+    XmlDocument first = Xsylum.documentFor(xml, pool);
+    XmlDocument second = Xsylum.documentFor(xml, pool);
+
+    assertSame(second.root().attribute("status"), first.root().attribute("status"));
+    assertSame(first.root().get("b").attribute("status"), first.root().attribute("status"));
+    assertSame(textOf(second.root().get("b")), textOf(first.root().get("b")));
+    assertSame(first.root().source.getLastChild().getNodeValue(), textOf(first.root().get("b")));
+    assertEquals(second.root().get("b").value(), "text");
+  }
+
+  private static String textOf(XmlElement element) {
+    return element.source.getFirstChild().getNodeValue();
+  }
+}
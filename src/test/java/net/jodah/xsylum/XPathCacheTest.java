@@ -0,0 +1,55 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class XPathCacheTest {
+  XmlDocument document;
+
+  @BeforeMethod
+  protected void beforeMethod() throws Exception {
+    document = Xsylum.documentFor(XPathCacheTest.class.getResourceAsStream("document.xml"));
+    XPathCache.clear();
+  }
+
+  public void shouldCountHitsAndMisses() throws Exception {
+    document.value("//author/text()");
+    document.value("//author/text()");
+    document.values("//author/text()");
+
+    assertEquals(XPathCache.missCount(), 1);
+    assertEquals(XPathCache.hitCount(), 2);
+    assertEquals(XPathCache.size(), 1);
+  }
+
+  public void shouldReturnCachedExpression() throws Exception {
+    assertSame(XmlSearchable.compile("//author"), XmlSearchable.compile("//author"));
+  }
+
+  public void shouldEvaluateCompiledExpressionAcrossThreads() throws Exception {
+    final XmlExpression expression = XmlSearchable.compile("/catalog/book[2]/author/text()");
+    assertEquals(document.value(expression), "Ralls, Kim");
+
+    final AtomicReference<Object> result = new AtomicReference<Object>();
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          result.set(document.value(expression));
+        } catch (Exception e) {
+          result.set(e);
+        }
+      }
+    });
+    thread.start();
+    thread.join();
+
+    assertEquals(result.get(), "Ralls, Kim");
+  }
+}
@@ -0,0 +1,121 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+@Test
+public class XmlCursorTest {
+  static final String XML = "<catalog><book id='1' copies='12' price='4.5' used='yes'>"
+      + "<title>One</title><copies>3</copies><!-- c --><note>a<![CDATA[b]]>c</note></book>text"
+      + "<magazine/><book id='2' copies='-7'><title>Two</title></book></catalog>";
+
+  public void shouldTraverseDomDocument() throws Exception {
+    assertTraverses(Xsylum.documentFor(XML));
+  }
+
+  public void shouldTraverseCompactDocument() throws Exception {
+    assertTraverses(Xsylum.compactDocumentFor(XML));
+  }
+
+  public void shouldVisitSameElementsAsChildren() throws Exception {
+    for (XmlDocument document : new XmlDocument[] { Xsylum.documentFor(XML),
+        Xsylum.compactDocumentFor(XML) }) {
+      List<String> expected = new ArrayList<String>();
+      collect(document.root(), 0, expected);
+      List<String> visited = new ArrayList<String>();
+      XmlCursor cursor = document.cursor();
+      do {
+        visited.add(cursor.depth() + cursor.name());
+        if (cursor.toFirstChild())
+          continue;
+        while (!cursor.toNextSibling() && cursor.toParent()) {
+        }
+      } while (cursor.depth() > 0);
+
+      assertEquals(visited, expected);
+    }
+  }
+
+  public void shouldStayWithinRoot() throws Exception {
+    XmlElement book = Xsylum.documentFor(XML).root().get("book");
+    XmlCursor cursor = book.cursor();
+    assertFalse(cursor.toNextSibling());
+    assertFalse(cursor.toParent());
+    assertTrue(cursor.toChild("title"));
+    assertTrue(cursor.toParent());
+    assertFalse(cursor.toParent());
+    assertEquals(cursor.name(), "book");
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldThrowOnMissingAttribute() throws Exception {
+    Xsylum.documentFor(XML).cursor().attribute("missing");
+  }
+
+  @Test(expectedExceptions = XsylumException.class)
+  public void shouldThrowOnMissingCompactAttribute() throws Exception {
+    Xsylum.compactDocumentFor(XML).cursor().attribute("missing");
+  }
+
+  private static void assertTraverses(XmlDocument document) throws Exception {
+    XmlCursor cursor = document.cursor();
+    assertEquals(cursor.name(), "catalog");
+    assertEquals(cursor.depth(), 0);
+    assertFalse(cursor.toNextSibling());
+    assertFalse(cursor.toChild("missing"));
+    assertEquals(cursor.name(), "catalog");
+
+    assertTrue(cursor.toChild("book"));
+    assertEquals(cursor.depth(), 1);
+    assertEquals(cursor.attribute("id"), "1");
+    assertEquals(cursor.attributeAsInt("copies"), 12);
+    assertEquals(cursor.attributeAsLong("copies"), 12L);
+    assertEquals(cursor.attributeAsDouble("price"), 4.5);
+    assertTrue(cursor.attributeAsBoolean("used"));
+    assertTrue(cursor.hasAttribute("id"));
+    assertFalse(cursor.hasAttribute("missing"));
+    assertSame(cursor.element(), document.root().get("book").element());
+    assertEquals(cursor.toElement().get("title").value(), "One");
+
+    assertTrue(cursor.toFirstChild());
+    assertEquals(cursor.name(), "title");
+    assertEquals(cursor.value(), "One");
+    assertFalse(cursor.toFirstChild());
+    assertTrue(cursor.toNextSibling());
+    assertEquals(cursor.valueAsInt(), 3);
+    assertEquals(cursor.valueAsLong(), 3L);
+    assertEquals(cursor.valueAsDouble(), 3.0);
+    assertTrue(cursor.toNextSibling("note"));
+    assertEquals(cursor.value(), "abc");
+    assertFalse(cursor.toNextSibling());
+    assertEquals(cursor.name(), "note");
+
+    assertTrue(cursor.toParent());
+    assertTrue(cursor.toNextSibling());
+    assertEquals(cursor.name(), "magazine");
+    assertEquals(cursor.value(), "");
+    assertTrue(cursor.toNextSibling("book"));
+    assertEquals(cursor.attributeAsInt("copies"), -7);
+    assertTrue(cursor.toChild("title"));
+    assertEquals(cursor.depth(), 2);
+    assertEquals(cursor.value(), "Two");
+    assertFalse(cursor.toNextSibling("book"));
+
+    cursor.toRoot();
+    assertEquals(cursor.name(), "catalog");
+    assertEquals(cursor.depth(), 0);
+  }
+
+  private static void collect(XmlElement element, int depth, List<String> names) {
+    names.add(depth + element.name());
+    for (XmlElement child : element.children())
+      collect(child, depth + 1, names);
+  }
+}
@@ -1,9 +1,20 @@
 package net.jodah.xsylum;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -22,6 +33,10 @@ public class XmlDocumentTest extends XmlSearchableTest {
     return document;
   }
 
+  XmlDocument documentFor(String resource) throws Exception {
+    return Xsylum.documentFor(XmlDocumentTest.class.getResourceAsStream(resource));
+  }
+
   public void shouldFindValue() throws Exception {
     assertEquals(document.value("//author/text()"), "Gambardella, Matthew");
     assertEquals(document.value("/catalog/book[2]/author/text()"), "Ralls, Kim");
@@ -64,6 +79,30 @@ public class XmlDocumentTest extends XmlSearchableTest {
     assertEquals(document.valuesAsDouble("//price/text()"), expected);
   }
 
+  public void shouldFindPrimitiveValues() throws Exception {
+    assertEquals(document.valuesAsDoubleArray("//price/text()"),
+        new double[] { 44.95, 5.95, 5.95, 5.95, 5.95 });
+    assertEquals(document.valuesAsDoubleStream("//price/text()").sum(), 68.75, 0.0001);
+    assertEquals(document.valuesAsIntArray("//nothing/text()"), new int[0]);
+
+    XmlDocument numbers = Xsylum.documentFor(
+        "<a><n>1</n><n x='4'>-2</n><n><![CDATA[3]]></n><n>9000000000</n></a>");
+    assertEquals(numbers.valuesAsIntArray("//n[position() < 4]/text()"), new int[] { 1, -2, 3 });
+    assertEquals(numbers.valuesAsIntArray("//n/@x"), new int[] { 4 });
+    assertEquals(numbers.valuesAsLongArray("//n/text()"),
+        new long[] { 1, -2, 3, 9000000000L });
+    assertEquals(numbers.valuesAsLongStream("//n/text()").sum(), 9000000002L);
+    assertEquals(numbers.valuesAsIntStream("//n[position() < 4]").count(), 0);
+    assertEquals(numbers.root().get("n").valueAsInt(), 1);
+    assertEquals(numbers.root().getAll("n").get(2).valueAsLong(), 3);
+    assertEquals(numbers.root().getAll("n").get(1).valueAsDouble(), -2.0);
+  }
+
+  @Test(expectedExceptions = NumberFormatException.class)
+  public void shouldFailToFindIntValuesOutOfRange() throws Exception {
+    Xsylum.documentFor("<a><n>9000000000</n></a>").valuesAsIntArray("//n/text()");
+  }
+
   public void shouldFind() throws Exception {
     assertEquals(document.find("//author").value(), "Gambardella, Matthew");
     assertEquals(document.find("/catalog/book[2]/author").value(), "Ralls, Kim");
@@ -79,4 +118,87 @@ public class XmlDocumentTest extends XmlSearchableTest {
   public void shouldFindWithXpath() throws Exception {
     assertEquals(document.value("//book[@id='bk103']/author/text()"), "Corets, Eva");
   }
+
+  public void shouldGetFromIndex() throws Exception {
+    XmlDocument indexed = documentFor("document.xml");
+    assertFalse(indexed.isIndexed());
+    assertEquals(indexed.indexSizeInBytes(), 0);
+    assertTrue(indexed.index().isIndexed());
+    assertTrue(indexed.indexSizeInBytes() > 0);
+
+    for (String tagName : Arrays.asList("catalog", "book", "author", "link", "price", "*")) {
+      assertEquals(indexed.get(tagName).toString(), document.get(tagName).toString());
+      assertEquals(indexed.getAll(tagName).toString(), document.getAll(tagName).toString());
+      assertEquals(indexed.streamAll(tagName).collect(Collectors.<XmlElement>toList()).toString(),
+          document.getAll(tagName).toString());
+    }
+    assertNull(indexed.get("missing"));
+    assertEquals(indexed.getAll("missing").size(), 0);
+    assertEquals(indexed.streamAll("missing").count(), 0);
+
+    indexed.removeIndex();
+    assertFalse(indexed.isIndexed());
+    assertEquals(indexed.getAll("author").size(), 6);
+  }
+
+  public void shouldFreeze() throws Exception {
+    XmlDocument frozen = documentFor("document.xml").index().freeze();
+    assertTrue(frozen.isFrozen());
+    assertTrue(frozen.isIndexed());
+    assertSame(frozen.freeze(), frozen);
+    assertEquals(frozen.toString(), document.toString());
+    assertEquals(frozen.values("//book/@id"), document.values("//book/@id"));
+    assertEquals(frozen.value("//link/text()"), document.value("//link/text()"));
+  }
+
+  public void shouldFindAllInParallel() throws Exception {
+    XmlDocument frozen = Xsylum.compactDocumentFor(ParallelPathTest.xml());
+    XmlDocument dom = Xsylum.documentFor(ParallelPathTest.xml());
+    for (XmlDocument doc : Arrays.asList(frozen, dom, document))
+      for (String expression : new String[] { "//t[amount > 40]", "//book/author", "//t[1]" }) {
+        String values = expression + "/text()";
+        assertEquals(doc.findAllParallel(expression).toString(),
+            doc.findAll(expression).toString());
+        assertEquals(doc.valuesParallel(values), doc.values(values));
+      }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void shouldNotFreezeNamespaceAwareDocument() throws Exception {
+    Xsylum.documentFor("<a xmlns='urn:a'><b/></a>",
+        ParserOptions.builder().namespaceAware(true).build()).freeze();
+  }
+
+  public void shouldReadFrozenDocumentConcurrently() throws Throwable {
+    final XmlDocument frozen = documentFor("document.xml").freeze();
+    final List<String> expectedIds = document.values("//book/@id");
+    final String expectedTitle = document.find("/catalog/book[3]/title").value();
+    final int expectedAuthors = document.getAll("author").size();
+    final String expectedFirstTitle = document.root().get("book").get("title").value();
+
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < 16; t++)
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = 0; i < 200; i++) {
+              assertEquals(frozen.values("//book/@id"), expectedIds);
+              assertEquals(frozen.find("/catalog/book[3]/title").value(), expectedTitle);
+              assertEquals(frozen.valueAsDouble("count(//book)"), 5.0);
+              assertEquals(frozen.getAll("author").size(), expectedAuthors);
+              assertEquals(frozen.root().get("book").get("title").value(), expectedFirstTitle);
+            }
+            return null;
+          }
+        }));
+      for (Future<?> future : futures)
+        future.get();
+    } catch (ExecutionException e) {
+      throw e.getCause();
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
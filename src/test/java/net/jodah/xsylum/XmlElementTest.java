@@ -2,10 +2,14 @@ package net.jodah.xsylum;
 
 import static org.testng.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -24,6 +28,10 @@ public class XmlElementTest extends XmlSearchableTest {
     return element;
   }
 
+  XmlElement elementFor(String xml) throws Exception {
+    return Xsylum.elementFor(xml);
+  }
+
   public void shouldGetAsText() {
     assertEquals(element.get("book").get("author").value(), "Gambardella, Matthew");
   }
@@ -51,6 +59,16 @@ public class XmlElementTest extends XmlSearchableTest {
     assertEquals(children.get(0).children().size(), 8);
   }
 
+  public void shouldStreamChildren() {
+    List<XmlElement> children = element.children();
+    List<XmlElement> streamed = element.streamChildren().collect(Collectors.<XmlElement>toList());
+    assertEquals(streamed.size(), children.size());
+    for (int i = 0; i < children.size(); i++)
+      assertEquals(streamed.get(i).element(), children.get(i).element());
+    assertEquals(element.streamChildren().findFirst().get().attributes().get("id"), "bk101");
+    assertEquals(element.get("book").get("author").streamChildren().count(), 0);
+  }
+
   public void shouldFindValue() throws Exception {
     XmlElement book = element.get("book");
     assertEquals(book.value(".//author/text()"), "Gambardella, Matthew");
@@ -80,4 +98,59 @@ public class XmlElementTest extends XmlSearchableTest {
     BookType bookType = element.get("book").get("type").valueAsEnum(BookType.class);
     assertEquals(bookType, BookType.hardcover);
   }
+
+  public void shouldGetFromWideElement() throws Exception {
+    StringBuilder xml = new StringBuilder("<record>");
+    for (int i = 0; i < 100; i++)
+      xml.append("<field").append(i % 40).append('>').append(i).append("</field").append(i % 40)
+          .append(">\n");
+    XmlElement record = elementFor(xml.append("</record>").toString());
+
+    for (int pass = 0; pass < 2; pass++) {
+      assertEquals(record.get("field0").value(), "0");
+      assertEquals(record.get("field39").value(), "39");
+      assertEquals(record.getAll("field1").size(), 3);
+      assertEquals(record.getAll("field1").get(2).value(), "81");
+      assertEquals(record.getAll("field39").size(), 2);
+      assertEquals(record.getAll("missing").size(), 0);
+      assertEquals(record.get("missing"), null);
+      assertEquals(record.hasChild("field20"), true);
+      assertEquals(record.hasChild("missing"), false);
+      assertEquals(record.streamAll("field1").count(), 3);
+      assertEquals(record.streamAll("field1").skip(2).findFirst().get().value(), "81");
+      assertEquals(record.streamAll("missing").count(), 0);
+    }
+  }
+
+  public void shouldWriteEscapedXml() throws Exception {
+    String xml = "<a b=\"x &amp; &quot;y&quot;&#xa;\"><c>1 &lt; 2 &amp;&gt; 3</c><d/>"
+        + "<![CDATA[<e>]]>\u00e9\u4e2d</a>";
+    XmlElement element = elementFor(xml);
+    assertEquals(element.toXml(), xml);
+
+    StringWriter writer = new StringWriter();
+    element.writeTo(writer);
+    assertEquals(writer.toString(), xml);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    element.get("c").writeTo(out, StandardCharsets.UTF_8);
+    assertEquals(new String(out.toByteArray(), StandardCharsets.UTF_8),
+        "<c>1 &lt; 2 &amp;&gt; 3</c>");
+
+    out.reset();
+    element.writeTo(out, StandardCharsets.US_ASCII);
+    String ascii = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    assertEquals(ascii, xml.replace("\u00e9", "&#xe9;").replace("\u4e2d", "&#x4e2d;"));
+    assertEquals(elementFor(ascii).value(), element.value());
+  }
+
+  public void shouldWriteDeepElements() throws Exception {
+    StringBuilder xml = new StringBuilder();
+    for (int i = 0; i < 5000; i++)
+      xml.append("<n>");
+    xml.append("x");
+    for (int i = 0; i < 5000; i++)
+      xml.append("</n>");
+    assertEquals(elementFor(xml.toString()).toXml(), xml.toString());
+  }
 }
@@ -0,0 +1,91 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+
+import org.testng.annotations.Test;
+
+@Test
+public class XmlFeedTest {
+  public void shouldParseChunks() throws Exception {
+    byte[] bytes = Files.readAllBytes(Paths.get(XmlFeedTest.class.getResource("document.xml")
+        .toURI()));
+
+    XmlFeed feed = Xsylum.feed();
+    ByteBuffer buffer = ByteBuffer.allocate(100);
+    for (int offset = 0; offset < bytes.length; offset += 100) {
+      buffer.clear();
+      buffer.put(bytes, offset, Math.min(100, bytes.length - offset)).flip();
+      feed.write(buffer);
+      assertFalse(buffer.hasRemaining());
+    }
+
+    assertEquals(feed.size(), bytes.length);
+    assertFalse(feed.result().isDone());
+    XmlDocument document = feed.complete().get();
+    assertEquals(document.toString(), Xsylum.documentFor(bytes).toString());
+    assertTrue(feed.result().isDone());
+  }
+
+  public void shouldCompleteExceptionallyForMalformedXml() throws Exception {
+    XmlFeed feed = Xsylum.feed().write("<a><b>".getBytes(StandardCharsets.UTF_8));
+    try {
+      feed.complete().get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof XsylumException);
+    }
+  }
+
+  public void shouldCompleteExceptionallyForErrors() throws Exception {
+    Xsylum.setListener(new XsylumListener() {
+      @Override
+      public void documentParsed(long nanos, long inputSize, int nodeCount) {
+        throw new StackOverflowError();
+      }
+    });
+    try {
+      Xsylum.feed().write("<a/>".getBytes(StandardCharsets.UTF_8)).complete().get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().getCause() instanceof StackOverflowError);
+    } finally {
+      Xsylum.setListener(null);
+    }
+  }
+
+  public void shouldFail() throws Exception {
+    XmlFeed feed = Xsylum.feed().write("<a>".getBytes(StandardCharsets.UTF_8));
+    IOException cause = new IOException("Connection reset");
+    feed.fail(cause);
+    try {
+      feed.result().get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() == cause);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void shouldRejectWritesAfterComplete() {
+    XmlFeed feed = Xsylum.feed().write("<a/>".getBytes(StandardCharsets.UTF_8));
+    feed.complete();
+    feed.write(new byte[1]);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void shouldRejectSecondComplete() {
+    XmlFeed feed = Xsylum.feed().write("<a/>".getBytes(StandardCharsets.UTF_8));
+    feed.complete();
+    feed.complete();
+  }
+}
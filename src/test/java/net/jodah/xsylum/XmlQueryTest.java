@@ -0,0 +1,105 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.testng.annotations.Test;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+@Test
+public class XmlQueryTest {
+  static final String XML = "<root xmlns='urn:default' xmlns:p='urn:p' id='r'>"
+      + "<a id='1' p:x='px'>one<![CDATA[ two]]><!--c-->three<b>b1</b><b id='b2'>b2</b></a>"
+      + "<p:a id='2'><b>b3<c>c1</c></b></p:a>"
+      + "<a><c><a id='3'><b>b4</b></a></c></a>"
+      + "<d><![CDATA[cdata]]></d><e/></root>";
+
+  static final List<String> EXPRESSIONS = Arrays.asList("/root/a/text()", "/root/a/@id",
+      "//a/@id", "//@id", "//@*", "/root/@*", "//b/text()", "//a//b/text()", "/root/a[2]/@id",
+      "//a[1]/@id", "//b[2]/@id", "//*[1]/@id", "/root/*/b/text()", "//c/text()",
+      "/root/d/text()", "//a", "/root", "a/@id", "./a/b/text()", ".//b/text()", "a[3]/c/a/@id",
+      "*/@id", "@id", "text()", "b/text()", "//e/text()", "//missing/text()", "//a[2]//b/text()",
+      "/root/a[0]/@id", "//b[0]/text()");
+
+  static final List<String> UNSIMPLE = Arrays.asList("//a[@id='1']/text()", "count(//a)",
+      "//a/..", "/", ".", "//p:a", "//a | //b", "a/", "a//", "//a[1", "//a[]", "//a[x]",
+      "child::a", "//a/node()", "//a[last()]", "//text()", ".//text()");
+
+  public void shouldParseOnlySimplePaths() {
+    for (String expression : EXPRESSIONS)
+      assertNotNull(SimplePath.parse(expression), expression);
+    for (String expression : UNSIMPLE)
+      assertNull(SimplePath.parse(expression), expression);
+  }
+
+  public void shouldMatchXPathForDocuments() throws Exception {
+    assertMatchesXPath(Xsylum.documentFor(XML));
+    assertMatchesXPath(Xsylum.compactDocumentFor(XML));
+  }
+
+  public void shouldMatchXPathForElements() throws Exception {
+    assertMatchesXPath(Xsylum.documentFor(XML).root().children().get(0));
+    assertMatchesXPath(Xsylum.compactDocumentFor(XML).root().children().get(2));
+    assertMatchesXPath(Xsylum.elementFor(XML));
+  }
+
+  public void shouldMatchXPathForSampleDocument() throws Exception {
+    XmlDocument document = Xsylum.documentFor(XmlQueryTest.class.getResourceAsStream(
+        "document.xml"));
+    Map<String, String> expressions = new LinkedHashMap<String, String>();
+    expressions.put("authors", "//author/text()");
+    expressions.put("titles", "/catalog/book/title/text()");
+    expressions.put("links", "//link/text()");
+    expressions.put("ids", "//book/@id");
+    expressions.put("second", "/catalog/book[2]/author[2]/text()");
+    expressions.put("cheap", "//book[price < 6]/@id");
+
+    XmlQuery query = document.query();
+    for (Map.Entry<String, String> entry : expressions.entrySet())
+      query.add(entry.getKey(), entry.getValue());
+    Map<String, List<String>> result = query.evaluate();
+    assertEquals(new ArrayList<String>(result.keySet()),
+        new ArrayList<String>(expressions.keySet()));
+    for (Map.Entry<String, String> entry : expressions.entrySet())
+      assertEquals(result.get(entry.getKey()), xpathValues(document, entry.getValue()));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shouldRejectDuplicateNames() throws Exception {
+    Xsylum.documentFor(XML).query().add("a", "//a").add("a", "//b");
+  }
+
+  /**
+   * Returns the values selected by the XPath engine for the {@code expression}.
+   */
+  static List<String> xpathValues(XmlSearchable<?> searchable, String expression)
+      throws Exception {
+    NodeList nodeList = (NodeList) XPathFactory.newInstance().newXPath().evaluate(expression,
+        searchable.source, XPathConstants.NODESET);
+    List<Node> nodes = new ArrayList<Node>();
+    for (int i = 0; i < nodeList.getLength(); i++)
+      nodes.add(nodeList.item(i));
+    return XmlSearchable.valuesOf(nodes);
+  }
+
+  private static void assertMatchesXPath(XmlSearchable<?> searchable) throws Exception {
+    XmlQuery query = searchable.query();
+    for (String expression : EXPRESSIONS)
+      query.add(expression, expression);
+
+    Map<String, List<String>> result = query.evaluate();
+    for (String expression : EXPRESSIONS)
+      assertEquals(result.get(expression), xpathValues(searchable, expression), expression);
+  }
+}
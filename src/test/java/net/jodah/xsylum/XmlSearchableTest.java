@@ -4,6 +4,7 @@ import static org.testng.Assert.assertEquals;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.testng.annotations.Test;
 
@@ -24,6 +25,24 @@ public abstract class XmlSearchableTest {
     assertEquals(author.value(), "Gambardella, Matthew");
   }
 
+  public void shouldStreamAll() throws Exception {
+    List<XmlElement> books = searchable().getAll("book");
+    List<XmlElement> streamed = searchable().streamAll("book").collect(
+        Collectors.<XmlElement>toList());
+    assertEquals(streamed.size(), books.size());
+    for (int i = 0; i < books.size(); i++)
+      assertEquals(streamed.get(i).element(), books.get(i).element());
+    assertEquals(searchable().streamAll("missing").count(), 0);
+  }
+
+  public void shouldStreamFind() throws Exception {
+    assertEquals(searchable().streamFind("//author").findFirst().get().value(),
+        "Gambardella, Matthew");
+    assertEquals(searchable().streamFind("//book[price > 10]").count(),
+        searchable().findAll("//book[price > 10]").size());
+    assertEquals(searchable().streamFind("//missing").count(), 0);
+  }
+
   enum SubId {
     a, b, c, d, e;
   }
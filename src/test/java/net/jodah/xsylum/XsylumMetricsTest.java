@@ -0,0 +1,104 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.jodah.xsylum.XsylumMetrics.Histogram;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class XsylumMetricsTest {
+  @AfterMethod
+  protected void afterMethod() {
+    Xsylum.setListener(null);
+  }
+
+  public void shouldRecordPercentiles() {
+    Histogram histogram = new Histogram();
+    assertEquals(histogram.percentile(0.5), 0);
+    for (int i = 1; i <= 1000; i++)
+      histogram.record(i);
+
+    assertEquals(histogram.count(), 1000);
+    assertEquals(histogram.sum(), 500500);
+    assertEquals(histogram.max(), 1000);
+    assertEquals(histogram.mean(), 500.5);
+    assertWithin(histogram.percentile(0.5), 500);
+    assertWithin(histogram.percentile(0.99), 990);
+    assertEquals(histogram.percentile(1), 1000);
+    assertEquals(histogram.percentile(0), 1);
+  }
+
+  public void shouldBucketValues() {
+    for (long value : new long[] { 0, 1, 7, 8, 9, 15, 16, 1000, 123456789, Long.MAX_VALUE }) {
+      int bucket = Histogram.bucketFor(value);
+      assertTrue(Histogram.upperBound(bucket) >= value, String.valueOf(value));
+      if (bucket > 0)
+        assertTrue(Histogram.upperBound(bucket - 1) < value, String.valueOf(value));
+    }
+  }
+
+  public void shouldReportParsing() throws Exception {
+    final List<long[]> parses = new ArrayList<long[]>();
+    Xsylum.setListener(new XsylumListener() {
+      @Override
+      public void documentParsed(long nanos, long inputSize, int nodeCount) {
+        parses.add(new long[] { nanos, inputSize, nodeCount });
+      }
+    });
+
+    String xml = "<a x='1'><b>text</b><!--c--><b/></a>";
+    Xsylum.documentFor(xml.getBytes("UTF-8"));
+    Xsylum.documentFor(xml);
+    Xsylum.compactDocumentFor(xml);
+
+    assertEquals(parses.size(), 3);
+    for (long[] parse : parses)
+      assertEquals(parse[1], xml.length());
+    assertEquals(parses.get(0)[2], 6);
+    assertEquals(parses.get(1)[2], 6);
+    // Compact documents do not retain comments
+    assertEquals(parses.get(2)[2], 5);
+  }
+
+  public void shouldRecordMetrics() throws Exception {
+    XPathCache.clear();
+    XsylumMetrics metrics = new XsylumMetrics();
+    Xsylum.setListener(metrics);
+    assertTrue(Xsylum.listener() == metrics);
+
+    XmlDocument document = Xsylum.documentFor("<a><b>1</b><b>2</b></a>");
+    String expression = "count(//b)";
+    document.value(expression);
+    document.value(expression);
+    document.values("//b/text()");
+    document.root().find("b");
+
+    assertEquals(metrics.parseTimes().count(), 1);
+    assertEquals(metrics.nodeCount(), 6);
+    assertEquals(metrics.inputSize(), 23);
+    assertEquals(metrics.compileTimes().count(), 3);
+    assertEquals(metrics.evaluationTimes().count(), 4);
+    assertEquals(metrics.evaluationTimes(expression).count(), 2);
+    assertNotNull(metrics.expressionEvaluationTimes().get("b"));
+    assertNull(metrics.evaluationTimes("//c"));
+    assertEquals(metrics.cacheMisses("xpath"), 3);
+    assertEquals(metrics.cacheHits("xpath"), 1);
+    assertEquals(metrics.cacheHitRate("xpath"), 0.25);
+
+    metrics.reset();
+    assertEquals(metrics.parseTimes().count(), 0);
+    assertEquals(metrics.cacheHitRate("xpath"), 0.0);
+  }
+
+  private static void assertWithin(long actual, long expected) {
+    assertTrue(actual >= expected && actual <= expected * 1.125, actual + " != " + expected);
+  }
+}
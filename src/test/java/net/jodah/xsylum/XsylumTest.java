@@ -0,0 +1,199 @@
+package net.jodah.xsylum;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test
+public class XsylumTest {
+  Path path;
+  String expected;
+
+  @BeforeClass
+  protected void beforeClass() throws Exception {
+    path = Files.createTempFile("xsylum", ".xml");
+    try (InputStream in = XsylumTest.class.getResourceAsStream("document.xml")) {
+      Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+    expected = Xsylum.documentFor(Files.readAllBytes(path)).toString();
+  }
+
+  @AfterClass
+  protected void afterClass() throws Exception {
+    Files.deleteIfExists(path);
+  }
+
+  public void shouldParsePathAndFile() throws Exception {
+    assertEquals(Xsylum.documentFor(path).toString(), expected);
+    assertEquals(Xsylum.documentFor(path.toFile()).toString(), expected);
+    assertEquals(Xsylum.elementFor(path).toString(), expected);
+    assertEquals(Xsylum.compactDocumentFor(path).toString(), expected);
+  }
+
+  public void shouldParseChannel() throws Exception {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      assertEquals(Xsylum.documentFor(channel).toString(), expected);
+      assertTrue(channel.isOpen());
+    }
+    ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(Files
+        .readAllBytes(path)));
+    assertEquals(Xsylum.elementFor(channel).toString(), expected);
+    assertTrue(channel.isOpen());
+  }
+
+  public void shouldReadAcrossMappedWindows() throws Exception {
+    byte[] bytes = Files.readAllBytes(path);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        InputStream in = new MappedInputStream(channel, 7)) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[5];
+      out.write(in.read());
+      for (int n; (n = in.read(buffer)) != -1;)
+        out.write(buffer, 0, n);
+      assertEquals(out.toByteArray(), bytes);
+    }
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      XmlDocument document = Xsylum.documentFor(new MappedInputStream(channel, 13));
+      assertEquals(document.toString(), expected);
+    }
+  }
+
+  public void shouldParseBatchInInputOrder() throws Exception {
+    byte[] bytes = Files.readAllBytes(path);
+    List<Object> sources = Arrays.<Object>asList(path, path.toFile(), bytes, new String(bytes,
+        "UTF-8"), "<bad", new ByteArrayInputStream(bytes), Integer.valueOf(1));
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<ParseResult<Object>> results = Xsylum.documentsFor(sources, executor);
+      assertEquals(results.size(), sources.size());
+      for (int i = 0; i < results.size(); i++) {
+        ParseResult<Object> result = results.get(i);
+        assertEquals(result.index(), i);
+        assertTrue(result.source() == sources.get(i));
+        if (i == 4 || i == 6) {
+          assertFalse(result.isSuccess());
+          assertNull(result.document());
+        } else
+          assertEquals(result.document().toString(), expected);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void shouldParseBatchInCompletionOrder() throws Exception {
+    List<Path> sources = Collections.nCopies(20, path);
+    final List<ParseResult<Path>> results = new ArrayList<ParseResult<Path>>();
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      Xsylum.documentsFor(sources, executor, new Consumer<ParseResult<Path>>() {
+        @Override
+        public void accept(ParseResult<Path> result) {
+          synchronized (results) {
+            results.add(result);
+          }
+        }
+      });
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(results.size(), 20);
+    for (ParseResult<Path> result : results)
+      assertEquals(result.document().toString(), expected);
+    assertEquals(Xsylum.documentsFor(sources).size(), 20);
+  }
+
+  public void shouldCollectErrorsPerSource() throws Exception {
+    InputStream failing = new InputStream() {
+      @Override
+      public int read() {
+        throw new StackOverflowError();
+      }
+    };
+    List<Object> sources = Arrays.<Object>asList(path, failing, path);
+
+    List<ParseResult<Object>> results = Xsylum.documentsFor(sources);
+    assertEquals(results.size(), 3);
+    assertTrue(results.get(0).isSuccess());
+    assertTrue(results.get(1).failure().getCause() instanceof StackOverflowError);
+    assertTrue(results.get(2).isSuccess());
+  }
+
+  public void shouldRethrowConsumerFailures() throws Exception {
+    List<Path> sources = Collections.nCopies(5, path);
+    final List<ParseResult<Path>> results = new ArrayList<ParseResult<Path>>();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Xsylum.documentsFor(sources, executor, new Consumer<ParseResult<Path>>() {
+        @Override
+        public void accept(ParseResult<Path> result) {
+          synchronized (results) {
+            results.add(result);
+          }
+          if (result.index() % 2 == 0)
+            throw new IllegalStateException("consumer " + result.index());
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertEquals(e.getSuppressed().length, 2);
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(results.size(), 5);
+  }
+
+  public void shouldParseAsynchronously() throws Exception {
+    byte[] bytes = Files.readAllBytes(path);
+    assertEquals(Xsylum.documentForAsync(path).get().toString(), expected);
+    assertEquals(Xsylum.documentForAsync(bytes).get().toString(), expected);
+    assertEquals(Xsylum.documentForAsync(new String(bytes, "UTF-8")).get().toString(), expected);
+    assertEquals(Xsylum.documentForAsync(new ByteArrayInputStream(bytes)).get().toString(),
+        expected);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      assertEquals(Xsylum.documentForAsync(path, executor).get().toString(), expected);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  public void shouldFailAsynchronously() throws Exception {
+    try {
+      Xsylum.documentForAsync("<bad").get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof XsylumException);
+    }
+  }
+}